@@ -11,6 +11,7 @@ import optimization.SearchAlgorithm;
  * Example: 
  * 				java GenericSolver Rosenbrock localsearch.HillClimbing 0.01
  * 				java GenericSolver CarRacingProblem genetic.GeneticAlgorithm 500 100 0.9 0.1 0.8
+ * 				java GenericSolver MLPCarRacingProblem genetic.GeneticAlgorithm 500 100 0.9 0.1 0.8
  */
 public class GenericSolver{
 
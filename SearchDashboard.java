@@ -0,0 +1,214 @@
+import java.awt.BorderLayout;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.util.Arrays;
+
+import javax.swing.JFrame;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+
+import carracing.ControllerEvaluation;
+import carracing.EvaluationContext;
+import carracing.SensorLayout;
+import carracing.View;
+import carracing.controllers.LinearController;
+import carracing.tracks.ShapeTrack;
+import carracing.tracks.TrackLoader;
+
+import optimization.SearchAlgorithm;
+import optimization.SearchEvent;
+import optimization.SearchEventQueue;
+import optimization.problems.CarRacingProblem;
+
+/**
+ * Runs a search like CarRacingSolver, and shows its progress while it runs:
+ * the convergence of the best score, and the best controller found so far
+ * driving in the track.
+ *
+ * The search runs in its own thread and publishes its events in a queue.
+ * The window reads them from a timer of the Swing thread, so the search is
+ * never blocked by the window.
+ *
+ * Example:
+ * 				java SearchDashboard Track2 genetic.GeneticAlgorithm 100 2 0 1 0 200
+ */
+public class SearchDashboard{
+
+	/** Number of events the queue can hold. */
+	static final int queueCapacity = 4096;
+
+	/** Time between frames, in milliseconds. */
+	static final int frameTime = 50;
+
+	public static void main(String[] args){
+		// Creates an instance of the problem with a certain track.
+		final CarRacingProblem problem = new CarRacingProblem();
+		final ShapeTrack track = TrackLoader.getTrack("carracing.tracks."+args[0]);
+		problem.setTrack(track);
+
+		// Creates the search algorithm and sets the problem and the parameters.
+		final SearchAlgorithm algorithm = SearchAlgorithm.getAlgorithm("optimization.algorithms."+args[1]);
+		algorithm.setProblem(problem);
+		algorithm.setParams(Arrays.copyOfRange(args, 2, args.length));
+
+		// The search publishes its events in the queue.
+		final SearchEventQueue queue = new SearchEventQueue(queueCapacity);
+		algorithm.addListener(queue);
+
+		// Creates the window.
+		SwingUtilities.invokeLater(new Runnable(){
+			public void run(){
+				new SearchDashboard(track, queue).show();
+			}
+		});
+
+		// Carries out the search in this thread.
+		algorithm.search();
+		algorithm.showResults();
+	}
+
+	/** Queue with the events of the search. */
+	private final SearchEventQueue queue;
+
+	/** Window. */
+	private final JFrame frame;
+	private final ConvergencePlot plot;
+	private final JLabel status;
+	private final View view;
+
+	/** Simulation of the best controller found so far. */
+	private final LinearController controller = new LinearController();
+	private final ControllerEvaluation evaluation;
+	private boolean hasController = false;
+
+	/** Builds the window. Must be called from the Swing thread. */
+	SearchDashboard(ShapeTrack track, SearchEventQueue queue){
+		this.queue = queue;
+
+		// The simulation has its own context, as it runs in the Swing thread.
+		evaluation = new ControllerEvaluation(track, controller, new EvaluationContext());
+		view = new View(evaluation.getModel(), track);
+		SensorLayout layout = SensorLayout.DEFAULT;
+		view.sensorAngles = new double[layout.size()];
+		view.sensorReaches = new double[layout.size()];
+		for (int i = 0; i < layout.size(); i++) {
+			view.sensorAngles[i] = layout.getAngle(i);
+			view.sensorReaches[i] = layout.getReach(i);
+		}
+
+		plot = new ConvergencePlot();
+		status = new JLabel("Waiting for the search to start.");
+
+		frame = new JFrame("Search dashboard");
+		frame.addWindowListener(new WindowAdapter() {
+			public void windowClosing(WindowEvent e) {
+				System.exit(0);
+			}
+		});
+		frame.getContentPane().add(view, BorderLayout.CENTER);
+		JPanel south = new JPanel(new BorderLayout());
+		south.add(plot, BorderLayout.CENTER);
+		south.add(status, BorderLayout.SOUTH);
+		frame.getContentPane().add(south, BorderLayout.SOUTH);
+	}
+
+	/** Shows the window and starts reading events. */
+	void show(){
+		frame.pack();
+		frame.setVisible(true);
+		new Timer(frameTime, new ActionListener(){
+			public void actionPerformed(ActionEvent e){
+				update();
+			}
+		}).start();
+	}
+
+	/** Reads the pending events and advances the simulation of the best controller. */
+	private void update(){
+		SearchEvent event;
+		while ((event = queue.poll()) != null){
+			switch (event.getType()){
+				case NEW_BEST:
+					// Starts driving the new best controller.
+					controller.setParameters(event.getBestValues());
+					evaluation.reset();
+					hasController = true;
+					plot.add(event.getEvaluations(), event.getBestScore());
+					break;
+				case EVALUATIONS:
+					plot.add(event.getEvaluations(), event.getBestScore());
+					break;
+				default:
+					break;
+			}
+			status.setText(event + (queue.getDropped() > 0 ? " [" + queue.getDropped() + " events dropped]" : ""));
+		}
+
+		// Moves the car one step (and starts again at the end of the lap).
+		if (hasController){
+			if (!evaluation.step())
+				evaluation.reset();
+			view.repaint();
+		}
+		plot.repaint();
+	}
+
+	/** Plots the best score against the number of evaluations. */
+	static class ConvergencePlot extends JPanel {
+
+		private static final long serialVersionUID = 1L;
+
+		/** Points of the plot. */
+		private long[] evaluations = new long[256];
+		private double[] scores = new double[256];
+		private int nPoints = 0;
+
+		/** Adds a point. */
+		void add(long evaluation, double score){
+			if (Double.isInfinite(score))
+				return;
+			if (nPoints == evaluations.length){
+				evaluations = Arrays.copyOf(evaluations, nPoints * 2);
+				scores = Arrays.copyOf(scores, nPoints * 2);
+			}
+			evaluations[nPoints] = evaluation;
+			scores[nPoints] = score;
+			nPoints++;
+		}
+
+		/** Draws the plot. */
+		public void paintComponent(Graphics g){
+			int width = getWidth(), height = getHeight();
+			g.setColor(Color.white);
+			g.fillRect(0, 0, width, height);
+			if (nPoints < 2)
+				return;
+			double minScore = scores[0], maxScore = scores[0];
+			for (int i = 1; i < nPoints; i++){
+				minScore = Math.min(minScore, scores[i]);
+				maxScore = Math.max(maxScore, scores[i]);
+			}
+			double scoreRange = Math.max(maxScore - minScore, 1e-9);
+			double evaluationRange = Math.max(evaluations[nPoints-1], 1);
+			g.setColor(Color.blue);
+			for (int i = 1; i < nPoints; i++){
+				g.drawLine((int) (evaluations[i-1] / evaluationRange * (width-1)), (int) ((scores[i-1] - minScore) / scoreRange * (height-1)),
+						(int) (evaluations[i] / evaluationRange * (width-1)), (int) ((scores[i] - minScore) / scoreRange * (height-1)));
+			}
+			g.setColor(Color.black);
+			g.drawString("Best score: " + scores[nPoints-1], 5, 15);
+		}
+
+		/** Returns the dimension of the component.*/
+		public Dimension getPreferredSize(){
+			return new Dimension(400, 150);
+		}
+	}
+}
@@ -0,0 +1,32 @@
+package benchmarks;
+
+/**
+ * A piece of code whose time per operation is measured by BenchmarkRunner.
+ * setUp() is called once, before the warmup, and must fix every seed, so
+ * that all the runs of a benchmark do the same work.
+ */
+public abstract class Benchmark {
+
+	/** Name of the benchmark (for example, CarModel.next/Track2). */
+	private final String name;
+
+	/** Creates a benchmark with a certain name. */
+	protected Benchmark(String name){
+		this.name = name;
+	}
+
+	/** Returns the name of the benchmark. */
+	public String getName(){
+		return name;
+	}
+
+	/** Prepares the benchmark. */
+	public void setUp(){
+	}
+
+	/**
+	 * Carries out one operation. Returns a value which depends on the work
+	 * done, so that the compiler can not remove it.
+	 */
+	public abstract double run();
+}
@@ -0,0 +1,225 @@
+package benchmarks;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures the time per operation of a benchmark, as JMH does in its
+ * average time mode: first some warmup iterations (which are discarded, and
+ * also fix how many operations are run between two readings of the clock),
+ * then some measured iterations of a fixed duration.
+ *
+ * Besides the time, reports the bytes allocated per operation (read from
+ * the allocation counter of the thread, which is exact and costs nothing
+ * while the benchmark runs) and the collections made by the garbage
+ * collector during the measured iterations.
+ *
+ * A runner measures benchmarks in the JVM where it runs, so what was run
+ * before (the classes compiled, the types seen at each call) affects them.
+ * Benchmarks therefore runs each benchmark in JVMs of its own by default.
+ */
+public class BenchmarkRunner {
+
+	/** Number of iterations. */
+	private final int warmupIterations;
+	private final int iterations;
+
+	/** Duration of each iteration, in milliseconds. */
+	private final long iterationTime;
+
+	/** Time of the batches of operations between two readings of the clock. */
+	private static final long minBatchNanos = 100000;
+
+	/** Receives the results of the operations, so that they are not removed. */
+	private volatile double sink;
+
+	/** Results of a benchmark. */
+	public static class Result {
+		/** Name of the benchmark. */
+		public String name;
+		/** Mean time per operation, and its standard deviation between iterations, in nanoseconds. */
+		public double nanosPerOp;
+		public double error;
+		/** Time per operation of each measured iteration, in nanoseconds. */
+		public double[] samples;
+		/** Operations measured. */
+		public long operations;
+		/** Bytes allocated per operation (-1 if the JVM can not measure it). */
+		public double bytesPerOp;
+		/** Collections and time spent in them (milliseconds) during the measured iterations. */
+		public long gcCount;
+		public long gcTime;
+
+		public String toString(){
+			return String.format("%-60s %14.1f +- %10.1f ns/op %12.1f B/op %6d gc %6d ms",
+					name, nanosPerOp, error, bytesPerOp, gcCount, gcTime);
+		}
+
+		/** Start of the lines written by encode. */
+		public static final String PREFIX = "#result";
+
+		/** Writes the result in a line, so that it can be passed from a forked JVM (see decode). */
+		public String encode(){
+			StringBuilder line = new StringBuilder(PREFIX);
+			line.append('\t').append(name).append('\t').append(operations).append('\t').append(bytesPerOp)
+				.append('\t').append(gcCount).append('\t').append(gcTime);
+			for (double sample : samples)
+				line.append('\t').append(sample);
+			return line.toString();
+		}
+
+		/** Reads a result written by encode. */
+		public static Result decode(String line){
+			String[] fields = line.split("\t");
+			Result result = new Result();
+			result.name = fields[1];
+			result.operations = Long.parseLong(fields[2]);
+			result.bytesPerOp = Double.parseDouble(fields[3]);
+			result.gcCount = Long.parseLong(fields[4]);
+			result.gcTime = Long.parseLong(fields[5]);
+			result.samples = new double[fields.length - 6];
+			for (int i = 0; i < result.samples.length; i++)
+				result.samples[i] = Double.parseDouble(fields[6 + i]);
+			result.nanosPerOp = mean(result.samples);
+			result.error = deviation(result.samples, result.nanosPerOp);
+			return result;
+		}
+
+		/**
+		 * Merges the results of several runs of the same benchmark (in
+		 * different JVMs): the mean and the deviation are those of all
+		 * their iterations together.
+		 */
+		public static Result merge(List<Result> results){
+			Result merged = new Result();
+			merged.name = results.get(0).name;
+			List<Double> samples = new ArrayList<Double>();
+			double bytes = 0;
+			for (Result result : results){
+				for (double sample : result.samples)
+					samples.add(sample);
+				merged.operations += result.operations;
+				merged.gcCount += result.gcCount;
+				merged.gcTime += result.gcTime;
+				if (result.bytesPerOp < 0 || bytes < 0)
+					bytes = -1;
+				else
+					bytes += result.bytesPerOp * result.operations;
+			}
+			merged.samples = new double[samples.size()];
+			for (int i = 0; i < merged.samples.length; i++)
+				merged.samples[i] = samples.get(i);
+			merged.nanosPerOp = mean(merged.samples);
+			merged.error = deviation(merged.samples, merged.nanosPerOp);
+			merged.bytesPerOp = bytes < 0 ? -1 : bytes / merged.operations;
+			return merged;
+		}
+	}
+
+	/** Creates a runner. */
+	public BenchmarkRunner(int warmupIterations, int iterations, long iterationTime){
+		this.warmupIterations = warmupIterations;
+		this.iterations = iterations;
+		this.iterationTime = iterationTime;
+	}
+
+	/** Runs a benchmark and returns its results. */
+	public Result run(Benchmark benchmark){
+		benchmark.setUp();
+
+		// Warmup. Doubles the batch until it takes enough time to read the clock rarely.
+		int batch = 1;
+		for (int i = 0; i < warmupIterations; i++){
+			long end = System.nanoTime() + iterationTime * 1000000;
+			long now;
+			do {
+				long start = System.nanoTime();
+				runBatch(benchmark, batch);
+				now = System.nanoTime();
+				if (now - start < minBatchNanos && batch < (1 << 30))
+					batch *= 2;
+			} while (now < end);
+		}
+
+		// Measured iterations.
+		double[] nanosPerOp = new double[iterations];
+		long operations = 0;
+		long bytes = 0;
+		long gcCount = -gcCount();
+		long gcTime = -gcTime();
+		for (int i = 0; i < iterations; i++){
+			long ops = 0;
+			long allocated = allocatedBytes();
+			long start = System.nanoTime();
+			long end = start + iterationTime * 1000000;
+			long now;
+			do {
+				runBatch(benchmark, batch);
+				ops += batch;
+				now = System.nanoTime();
+			} while (now < end);
+			bytes += allocatedBytes() - allocated;
+			nanosPerOp[i] = (double) (now - start) / ops;
+			operations += ops;
+		}
+
+		Result result = new Result();
+		result.name = benchmark.getName();
+		result.operations = operations;
+		result.samples = nanosPerOp;
+		result.nanosPerOp = mean(nanosPerOp);
+		result.error = deviation(nanosPerOp, result.nanosPerOp);
+		result.bytesPerOp = allocatedBytes() < 0 ? -1 : (double) bytes / operations;
+		result.gcCount = gcCount + gcCount();
+		result.gcTime = gcTime + gcTime();
+		return result;
+	}
+
+	/** Runs a number of operations. */
+	private void runBatch(Benchmark benchmark, int batch){
+		double sum = 0;
+		for (int i = 0; i < batch; i++)
+			sum += benchmark.run();
+		sink = sum;
+	}
+
+	/** Bytes allocated by this thread, or -1 if the JVM can not measure it. */
+	private static long allocatedBytes(){
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean)
+			return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+		return -1;
+	}
+
+	/** Number of collections since the start of the JVM. */
+	private static long gcCount(){
+		long count = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+			count += Math.max(0, gc.getCollectionCount());
+		return count;
+	}
+
+	/** Time spent in collections since the start of the JVM, in milliseconds. */
+	private static long gcTime(){
+		long time = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+			time += Math.max(0, gc.getCollectionTime());
+		return time;
+	}
+
+	private static double mean(double[] values){
+		double sum = 0;
+		for (double value : values)
+			sum += value;
+		return sum / values.length;
+	}
+
+	private static double deviation(double[] values, double mean){
+		double sum = 0;
+		for (double value : values)
+			sum += (value - mean) * (value - mean);
+		return values.length > 1 ? Math.sqrt(sum / (values.length - 1)) : 0;
+	}
+}
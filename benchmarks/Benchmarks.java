@@ -0,0 +1,663 @@
+package benchmarks;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+import carracing.CarModel;
+import carracing.ControllerEvaluation;
+import carracing.EvaluationContext;
+import carracing.MultiCarSimulation;
+import carracing.SensorLayout;
+import carracing.TrajectoryRecorder;
+import carracing.controllers.Controller;
+import carracing.controllers.ControllerCompiler;
+import carracing.controllers.InputQuantizer;
+import carracing.controllers.LinearController;
+import carracing.controllers.MLPController;
+import carracing.controllers.TableController;
+import carracing.tracks.AimChain;
+import carracing.tracks.AimChainIndex;
+import carracing.tracks.MappedTrack;
+import carracing.tracks.ShapeTrack;
+import carracing.tracks.TrackCompiler;
+import carracing.tracks.TrackGenerator;
+import carracing.tracks.TrackLoader;
+import carracing.utils.Vector2d;
+import optimization.Configuration;
+import optimization.SearchAlgorithm;
+import optimization.algorithms.genetic.CrossoverScheme;
+import optimization.algorithms.genetic.GeneticAlgorithm;
+import optimization.algorithms.genetic.ReplacementScheme;
+import optimization.algorithms.genetic.SelectionScheme;
+import optimization.algorithms.localsearch.HillClimbing;
+import optimization.problems.CarRacingProblem;
+
+/**
+ * Benchmarks of the hot paths of the simulation and the searches. All of them
+ * use fixed seeds, so that their results can be compared between versions.
+ *
+ * Takes optional arguments: -wi (warmup iterations), -i (measured iterations),
+ * -t (milliseconds per iteration), -f (forks) and a regular expression which
+ * selects the benchmarks by name.
+ *
+ * As JMH does, each benchmark runs in new JVMs (one per fork, 1 by default),
+ * with the same JVM options as this one, so that the benchmarks run before
+ * do not change the code compiled for it. With -f 0 all of them run in this
+ * JVM, one after another.
+ *
+ * Example:
+ * 				java benchmarks.Benchmarks -wi 5 -i 5 -t 1000 "CarModel.*"
+ */
+public class Benchmarks {
+
+	/** Seed of all the random number generators. */
+	static final long seed = 42;
+
+	/** Tracks used by the simulation benchmarks. */
+	static final String[] tracks = {"Track1", "Track2", "Track3"};
+
+	/** Modes of the sensors (see wallSensor): testing every step, marching and with the grid. */
+	static final String[] sensorModes = {"", "marching", "grid"};
+
+	/** Number of precomputed inputs which the benchmarks go through. */
+	static final int nSamples = 1024;
+
+	/** Lengths of the segments of the walls of the generated tracks (shorter segments give more figures). */
+	static final double[] segmentLengths = {40, 10, 2.5};
+
+	/** Numbers of cars of the multi-car benchmarks. */
+	static final int[] carCounts = {10, 100};
+
+	/** Hidden layers of the benchmarked perceptron, and rows of its batches. */
+	static final int[] mlpSizes = {8, 32, 32, 2};
+	static final int batchSize = 64;
+
+	/** Size of the population of the genetic algorithm. */
+	static final int populationSize = 20;
+
+	public static void main(String[] args){
+		int warmupIterations = 5, iterations = 5;
+		long iterationTime = 1000;
+		int forks = 1;
+		boolean forked = false;
+		Pattern filter = Pattern.compile(".*");
+		for (int i = 0; i < args.length; i++){
+			if (args[i].equals("-wi"))
+				warmupIterations = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-i"))
+				iterations = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-t"))
+				iterationTime = Long.parseLong(args[++i]);
+			else if (args[i].equals("-f"))
+				forks = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-forked"))
+				forked = true;
+			else
+				filter = Pattern.compile(args[i]);
+		}
+
+		BenchmarkRunner runner = new BenchmarkRunner(warmupIterations, iterations, iterationTime);
+		List<BenchmarkRunner.Result> results = new ArrayList<BenchmarkRunner.Result>();
+		for (Benchmark benchmark : all()){
+			if (!filter.matcher(benchmark.getName()).matches())
+				continue;
+			BenchmarkRunner.Result result;
+			if (forks > 0)
+				result = fork(benchmark.getName(), forks, warmupIterations, iterations, iterationTime);
+			else
+				result = runner.run(benchmark);
+			System.out.println(forked ? result.encode() : result.toString());
+			results.add(result);
+		}
+
+		if (forked)
+			return;
+		System.out.println("\nRESULTS:");
+		for (BenchmarkRunner.Result result : results)
+			System.out.println(result);
+	}
+
+	/**
+	 * Runs a benchmark in new JVMs, one after another, and merges their
+	 * measured iterations. Each JVM runs this class with -f 0 and only that
+	 * benchmark, and writes its result encoded in a line.
+	 */
+	static BenchmarkRunner.Result fork(String name, int forks, int warmupIterations, int iterations, long iterationTime){
+		List<String> command = new ArrayList<String>();
+		command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+		command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add(Benchmarks.class.getName());
+		command.add("-f");
+		command.add("0");
+		command.add("-forked");
+		command.add("-wi");
+		command.add(String.valueOf(warmupIterations));
+		command.add("-i");
+		command.add(String.valueOf(iterations));
+		command.add("-t");
+		command.add(String.valueOf(iterationTime));
+		command.add(Pattern.quote(name));
+
+		List<BenchmarkRunner.Result> results = new ArrayList<BenchmarkRunner.Result>();
+		for (int f = 0; f < forks; f++){
+			BenchmarkRunner.Result result = null;
+			try {
+				Process process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+				BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
+				String line;
+				while ((line = reader.readLine()) != null){
+					if (line.startsWith(BenchmarkRunner.Result.PREFIX))
+						result = BenchmarkRunner.Result.decode(line);
+					else
+						System.out.println(line);
+				}
+				int status = process.waitFor();
+				if (status != 0 || result == null)
+					throw new IllegalStateException("The fork of " + name + " failed (exit status " + status + ").");
+			} catch (IOException e){
+				throw new IllegalStateException("The fork of " + name + " could not be run.", e);
+			} catch (InterruptedException e){
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while running " + name + ".", e);
+			}
+			results.add(result);
+		}
+		return BenchmarkRunner.Result.merge(results);
+	}
+
+	/** Returns all the benchmarks. */
+	static List<Benchmark> all(){
+		List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+		for (String track : tracks)
+			benchmarks.add(okay(track));
+		for (double segmentLength : segmentLengths){
+			benchmarks.add(generatedOkay(segmentLength, false));
+			benchmarks.add(generatedOkay(segmentLength, true));
+		}
+		benchmarks.add(closestAimPoint(false));
+		benchmarks.add(closestAimPoint(true));
+		for (boolean fastMath : new boolean[] {false, true}){
+			for (String mode : sensorModes)
+				for (String track : tracks)
+					benchmarks.add(wallSensor(track, fastMath, mode));
+			for (String track : tracks)
+				benchmarks.add(next(track, fastMath));
+			for (String track : tracks)
+				benchmarks.add(evaluate(track, fastMath));
+		}
+		for (int nCars : carCounts)
+			benchmarks.add(multiCar("Track1", nCars));
+		benchmarks.add(genAction(false));
+		benchmarks.add(genAction(true));
+		benchmarks.add(compile());
+		for (boolean compiled : new boolean[] {false, true})
+			for (String track : tracks)
+				benchmarks.add(evaluateRandom(track, compiled));
+		benchmarks.add(tableGenAction());
+		benchmarks.add(mlpGenAction());
+		benchmarks.add(mlpForward(batchSize));
+
+		// Each scheme of the genetic algorithm, with the default ones for the other operators.
+		for (SelectionScheme selection : SelectionScheme.values())
+			benchmarks.add(generation(selection, CrossoverScheme.SIMPLE, ReplacementScheme.REPLACEMENT));
+		for (CrossoverScheme crossover : CrossoverScheme.values())
+			if (crossover != CrossoverScheme.SIMPLE)
+				benchmarks.add(generation(SelectionScheme.TOURNAMENT, crossover, ReplacementScheme.REPLACEMENT));
+		for (ReplacementScheme replacement : ReplacementScheme.values())
+			if (replacement != ReplacementScheme.REPLACEMENT)
+				benchmarks.add(generation(SelectionScheme.TOURNAMENT, CrossoverScheme.SIMPLE, replacement));
+
+		benchmarks.add(neighborhood("Track2"));
+		return benchmarks;
+	}
+
+	/** ShapeTrack.okay on random points of the window. */
+	static Benchmark okay(final String trackName){
+		return new Benchmark("ShapeTrack.okay/" + trackName){
+			ShapeTrack track;
+			double[] x = new double[nSamples], y = new double[nSamples];
+			int sample;
+
+			public void setUp(){
+				track = TrackLoader.getTrack("carracing.tracks." + trackName);
+				Random random = new Random(seed);
+				for (int i = 0; i < nSamples; i++){
+					x[i] = random.nextDouble() * 1040;
+					y[i] = random.nextDouble() * 640;
+				}
+			}
+
+			public double run(){
+				sample = (sample + 1) & (nSamples - 1);
+				return track.okay(x[sample], y[sample]) ? 1 : 0;
+			}
+		};
+	}
+
+	/**
+	 * ShapeTrack.okay on random points of a generated track, either as it is
+	 * generated or compiled (see TrackCompiler), to see how the cost grows
+	 * with the number of figures.
+	 */
+	static Benchmark generatedOkay(final double segmentLength, final boolean compiled){
+		return new Benchmark("ShapeTrack.okay/Generated-" + segmentLength + (compiled ? "-compiled" : "")){
+			ShapeTrack track;
+			double[] x = new double[nSamples], y = new double[nSamples];
+			int sample;
+
+			public void setUp(){
+				TrackGenerator generator = new TrackGenerator(seed);
+				generator.setSegmentLength(segmentLength);
+				generator.setObstacles(20);
+				track = generator.generate();
+				if (compiled){
+					try {
+						File file = File.createTempFile("generated", ".ctrack");
+						file.deleteOnExit();
+						TrackCompiler.compile(track, file, TrackCompiler.DEFAULT_CELL_SIZE);
+						track = new MappedTrack(file);
+					} catch (IOException e){
+						throw new RuntimeException(e);
+					}
+				}
+				Random random = new Random(seed);
+				for (int i = 0; i < nSamples; i++){
+					x[i] = random.nextDouble() * 1040;
+					y[i] = random.nextDouble() * 640;
+				}
+			}
+
+			public double run(){
+				sample = (sample + 1) & (nSamples - 1);
+				return track.okay(x[sample], y[sample]) ? 1 : 0;
+			}
+		};
+	}
+
+	/**
+	 * Closest aim point of positions near a large generated track (about
+	 * 4000 aim points), with AimChain.getClosestIndex or with AimChainIndex.
+	 */
+	static Benchmark closestAimPoint(final boolean indexed){
+		return new Benchmark(indexed ? "AimChainIndex.nearest/Generated" : "AimChain.getClosestIndex/Generated"){
+			AimChain chain;
+			AimChainIndex index;
+			Vector2d[] positions = new Vector2d[nSamples];
+			int sample;
+
+			public void setUp(){
+				TrackGenerator generator = new TrackGenerator(seed);
+				generator.setSize(40000, 30000);
+				generator.setTrackWidth(150);
+				generator.setSegmentLength(8);
+				generator.setAimSpacing(20);
+				chain = generator.generate().getAimchain();
+				index = new AimChainIndex(chain);
+				Random random = new Random(seed);
+				for (int i = 0; i < nSamples; i++){
+					Vector2d point = chain.getPoint(random.nextInt(chain.nPoints()));
+					positions[i] = new Vector2d(point.x + random.nextGaussian() * 50, point.y + random.nextGaussian() * 50);
+				}
+			}
+
+			public double run(){
+				sample = (sample + 1) & (nSamples - 1);
+				Vector2d position = positions[sample];
+				return indexed ? index.nearest(position.x, position.y) : chain.getClosestIndex(position);
+			}
+		};
+	}
+
+	/**
+	 * Name of a benchmark of the simulation, marking those which use the
+	 * approximated trigonometric functions (see CarModel.setFastMath).
+	 */
+	static String name(String method, String trackName, boolean fastMath){
+		return method + "/" + trackName + (fastMath ? "-fastmath" : "");
+	}
+
+	/**
+	 * CarModel.wallSensor: all the sensors, from the positions of a lap of the
+	 * default controller, with the sensors of a mode ("", "marching" or "grid",
+	 * see CarModel.marchingWallSensor and CarModel.gridWallSensor).
+	 */
+	static Benchmark wallSensor(final String trackName, final boolean fastMath, final String mode){
+		return new Benchmark(name("CarModel." + (mode.isEmpty() ? "wallSensor" : mode + "WallSensor"), trackName, fastMath)){
+			ShapeTrack track;
+			TrajectoryRecorder lap;
+			CarModel model = new CarModel();
+			SensorLayout layout = SensorLayout.DEFAULT;
+			int frame;
+
+			public void setUp(){
+				track = TrackLoader.getTrack("carracing.tracks." + trackName);
+				lap = recordLap(track);
+				model.setFastMath(fastMath);
+				model.setMarchingSensors(mode.equals("marching"));
+				model.setGridSensors(mode.equals("grid"));
+			}
+
+			public double run(){
+				frame = (frame + 1) % lap.size();
+				model.place(lap.get(frame, TrajectoryRecorder.X), lap.get(frame, TrajectoryRecorder.Y), lap.get(frame, TrajectoryRecorder.HEADING));
+				double sum = 0;
+				for (int i = 0; i < layout.size(); i++)
+					sum += model.wallSensor(track, layout.getAngle(i), layout.getSteps(), layout.getRangePerStep(i));
+				return sum;
+			}
+		};
+	}
+
+	/** CarModel.next: replays the actions of a lap of the default controller. */
+	static Benchmark next(final String trackName, final boolean fastMath){
+		return new Benchmark(name("CarModel.next", trackName, fastMath)){
+			ShapeTrack track;
+			TrajectoryRecorder lap;
+			CarModel model = new CarModel();
+			int frame;
+
+			public void setUp(){
+				track = TrackLoader.getTrack("carracing.tracks." + trackName);
+				lap = recordLap(track);
+				model.setFastMath(fastMath);
+				model.fixCarStartingPosition(track);
+			}
+
+			public double run(){
+				if (frame == lap.size()){
+					frame = 0;
+					model.fixCarStartingPosition(track);
+				}
+				model.drive(lap.getPower(frame), lap.getSteer(frame));
+				model.next(track);
+				frame++;
+				return model.getPosition().x;
+			}
+		};
+	}
+
+	/** A full ControllerEvaluation.evaluate of the default linear controller. */
+	static Benchmark evaluate(final String trackName, final boolean fastMath){
+		return new Benchmark(name("ControllerEvaluation.evaluate", trackName, fastMath)){
+			ControllerEvaluation evaluation;
+
+			public void setUp(){
+				ShapeTrack track = TrackLoader.getTrack("carracing.tracks." + trackName);
+				EvaluationContext context = new EvaluationContext();
+				context.getModel().setFastMath(fastMath);
+				evaluation = new ControllerEvaluation(track, new LinearController(), context);
+			}
+
+			public double run(){
+				double[] results = evaluation.evaluate();
+				return results[0] + results[1];
+			}
+		};
+	}
+
+	/** A whole MultiCarSimulation of random linear controllers (the time should grow linearly with the cars). */
+	static Benchmark multiCar(final String trackName, final int nCars){
+		return new Benchmark("MultiCarSimulation.run/" + trackName + "-" + nCars){
+			MultiCarSimulation simulation;
+
+			public void setUp(){
+				ShapeTrack track = TrackLoader.getTrack("carracing.tracks." + trackName);
+				Random random = new Random(seed);
+				Controller[] controllers = new Controller[nCars];
+				for (int c = 0; c < nCars; c++){
+					LinearController controller = new LinearController();
+					controller.setParameters(randomLinear(random));
+					controllers[c] = controller;
+				}
+				simulation = new MultiCarSimulation(track, controllers);
+			}
+
+			public double run(){
+				double[][] results = simulation.run();
+				return results[0][0] + results[0][1];
+			}
+		};
+	}
+
+	/** Builds a perceptron with mlpSizes and random weights. */
+	static MLPController randomMLP(){
+		MLPController controller = new MLPController(mlpSizes);
+		Random random = new Random(seed);
+		double[] parameters = new double[controller.nParameters()];
+		for (int j = 0; j < parameters.length; j++)
+			parameters[j] = random.nextDouble() * 2 - 1;
+		controller.setParameters(parameters);
+		return controller;
+	}
+
+	/** MLPController.genAction, one input at a time. */
+	static Benchmark mlpGenAction(){
+		return new Benchmark("MLPController.genAction/8-32-32-2"){
+			MLPController controller;
+			double[][] inputs = new double[nSamples][8];
+			int sample;
+
+			public void setUp(){
+				controller = randomMLP();
+				Random random = new Random(seed);
+				for (int i = 0; i < nSamples; i++)
+					for (int j = 0; j < 8; j++)
+						inputs[i][j] = random.nextDouble();
+			}
+
+			public double run(){
+				sample = (sample + 1) & (nSamples - 1);
+				double[] actions = controller.genAction(inputs[sample]);
+				return actions[0] + actions[1];
+			}
+		};
+	}
+
+	/** MLPController.forward of a batch (the time per row is the time divided by the batch). */
+	static Benchmark mlpForward(final int batch){
+		return new Benchmark("MLPController.forward/8-32-32-2-batch" + batch){
+			MLPController controller;
+			double[] inputs = new double[batch * 8];
+			double[] outputs = new double[batch * 2];
+
+			public void setUp(){
+				controller = randomMLP();
+				Random random = new Random(seed);
+				for (int i = 0; i < inputs.length; i++)
+					inputs[i] = random.nextDouble();
+			}
+
+			public double run(){
+				controller.forward(inputs, batch, outputs);
+				return outputs[0];
+			}
+		};
+	}
+
+	/** Random inputs of the default layout of sensors. */
+	static double[][] randomInputs(){
+		double[][] inputs = new double[nSamples][];
+		Random random = new Random(seed);
+		int nInputs = SensorLayout.DEFAULT.size() + 3;
+		for (int i = 0; i < nSamples; i++){
+			inputs[i] = new double[nInputs];
+			for (int j = 0; j < SensorLayout.DEFAULT.size(); j++)
+				inputs[i][j] = random.nextDouble();
+			inputs[i][nInputs - 3] = random.nextDouble() * 20;
+			inputs[i][nInputs - 2] = (random.nextDouble() - 0.5) * Math.PI;
+			inputs[i][nInputs - 1] = (random.nextDouble() - 0.5) * Math.PI;
+		}
+		return inputs;
+	}
+
+	/** LinearController.genAction on random inputs, or the same controller compiled by ControllerCompiler. */
+	static Benchmark genAction(final boolean compiled){
+		return new Benchmark(compiled ? "ControllerCompiler.genAction" : "LinearController.genAction"){
+			Controller controller;
+			double[][] inputs = randomInputs();
+			int sample;
+
+			public void setUp(){
+				LinearController linear = new LinearController();
+				controller = compiled ? ControllerCompiler.compile(linear.getParameters()) : linear;
+			}
+
+			public double run(){
+				sample = (sample + 1) & (nSamples - 1);
+				double[] actions = controller.genAction(inputs[sample]);
+				return actions[0] + actions[1];
+			}
+		};
+	}
+
+	/** TableController.genAction, with the default linear controller distilled into a table. */
+	static Benchmark tableGenAction(){
+		return new Benchmark("TableController.genAction"){
+			TableController controller;
+			double[][] inputs = randomInputs();
+			int sample;
+
+			public void setUp(){
+				InputQuantizer quantizer = InputQuantizer.standard(SensorLayout.DEFAULT.size(), 4, 10, 3, 5);
+				controller = TableController.distill(new Supplier<Controller>(){
+					public Controller get(){
+						return new LinearController();
+					}
+				}, quantizer, 1, seed, 1);
+			}
+
+			public double run(){
+				sample = (sample + 1) & (nSamples - 1);
+				double[] actions = controller.genAction(inputs[sample]);
+				return actions[0] + actions[1];
+			}
+		};
+	}
+
+	/** Random parameters of a linear controller. */
+	static double[] randomLinear(Random random){
+		double[] parameters = new double[LinearController.NUM_COEFFICIENTS];
+		for (int j = 0; j < parameters.length; j++)
+			parameters[j] = LinearController.RANGES[0][j] + random.nextDouble() * (LinearController.RANGES[1][j] - LinearController.RANGES[0][j]);
+		return parameters;
+	}
+
+	/** ControllerCompiler.compile of random parameters (writing and defining the class, without the cache). */
+	static Benchmark compile(){
+		return new Benchmark("ControllerCompiler.compile"){
+			Random random = new Random(seed);
+
+			public double run(){
+				Controller controller = ControllerCompiler.compile(randomLinear(random));
+				return controller.hashCode();
+			}
+		};
+	}
+
+	/**
+	 * A full evaluation of new random parameters every time, as in a search,
+	 * either with a LinearController or compiling them first with
+	 * ControllerCompiler (so the compilation is included).
+	 */
+	static Benchmark evaluateRandom(final String trackName, final boolean compiled){
+		return new Benchmark("ControllerEvaluation.evaluate-random/" + trackName + (compiled ? "-compiled" : "")){
+			ControllerEvaluation evaluation;
+			Random random = new Random(seed);
+
+			public void setUp(){
+				ShapeTrack track = TrackLoader.getTrack("carracing.tracks." + trackName);
+				evaluation = new ControllerEvaluation(track, new LinearController(), new EvaluationContext());
+			}
+
+			public double run(){
+				double[] parameters = randomLinear(random);
+				if (compiled)
+					evaluation.setController(ControllerCompiler.compile(parameters));
+				else {
+					LinearController controller = new LinearController();
+					controller.setParameters(parameters);
+					evaluation.setController(controller);
+				}
+				double[] results = evaluation.evaluate();
+				return results[0] + results[1];
+			}
+		};
+	}
+
+	/**
+	 * One generation of the genetic algorithm on Track2, always from the
+	 * same population and with the same seed.
+	 */
+	static Benchmark generation(final SelectionScheme selection, final CrossoverScheme crossover, final ReplacementScheme replacement){
+		return new Benchmark("GeneticAlgorithm.generation/" + selection + "-" + crossover + "-" + replacement){
+			GeneticAlgorithm algorithm;
+			Configuration[] population;
+
+			public void setUp(){
+				CarRacingProblem problem = new CarRacingProblem();
+				problem.setTrack(TrackLoader.getTrack("carracing.tracks.Track2"));
+				SearchAlgorithm.generator.setSeed(seed);
+				algorithm = new GeneticAlgorithm();
+				algorithm.setProblem(problem);
+				// Stops after one generation, which gives an evaluated population.
+				algorithm.setParams(new String[]{"" + populationSize, "" + selection.ordinal(), "" + crossover.ordinal(),
+						"" + replacement.ordinal(), "0", "1"});
+				algorithm.search();
+				population = algorithm.getPopulation();
+			}
+
+			public double run(){
+				SearchAlgorithm.generator.setSeed(seed);
+				Configuration[] next = algorithm.nextGeneration(population);
+				return next[0].score();
+			}
+		};
+	}
+
+	/** Generation and evaluation of the neighborhood of a configuration by hill climbing. */
+	static Benchmark neighborhood(final String trackName){
+		return new Benchmark("HillClimbing.neighborhood/" + trackName){
+			CarRacingProblem problem;
+			HillClimbing algorithm;
+			Configuration configuration;
+
+			public void setUp(){
+				problem = new CarRacingProblem();
+				problem.setTrack(TrackLoader.getTrack("carracing.tracks." + trackName));
+				SearchAlgorithm.generator.setSeed(seed);
+				algorithm = new HillClimbing();
+				algorithm.setProblem(problem);
+				algorithm.setParams(new String[]{"0.1"});
+				configuration = new Configuration(new LinearController().getParameters());
+			}
+
+			public double run(){
+				SearchAlgorithm.generator.setSeed(seed);
+				double sum = 0;
+				for (Configuration neighbor : algorithm.generateNeighborhood(configuration))
+					sum += problem.score(neighbor);
+				return sum;
+			}
+		};
+	}
+
+	/** Records a lap of the default linear controller in a track. */
+	static TrajectoryRecorder recordLap(ShapeTrack track){
+		EvaluationContext context = new EvaluationContext();
+		ControllerEvaluation evaluation = new ControllerEvaluation(track, new LinearController(), context);
+		TrajectoryRecorder recorder = new TrajectoryRecorder(context.getLayout().size(), 2000);
+		evaluation.setRecorder(recorder);
+		evaluation.evaluate();
+		return recorder;
+	}
+}
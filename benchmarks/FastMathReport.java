@@ -0,0 +1,104 @@
+package benchmarks;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import carracing.ControllerEvaluation;
+import carracing.EvaluationContext;
+import carracing.controllers.LinearController;
+import carracing.tracks.ShapeTrack;
+import carracing.tracks.TrackLoader;
+
+/**
+ * Compares the evaluations of random linear controllers with the exact and
+ * the approximated trigonometric functions (see CarModel.setFastMath): how
+ * many results are identical, how much the lap times change, how many
+ * controllers finish the lap in only one of the modes, how often two
+ * controllers are ranked in the same order by their score (as in
+ * CarRacingProblem), and the time taken by each mode.
+ *
+ * Takes optional arguments: the number of controllers per track, the seed
+ * and the tracks.
+ *
+ * Example:
+ * 				java benchmarks.FastMathReport 1000 42 Track1 Track2 Track3
+ */
+public class FastMathReport {
+
+	/** Lap time given to controllers which do not finish the lap. */
+	static final double noLap = 100000;
+
+	public static void main(String[] args){
+		int n = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+		long seed = args.length > 1 ? Long.parseLong(args[1]) : 42;
+		String[] tracks = args.length > 2 ? Arrays.copyOfRange(args, 2, args.length) : Benchmarks.tracks;
+
+		for (String trackName : tracks){
+			ShapeTrack track = TrackLoader.getTrack("carracing.tracks." + trackName);
+			LinearController controller = new LinearController();
+			EvaluationContext fastContext = new EvaluationContext();
+			fastContext.getModel().setFastMath(true);
+			ControllerEvaluation exact = new ControllerEvaluation(track, controller, new EvaluationContext());
+			ControllerEvaluation fast = new ControllerEvaluation(track, controller, fastContext);
+
+			Random random = new Random(seed);
+			double[] exactScores = new double[n], fastScores = new double[n];
+			int identical = 0, finishedBoth = 0, finishedOne = 0;
+			double sumDifference = 0, maxDifference = 0;
+			long exactTime = 0, fastTime = 0;
+			for (int c = 0; c < n; c++){
+				double[] parameters = new double[LinearController.NUM_COEFFICIENTS];
+				for (int j = 0; j < parameters.length; j++)
+					parameters[j] = LinearController.RANGES[0][j] + random.nextDouble() * (LinearController.RANGES[1][j] - LinearController.RANGES[0][j]);
+				controller.setParameters(parameters);
+				long start = System.nanoTime();
+				double[] exactResults = exact.evaluate().clone();
+				exactTime += System.nanoTime() - start;
+				start = System.nanoTime();
+				double[] fastResults = fast.evaluate().clone();
+				fastTime += System.nanoTime() - start;
+
+				exactScores[c] = exactResults[0] - exactResults[1] / 1000;
+				fastScores[c] = fastResults[0] - fastResults[1] / 1000;
+				if (exactResults[0] == fastResults[0] && exactResults[1] == fastResults[1])
+					identical++;
+				boolean exactLap = exactResults[0] < noLap, fastLap = fastResults[0] < noLap;
+				if (exactLap && fastLap){
+					finishedBoth++;
+					double difference = Math.abs(exactResults[0] - fastResults[0]) / 1000;
+					sumDifference += difference;
+					maxDifference = Math.max(maxDifference, difference);
+				}
+				else if (exactLap || fastLap)
+					finishedOne++;
+			}
+
+			// Pairs of controllers ordered in the same way by both modes.
+			long pairs = 0, concordant = 0;
+			int bestExact = 0, bestFast = 0;
+			for (int a = 0; a < n; a++){
+				if (exactScores[a] < exactScores[bestExact]) bestExact = a;
+				if (fastScores[a] < fastScores[bestFast]) bestFast = a;
+				for (int b = a + 1; b < n; b++){
+					pairs++;
+					if (Math.signum(exactScores[a] - exactScores[b]) == Math.signum(fastScores[a] - fastScores[b]))
+						concordant++;
+				}
+			}
+
+			System.out.println(trackName + ", " + n + " controllers:");
+			System.out.println("  Identical results:            " + identical + " (" + percent(identical, n) + ")");
+			System.out.println("  Lap finished in both modes:   " + finishedBoth + ", lap time difference mean "
+					+ String.format("%.4f", finishedBoth > 0 ? sumDifference / finishedBoth : 0) + " s, max " + String.format("%.4f", maxDifference) + " s");
+			System.out.println("  Lap finished in one mode:     " + finishedOne);
+			System.out.println("  Pairs ranked in the same way: " + percent(concordant, pairs) + ", same best controller: " + (bestExact == bestFast));
+			System.out.println("  Time: exact " + exactTime / 1000000 + " ms, fast " + fastTime / 1000000 + " ms ("
+					+ String.format("%.2f", (double) exactTime / fastTime) + "x)");
+		}
+	}
+
+	/** Formats a fraction as a percentage. */
+	static String percent(long part, long total){
+		return String.format("%.2f%%", total > 0 ? 100.0 * part / total : 0);
+	}
+}
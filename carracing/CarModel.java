@@ -1,6 +1,11 @@
 package carracing;
 
+import java.util.Random;
+
+import carracing.tracks.Gate;
+import carracing.tracks.OccupancyGrid;
 import carracing.tracks.ShapeTrack;
+import carracing.utils.FastMath;
 import carracing.utils.Vector2d;
 import carracing.controllers.Controlable;
 
@@ -37,6 +42,18 @@ public class CarModel implements Controlable {
     private double speed; // Speed in the direction the car is oriented to.
     private double velocityMagnitude; // Speed in the direction the car is moving.
     private double directionOfMovement; // Direction (angle) of the car movement.
+
+    // Whether the trigonometric functions are approximated (see FastMath).
+    private boolean fastMath = false;
+
+    // Whether the sensors march along the rays with bisection (see marchingWallSensor).
+    private boolean marchingSensors = false;
+
+    // Whether the sensors skip points with the occupancy grid of the track (see gridWallSensor).
+    private boolean gridSensors = false;
+
+    // Sensor steps advanced at once by the marching sensors (see marchingWallSensor).
+    public static final int MARCH_STRIDE = 2;
  
     
     /** Car model*/
@@ -46,6 +63,42 @@ public class CarModel implements Controlable {
         oldPosition = new Vector2d ();
     }    
     
+    /**
+     * Selects the approximated trigonometric functions of FastMath (true)
+     * or the exact ones (false, by default) for the movement and the sensors.
+     * The approximation is faster, but lap times can change slightly.
+     */
+    public void setFastMath (boolean fastMath) { this.fastMath = fastMath; }
+
+    /** Returns true if the trigonometric functions are approximated. */
+    public boolean isFastMath () { return fastMath; }
+
+    /**
+     * Selects the marching sensors of marchingWallSensor (true) or the ones
+     * which test every step (false, by default). The marching sensors return
+     * continuous distances, so lap times can change.
+     */
+    public void setMarchingSensors (boolean marchingSensors) { this.marchingSensors = marchingSensors; }
+
+    /** Returns true if the sensors march with bisection. */
+    public boolean isMarchingSensors () { return marchingSensors; }
+
+    /**
+     * Selects the sensors of gridWallSensor (true), which return the same as
+     * the ones which test every step (false, by default). The marching sensors
+     * take precedence if both are selected.
+     */
+    public void setGridSensors (boolean gridSensors) { this.gridSensors = gridSensors; }
+
+    /** Returns true if the sensors use the occupancy grid of the track. */
+    public boolean isGridSensors () { return gridSensors; }
+
+    /** Trigonometric functions, exact or approximated depending on the mode. */
+    private double cos (double a) { return fastMath ? FastMath.cos (a) : Math.cos (a); }
+    private double sin (double a) { return fastMath ? FastMath.sin (a) : Math.sin (a); }
+    private double atan (double a) { return fastMath ? FastMath.atan (a) : Math.atan (a); }
+    private double atan2 (double y, double x) { return fastMath ? FastMath.atan2 (y, x) : Math.atan2 (y, x); }
+
     /** Returns the lenght of the car. */
     public int getLength () { return length; }
     
@@ -58,11 +111,20 @@ public class CarModel implements Controlable {
     
     /** Generates a random starting position (and orientation) */
     public void randomizeCarStartingPosition (ShapeTrack track) {
-        double[] positions = track.getRandomizedOrigins ();
+        place (track.getRandomizedOrigins ());
+    }
+
+    /** Generates a random starting position (and orientation) with a certain generator. */
+    public void randomizeCarStartingPosition (ShapeTrack track, Random random) {
+        place (track.getRandomizedOrigins (random));
+    }
+
+    /** Places the car, stopped, in a starting position (x, y, orientation). */
+    private void place (double[] positions) {
         position.x = (int) positions[0];
         position.y = (int) positions[1];
         orientation = positions[2];
-        velocity = new Vector2d ();
+        velocity.zero ();
         angularVelocity = 0;
         speed = 0;
         velocityMagnitude = 0;
@@ -73,25 +135,73 @@ public class CarModel implements Controlable {
         position.x = track.getFixedOriginX ();
         position.y = track.getFixedOriginY ();
         orientation = track.getFixedOriginHeading ();
-        velocity = new Vector2d ();
+        velocity.zero ();
         angularVelocity = 0;
         speed = 0;
         velocityMagnitude = 0;        
     }
     
+    /** Places the car in a position with a certain heading (used to replay recordings). */
+    public void place (double x, double y, double heading) {
+        position.x = x;
+        position.y = y;
+        orientation = heading;
+    }
+    
     /** Returns a vector with the velocity of the car. */
     public Vector2d getVelocity () { return velocity;}
+
+    /** Number of values stored by saveState. */
+    public static final int STATE_SIZE = 13;
+
+    /**
+     * Stores the state of the car (everything the movement depends on) in
+     * state, from offset, so that it can be restored later in this model or in
+     * another one. The modes (see setFastMath) are not part of the state.
+     */
+    public void saveState (double[] state, int offset) {
+        state[offset] = power;
+        state[offset + 1] = steering;
+        state[offset + 2] = velocity.x;
+        state[offset + 3] = velocity.y;
+        state[offset + 4] = position.x;
+        state[offset + 5] = position.y;
+        state[offset + 6] = oldPosition.x;
+        state[offset + 7] = oldPosition.y;
+        state[offset + 8] = orientation;
+        state[offset + 9] = angularVelocity;
+        state[offset + 10] = speed;
+        state[offset + 11] = velocityMagnitude;
+        state[offset + 12] = directionOfMovement;
+    }
+
+    /** Restores a state stored by saveState, from offset. */
+    public void restoreState (double[] state, int offset) {
+        power = state[offset];
+        steering = state[offset + 1];
+        velocity.x = state[offset + 2];
+        velocity.y = state[offset + 3];
+        position.x = state[offset + 4];
+        position.y = state[offset + 5];
+        oldPosition.x = state[offset + 6];
+        oldPosition.y = state[offset + 7];
+        orientation = state[offset + 8];
+        angularVelocity = state[offset + 9];
+        speed = state[offset + 10];
+        velocityMagnitude = state[offset + 11];
+        directionOfMovement = state[offset + 12];
+    }
     
     /** Calculates some parameters defining the state of the car */
     private void calculateSpeeds () {
     	// Velocity of the car
         velocityMagnitude = velocity.mag();
         // Angle of the movement.
-        directionOfMovement = Math.atan2 (velocity.y, velocity.x);
+        directionOfMovement = atan2 (velocity.y, velocity.x);
         // Difference between the speed of the movement and the orientation of the car.
         double directionDifference = directionOfMovement - orientation;
         // Velocity in the direction the car is oriented to.
-        speed = Math.cos (directionDifference) * velocityMagnitude;
+        speed = cos (directionDifference) * velocityMagnitude;
     } 
     
     /** Next functions are used to test the current state of the car. */
@@ -127,7 +237,7 @@ public class CarModel implements Controlable {
     public double angleBetweenPoints (Vector2d origin, Vector2d target) {
         double xDiff = target.x - origin.x;
         double yDiff = target.y - origin.y;
-        double angle = Math.atan (yDiff / xDiff);
+        double angle = atan (yDiff / xDiff);
 		if (xDiff < 0) angle += Math.PI;
 		if (angle < 0) angle += Math.PI * 2;
         return angle;
@@ -158,104 +268,229 @@ public class CarModel implements Controlable {
     /** Sensor of forbidden regions. Returns the distance the sensor detects 
      * an obstacle, or 1 in case there is no obstacle. */
     public double wallSensor (final ShapeTrack track, final double relativeAngle, final int sensorSteps, final int rangePerStep) {
-    	// Angle of the sensor
-        double sensorAngle = getHeading () + relativeAngle;
+        if (marchingSensors)
+            return marchingWallSensor (track, getPosition ().x, getPosition ().y, getHeading (), relativeAngle, sensorSteps, rangePerStep, fastMath);
+        if (gridSensors)
+            return gridWallSensor (track, getPosition ().x, getPosition ().y, getHeading (), relativeAngle, sensorSteps, rangePerStep, fastMath);
+        return wallSensor (track, getPosition ().x, getPosition ().y, getHeading (), relativeAngle, sensorSteps, rangePerStep, fastMath);
+    }
+
+    /**
+     * Reads all the sensors of a layout into activations, the same as wallSensor
+     * for each one. The direction of the car is calculated once, and that of each
+     * sensor follows from the cosine and sine of its relative angle.
+     */
+    public void readSensors (final ShapeTrack track, final SensorLayout layout, final double[] activations) {
+        double heading = getHeading ();
+        double cos = fastMath ? FastMath.cos (heading) : Math.cos (heading);
+        double sin = fastMath ? FastMath.sin (heading) : Math.sin (heading);
+        double x = getPosition ().x;
+        double y = getPosition ().y;
+        OccupancyGrid grid = gridSensors && ! marchingSensors ? track.getGrid () : null;
+        for (int i = 0; i < layout.size (); i++) {
+            double sensorCos = cos * layout.getCos (i) - sin * layout.getSin (i);
+            double sensorSin = sin * layout.getCos (i) + cos * layout.getSin (i);
+            if (marchingSensors)
+                activations[i] = march (track, x, y, sensorCos, sensorSin, layout.getSteps (), layout.getRangePerStep (i));
+            else if (grid != null)
+                activations[i] = gridScan (grid, x, y, sensorCos, sensorSin, layout.getSteps (), layout.getRangePerStep (i));
+            else
+                activations[i] = scan (track, x, y, sensorCos, sensorSin, layout.getSteps (), layout.getRangePerStep (i));
+        }
+    }
+
+    /** Sensor of forbidden regions for a car in a certain position and heading (which need not be 
+     * the ones of any model). Returns the same as the method of the model in that pose. */
+    public static double wallSensor (final ShapeTrack track, final double x, final double y, final double heading,
+            final double relativeAngle, final int sensorSteps, final int rangePerStep) {
+        return wallSensor (track, x, y, heading, relativeAngle, sensorSteps, rangePerStep, false);
+    }
+
+    /** Sensor of forbidden regions for a car in a certain pose, with exact or approximated
+     * trigonometric functions (see setFastMath). */
+    public static double wallSensor (final ShapeTrack track, final double x, final double y, final double heading,
+            final double relativeAngle, final int sensorSteps, final int rangePerStep, final boolean fastMath) {
+    	// Direction of the sensor (the same at every step), as in readSensors.
+        double cosHeading = fastMath ? FastMath.cos (heading) : Math.cos (heading);
+        double sinHeading = fastMath ? FastMath.sin (heading) : Math.sin (heading);
+        double cosRelative = Math.cos (relativeAngle), sinRelative = Math.sin (relativeAngle);
+        return scan (track, x, y, cosHeading * cosRelative - sinHeading * sinRelative,
+                sinHeading * cosRelative + cosHeading * sinRelative, sensorSteps, rangePerStep);
+    }
+
+    /** Scans a sensor from x,y in the direction of cos,sin, testing every step. */
+    private static double scan (final ShapeTrack track, final double x, final double y, final double cos,
+            final double sin, final int sensorSteps, final int rangePerStep) {
         // Starting point of the sensor
-        double sensorX = getPosition ().x;
-        double sensorY = getPosition ().y;
+        double sensorX = x;
+        double sensorY = y;
         // Next point in the direction of the sensor.
-        sensorX += Math.cos (sensorAngle) * 2;
-        sensorY += Math.sin (sensorAngle) * 2;
+        sensorX += cos * 2;
+        sensorY += sin * 2;
         // Being rangePerStep the minimum distance, and sensorSteps the number of
         // steps checks, iterates until it finds the obstacle. 
         for (int i = 0; i < sensorSteps; i++) {
             if (! track.okay ((int) sensorX, (int) sensorY)) {
                 return (double) i / (double) sensorSteps;
             }
-            sensorX += Math.cos (sensorAngle) * rangePerStep;
-            sensorY += Math.sin (sensorAngle) * rangePerStep;
+            sensorX += cos * rangePerStep;
+            sensorY += sin * rangePerStep;
         }
         // If nothing has been detected, returns one.
         return 1;
     }
 
+    /**
+     * Sensor of forbidden regions which marches along the ray in coarse steps
+     * (MARCH_STRIDE steps of the sensor at once) instead of testing every step,
+     * and, once a step lands over a figure, finds the border by bisection, down
+     * to half a pixel, between that point and the previous one. It returns a
+     * continuous fraction of the range (sensorSteps * rangePerStep) instead of
+     * i / sensorSteps, or 1 if nothing is found. It only uses ShapeTrack.okay,
+     * so it needs no preprocessing and works if the figures change. Figures
+     * thinner than a coarse step can be missed.
+     */
+    public static double marchingWallSensor (final ShapeTrack track, final double x, final double y, final double heading,
+            final double relativeAngle, final int sensorSteps, final int rangePerStep, final boolean fastMath) {
+        double cosHeading = fastMath ? FastMath.cos (heading) : Math.cos (heading);
+        double sinHeading = fastMath ? FastMath.sin (heading) : Math.sin (heading);
+        double cosRelative = Math.cos (relativeAngle), sinRelative = Math.sin (relativeAngle);
+        return march (track, x, y, cosHeading * cosRelative - sinHeading * sinRelative,
+                sinHeading * cosRelative + cosHeading * sinRelative, sensorSteps, rangePerStep);
+    }
+
+    /** Marches a sensor from x,y in the direction of cos,sin (see marchingWallSensor). */
+    private static double march (final ShapeTrack track, final double x, final double y, final double cos,
+            final double sin, final int sensorSteps, final int rangePerStep) {
+        // First point of the sensor, as in wallSensor, and distance to the last one.
+        double startX = x + cos * 2;
+        double startY = y + sin * 2;
+        double last = (double) rangePerStep * (sensorSteps - 1);
+        double stride = (double) rangePerStep * MARCH_STRIDE;
+        double free = -1;
+        double hit = 0;
+        while (track.okay (startX + cos * hit, startY + sin * hit)) {
+            if (hit >= last)
+                return 1;
+            free = hit;
+            hit = Math.min (hit + stride, last);
+        }
+        if (free < 0)
+            return 0;
+        // Bisection between the last point which was okay and the first one which was not.
+        while (hit - free > 0.5) {
+            double middle = (free + hit) / 2;
+            if (track.okay (startX + cos * middle, startY + sin * middle))
+                free = middle;
+            else
+                hit = middle;
+        }
+        return hit / ((double) sensorSteps * rangePerStep);
+    }
+
+    /**
+     * Sensor of forbidden regions which visits the same points as wallSensor,
+     * but tests them with the occupancy grid of the track (see
+     * ShapeTrack.getGrid), and takes those closer to the last one tested than
+     * its clearance (see OccupancyGrid.clearance) as okay without testing
+     * them, so it returns exactly the same.
+     */
+    public static double gridWallSensor (final ShapeTrack track, final double x, final double y, final double heading,
+            final double relativeAngle, final int sensorSteps, final int rangePerStep, final boolean fastMath) {
+        double cosHeading = fastMath ? FastMath.cos (heading) : Math.cos (heading);
+        double sinHeading = fastMath ? FastMath.sin (heading) : Math.sin (heading);
+        double cosRelative = Math.cos (relativeAngle), sinRelative = Math.sin (relativeAngle);
+        return gridScan (track.getGrid (), x, y, cosHeading * cosRelative - sinHeading * sinRelative,
+                sinHeading * cosRelative + cosHeading * sinRelative, sensorSteps, rangePerStep);
+    }
+
+    /** Scans a sensor with an occupancy grid (see gridWallSensor). */
+    private static double gridScan (final OccupancyGrid grid, final double x, final double y, final double cos,
+            final double sin, final int sensorSteps, final int rangePerStep) {
+        // The points are calculated as in scan, so they are the same.
+        double sensorX = x;
+        double sensorY = y;
+        sensorX += cos * 2;
+        sensorY += sin * 2;
+        // Points after the last one tested which are known to be okay.
+        int skip = 0;
+        for (int i = 0; i < sensorSteps; i++) {
+            if (skip > 0) {
+                skip--;
+            }
+            else {
+                int pointX = (int) sensorX, pointY = (int) sensorY;
+                double clearance = grid.clearance (pointX, pointY);
+                if (clearance > 0) {
+                    // Truncating the points to integers moves them less than 1.5.
+                    skip = (int) ((clearance - 1.5) / rangePerStep);
+                }
+                else if (! grid.okay (pointX, pointY)) {
+                    return (double) i / (double) sensorSteps;
+                }
+            }
+            sensorX += cos * rangePerStep;
+            sensorY += sin * rangePerStep;
+        }
+        return 1;
+    }
+
     /**
      * Returns true if the car has crossed the finish line.
      */
     public boolean hasCrossedLine(final ShapeTrack track){
-    	Vector2d[] line = track.getStartLine();
-    	// Cut point of the line.
-    	double xCut;
-    	double yCut;
-    	double a1;
-    	double a2;
-    	// The situation when no line is vertical.
-    	if ((line[1].x!=line[0].x) && (position.x!=oldPosition.x)){
-        	// Slope of the finish line.
-        	 a1 = (line[1].y-line[0].y)/(line[1].x-line[0].x);
-        	// Slope of the line describing the car movement.
-        	 a2 = (position.y-oldPosition.y)/(position.x-oldPosition.x);    	
-        	
-        	// If the slope is the same, they don't cut.
-        	if (a1==a2) 
-        		return false;    	
-
-    		// Calculates the x coordinate of the cut point.
-    		xCut = ((a1*line[0].x)-(a2*oldPosition.x)-line[0].y+oldPosition.y)/(a1-a2);
-    		// Calculates the y coordinate of the cut point.
-    		yCut = a1 *(xCut-line[0].x)+line[0].y;  
-    		// Now, checks if the point is inside the segment.
-    		// Checks if each coordinate is inside the range or each segment with !XOR.
-    		// If the points of the line are both greater or smaller, XOR is false, 
-    		// therefore !XOR is true.
-    		if (!(xCut>line[0].x) ^ (xCut>=line[1].x)) return false;    	
-    		if (!(xCut>oldPosition.x) ^ (xCut>=position.x)) return false;
-    		if (!(yCut>line[0].y) ^ (yCut>=line[1].y)) return false;    	
-    		if (!(yCut>oldPosition.y) ^ (yCut>=position.y)) return false;
-    		// Otherwise, returns true.
-    		return true;
-    	}
-    	
-    	// If any of the rules is vertical, executes the following code.
-    	
-    	// If both lines are vertical, checks if both are overlapped. This happens if the
-    	// trajectory of the car is vertical. Therefore, is a very exceptional situation.
-    	if ((line[1].x==line[0].x) && (position.x==oldPosition.x)){
-    		// If the lines are not overlapped, returns false.
-    		if (line[0].x!=oldPosition.x) return false;
-    		// If they are, checks the segments.
-    		if ((!(line[0].y>oldPosition.y) ^ (line[0].y>=position.y)) && (!(line[1].y>oldPosition.y) ^ (line[1].y>=position.y)))
-    			return false;
-    		return true;
-    	}
-    	
-    	// This code is executed when only one of the lines is vertical.
-    	
-    	// If it is the finish line
-    	if (line[1].x==line[0].x){
-    		// Calculates the cut points with the second equation.
-    		xCut = line[1].x;
-    		a2 = (position.y-oldPosition.y)/(position.x-oldPosition.x); 
-    		yCut = a2 *(xCut-oldPosition.x)+oldPosition.y;   
-    		// Checks if the point is inside the segment.
-    		if (!(xCut>oldPosition.x) ^ (xCut>=position.x)) return false;
-    		if (!(yCut>line[0].y) ^ (yCut>=line[1].y)) return false;    	
-    		if (!(yCut>oldPosition.y) ^ (yCut>=position.y)) return false;
-    		// If not, it is true.
-    		return true;    		
-    	}
-    	
-    	// This code is executed if only the trajectory of the car is vertical. Calculates
-    	// the cut points with the first equation. 
-		xCut = oldPosition.x;
-		a1 = (line[1].y-line[0].y)/(line[1].x-line[0].x);
-		yCut = a1 *(xCut-line[0].x)+line[0].y;   
-		// Checks if the point is inside the segment.
-		if (!(xCut>line[0].x) ^ (xCut>=line[1].x)) return false;
-		if (!(yCut>line[0].y) ^ (yCut>=line[1].y)) return false;    	
-		if (!(yCut>oldPosition.y) ^ (yCut>=position.y)) return false;
-		// If not, returns true.
-    	return true;    	
+        return hasCrossedLine (track.getStartGate ());
+    }
+
+    /**
+     * Returns true if the last movement of the car has crossed a gate (such
+     * as the finish line, see ShapeTrack.getStartGate).
+     */
+    public boolean hasCrossedLine(final Gate gate){
+        return gate.crosses (oldPosition.x, oldPosition.y, position.x, position.y);
+    }
+
+    /**
+     * Contact with another car (of the same mass), when their centres are closer
+     * than a certain distance. If they are approaching, the components of their
+     * velocities along the line between the centres bounce, with the elasticity of
+     * the walls. Then each car is moved back half of the overlap, unless that would
+     * place it over a forbidden region. Returns true if they were in contact.
+     */
+    public boolean collide (final CarModel other, final double distance, final ShapeTrack track) {
+        double dx = other.position.x - position.x;
+        double dy = other.position.y - position.y;
+        double d = Math.sqrt (dx * dx + dy * dy);
+        if (d >= distance)
+            return false;
+        // Direction from this car to the other (or the heading, if they are in the same point).
+        double nx, ny;
+        if (d == 0) {
+            nx = cos (orientation);
+            ny = sin (orientation);
+        }
+        else {
+            nx = dx / d;
+            ny = dy / d;
+        }
+        double approach = (velocity.x - other.velocity.x) * nx + (velocity.y - other.velocity.y) * ny;
+        if (approach > 0) {
+            double impulse = approach * (1 + wallElasticity) / 2;
+            velocity.x -= impulse * nx;
+            velocity.y -= impulse * ny;
+            other.velocity.x += impulse * nx;
+            other.velocity.y += impulse * ny;
+        }
+        double separation = (distance - d) / 2;
+        moveIfOkay (track, -nx * separation, -ny * separation);
+        other.moveIfOkay (track, nx * separation, ny * separation);
+        return true;
+    }
+
+    /** Moves the car, if the new position is not over a forbidden region. */
+    private void moveIfOkay (final ShapeTrack track, final double dx, final double dy) {
+        if (track.okay (position.x + dx, position.y + dy))
+            position = new Vector2d (position.x + dx, position.y + dy);
     }
     
     
@@ -276,11 +511,11 @@ public class CarModel implements Controlable {
         if (power != 0) {
             Vector2d drivingForce;
             if (power > 0)    {
-                drivingForce = new Vector2d (Math.cos (orientation), Math.sin (orientation));
+                drivingForce = new Vector2d (cos (orientation), sin (orientation));
                 drivingForce.setMag (power);
             }
             else {
-                drivingForce = new Vector2d (-Math.cos (orientation), -Math.sin (orientation));
+                drivingForce = new Vector2d (-cos (orientation), -sin (orientation));
                 drivingForce.setMag (-power); // Power is negative when moving backwards.
             }
             totalForce.add (drivingForce);
@@ -315,8 +550,8 @@ public class CarModel implements Controlable {
         if (Math.abs (slipAngle) > minimumSlipAngleToCareAbout) {
             double orthogonalDirection = (slipAngle > 0 ? -(Math.PI / 2) : (Math.PI / 2));
             Vector2d lateralForce = new Vector2d
-                (Math.cos (orientation + orthogonalDirection),
-                        Math.sin (orientation + orthogonalDirection));
+                (cos (orientation + orthogonalDirection),
+                        sin (orientation + orthogonalDirection));
             double lateralMagnitude = Math.min (speed, maxLateralTyreTraction);
             lateralForce.setMag (lateralMagnitude);
             totalForce.add (lateralForce);
@@ -360,8 +595,8 @@ public class CarModel implements Controlable {
             double difference = directionOfMovement - closestRightAngles[0];
             double newDirection = directionOfMovement - 2 * difference;
             // New velocity
-            Vector2d newVelocity = new Vector2d (Math.cos (newDirection) * newSpeed,
-                    Math.sin (newDirection) * newSpeed);
+            Vector2d newVelocity = new Vector2d (cos (newDirection) * newSpeed,
+                    sin (newDirection) * newSpeed);
             newPosition = new Vector2d (position.x + (newVelocity.x * stepSize),
                             position.y + (newVelocity.y * stepSize));
             
@@ -373,8 +608,8 @@ public class CarModel implements Controlable {
             } else {
                 difference = closestRightAngles[1] - directionOfMovement;
                 newDirection = directionOfMovement + 2 * difference;
-                newVelocity = new Vector2d (Math.cos (newDirection) * newSpeed,
-                    Math.sin (newDirection) * newSpeed);
+                newVelocity = new Vector2d (cos (newDirection) * newSpeed,
+                    sin (newDirection) * newSpeed);
                 newPosition = new Vector2d (position.x + (newVelocity.x * stepSize),
                             position.y + (newVelocity.y * stepSize));
                 if (track.okay (newPosition.x, newPosition.y)) {
@@ -3,9 +3,14 @@ package carracing;
 import carracing.tracks.ShapeTrack;
 import carracing.tracks.TrackLoader;
 import carracing.tracks.AimChain;
+import carracing.tracks.Gate;
 import carracing.controllers.Controller;
 import carracing.controllers.ControllerLoader;
 import carracing.utils.Vector2d;
+import metrics.Counter;
+import metrics.EvaluationEvent;
+import metrics.MetricsRegistry;
+import metrics.RateGauge;
 
 /**
  * Allows evaluating a controller in a track. Receives as parameters two objects
@@ -13,6 +18,19 @@ import carracing.utils.Vector2d;
  */
 public class ControllerEvaluation{
 
+	/** Reasons why an evaluation ends. */
+	public enum Termination {
+		/** The car has completed the lap. */
+		LAP_FINISHED,
+		/** The car has stopped. */
+		STOPPED,
+		/** The maximum number of iterations has been reached. */
+		TIME_LIMIT
+	}
+
+	/** Context with the car, the sensors and the buffers used in the simulation. */
+	protected EvaluationContext context;
+
 	/** Car */
 	protected CarModel model;
 
@@ -28,17 +46,15 @@ public class ControllerEvaluation{
 	protected int totalAimPointsPassed=0;
 	protected int numberOfAimPoints;
 
-	/** This constant represents 45 degrees */
-	final double fortyFiveDegrees = Math.PI / 4;
+	/** Start-finish line (precomputed, see Gate). */
+	protected Gate startGate;
 
 	/** Data structures which allow managing sensors. */
-	private double sensorAngles[] = null;
-	private double sensorReaches[] = null;
-	private double sensorActivations[] = null;
-	final int sensorSteps = 30;
+	private SensorLayout sensors;
+	private double sensorActivations[];
 
 	/** Inputs of the sensors. */
-	private final double[] inputs = new double[8];
+	private double[] inputs;
 	
 	/** Vector storing the actions. */
 	double[] actions = new double[2];
@@ -51,6 +67,12 @@ public class ControllerEvaluation{
 	private double distance;
 	private double stepDistance;
 
+	/** State of the evaluation. */
+	private int iteration;
+	private boolean lapFinished;
+	private boolean running;
+	private Termination termination;
+
 	/** Simulated time per iteration. It is used to compute time. */
 	private final long timeIteration = 50; // Milliseconds
 	
@@ -59,20 +81,87 @@ public class ControllerEvaluation{
 	
 	/** Results. */
 	double[] results = new double[2];
+
+	/** Records the trajectory of the car (if not null). */
+	private TrajectoryRecorder recorder;
+
+	/** Precomputed readings of the sensors (if not null), and whether they are interpolated. */
+	private SensorTable sensorTable;
+	private boolean interpolateSensors;
+
+	/** Physics steps simulated by all the evaluations (counted once per evaluation). */
+	private static final Counter simulatedSteps = MetricsRegistry.getDefault().counter("simulation.steps");
+
+	static {
+		MetricsRegistry.getDefault().gauge("simulation.steps.per.second", new RateGauge(simulatedSteps));
+	}
 	
-	/** Default constructor */
+	/** 
+	 * Default constructor. The evaluation has a context of its own, which
+	 * can be reused by evaluating again.
+	 */
 	public ControllerEvaluation(ShapeTrack track, Controller  control) {
+		this(track, control, new EvaluationContext());
+	}
 
-		// Stores the track and the control
-		this.track = track;
+	/** Builds an evaluation which uses a certain context. */
+	public ControllerEvaluation(ShapeTrack track, Controller  control, EvaluationContext context) {
+
+		// Stores the context, the track and the control
+		this.context = context;
 		this.control = control;
+		setTrack(track);
 		
-		// Creates the model of the car
-		model = new CarModel();
-		
+		// Gets the model of the car and the sensors from the context
+		model = context.model;
+		sensors = context.layout;
+		sensorActivations = context.sensorActivations;
+		inputs = context.inputs;
+	}
+
+	/** 
+	 * Changes the track, so that the evaluation can be reused. A sensor table
+	 * of another track stops being used.
+	 */
+	public void setTrack(ShapeTrack track) {
+		this.track = track;
+		if (sensorTable != null && sensorTable.getTrack() != track)
+			sensorTable = null;
 		// Gets the aim points
 		aimChain = track.getAimchain();
 		numberOfAimPoints = aimChain.nPoints();
+		startGate = track.getStartGate();
+	}
+
+	/** Returns the track. */
+	public ShapeTrack getTrack() {
+		return track;
+	}
+
+	/** Changes the controller, so that the evaluation can be reused. */
+	public void setController(Controller control) {
+		this.control = control;
+	}
+
+	/** 
+	 * Sets a recorder which will store every step of the next evaluations,
+	 * or null to stop recording. Each evaluation clears it first.
+	 */
+	public void setRecorder(TrajectoryRecorder recorder) {
+		this.recorder = recorder;
+	}
+
+	/**
+	 * Reads the sensors from a precomputed table of the track (or computes them
+	 * exactly again, if null). The readings are taken from the nearest pose of
+	 * the table, or interpolated. This is an approximation, so results will
+	 * differ slightly from the exact simulation.
+	 */
+	public void setSensorTable(SensorTable table, boolean interpolate) {
+		if (table != null && (table.getTrack() != track || table.getLayout() != sensors))
+			throw new IllegalArgumentException("The sensor table belongs to another track or layout of sensors.");
+		this.sensorTable = table;
+		this.interpolateSensors = interpolate;
 	}
 
 	/** 
@@ -80,74 +169,163 @@ public class ControllerEvaluation{
 	 */
 	public double[] evaluate() {
 		
-		// Initializes the model.
-		initModel(model);
+		EvaluationEvent event = new EvaluationEvent();
+		event.begin();
+		
+		// Places the car in the starting point.
+		reset();
+		if (recorder != null)
+			recorder.clear();
 		
-		// Fix the starting point of the car
-		model.fixCarStartingPosition(track);
+		// Begins the main execution loop
+		while (step());
+		
+		// Calculates the results.
+		finish();
+		
+		event.end();
+		if (event.shouldCommit()) {
+			event.track = track.getClass().getSimpleName();
+			event.controller = control.getClass().getSimpleName();
+			event.steps = iteration;
+			event.lapFinished = lapFinished;
+			event.termination = termination.name();
+			event.lapTime = results[0];
+			event.distance = results[1];
+			event.commit();
+		}
+		return results;
+	}
+
+	/**
+	 * Prepares a new evaluation. After that, the evaluation can be carried out
+	 * step by step, either with step(), or reading the sensors with readSensors()
+	 * and applying the actions with advance().
+	 */
+	public void reset() {
+		
+		// Fix the starting point of the car and clears the sensors.
+		context.reset(track);
 
 		// Next aimpoint is 0
 		nextAimpoint = 0;
 		totalAimPointsPassed = 0;
 		
-		// Maintains the old model position to calculate the distance at each step.
-		Vector2d oldModelPosition;
-		
 		// Initializes lap time and distance
 		laptime = 0;
 		distance = 0;
 		
-		// Begins the main execution loop
-		int iteration;					// Number of iterations.
-		boolean lapFinished = false;	// If the car finishes the lap.
-		
-		for (iteration = 1; iteration <=numberOfIterations; iteration++) {
-			
-			// Reads the position of the model.
-			oldModelPosition = model.getPosition();
-			
-			// Calculates the actions depending on the sensors.
-			takeAction();
-			
-			// Carries out the actions.
-			model.drive(actions[0], actions[1]);
-			
-			// Carries out the next movement
-			model.next(track);
-			
-			// Updates the lap time
-			laptime++;
-			
-			// Tests if the car has stopped. If so, penalizes with the maximum time, and finishes.
-			stepDistance = model.getPosition().dist(oldModelPosition);	
-			if (stepDistance==0){
-				break;
-			}			
-			
-			// Tests if the point has been passed and updates the nextAimpoint.		
-			if (model.getPosition().dist(aimChain.getPoint(nextAimpoint))<100){		
-				 totalAimPointsPassed += 1;
-				 nextAimpoint = (nextAimpoint+1)%numberOfAimPoints;				 
+		iteration = 0;
+		lapFinished = false;
+		running = true;
+		termination = null;
+	}
+
+	/** 
+	 * Carries out an iteration: reads the sensors, determines the actions with 
+	 * the controller and moves the car. Returns false when the evaluation ends.
+	 */
+	public boolean step() {
+		// Calculates the actions depending on the sensors.
+		takeAction();
+		
+		// Carries out the actions.
+		return advance(actions[0], actions[1]);
+	}
+
+	/**
+	 * Reads the sensors and returns the inputs of the controller. The array
+	 * is reused by the next call.
+	 */
+	public double[] readSensors() {
+		int n = sensorActivations.length;
+		if (sensorTable != null)
+			sensorTable.read(model, interpolateSensors, sensorActivations);
+		else
+			model.readSensors(track, sensors, sensorActivations);
+		for (int i = 0; i < n; i++)
+			inputs[i] = (sensorActivations[i]);
+		inputs[n] = model.getSpeed();
+		inputs[n+1] = model.targetAngleDifference(aimChain.getPoint(nextAimpoint));
+		inputs[n+2] = model.targetAngleDifference(aimChain.getPoint(nextAimpoint+1));
+		inputs[n+2] = inputs[n+2]-inputs[n+1];
+		return inputs;
+	}
+
+	/**
+	 * Applies some power and steer to the car, moves it, and updates the
+	 * state of the lap. Returns false when the evaluation ends, either 
+	 * because the lap has been completed, the car has stopped, or the 
+	 * maximum number of iterations has been reached.
+	 */
+	public boolean advance(double power, double steer) {
+		if (!running)
+			return false;
+		iteration++;
+		
+		// Reads the position of the model.
+		Vector2d oldModelPosition = model.getPosition();
+		
+		// Carries out the actions.
+		model.drive(power, steer);
+		
+		// Carries out the next movement
+		model.next(track);
+		
+		// Records the step.
+		if (recorder != null)
+			recorder.record(model, sensorActivations, power, steer);
+		
+		// Updates the lap time
+		laptime++;
+		
+		// Tests if the car has stopped. If so, penalizes with the maximum time, and finishes.
+		stepDistance = model.getPosition().dist(oldModelPosition);	
+		if (stepDistance==0){
+			running = false;
+			termination = Termination.STOPPED;
+			return false;
+		}			
+		
+		// Tests if the point has been passed and updates the nextAimpoint.		
+		if (model.getPosition().dist(aimChain.getPoint(nextAimpoint))<100){		
+			 totalAimPointsPassed += 1;
+			 nextAimpoint = (nextAimpoint+1)%numberOfAimPoints;				 
+		}
+		
+		// If the car has crossed the line.
+		if (model.hasCrossedLine(startGate)){
+			// If the lap has been completed, finishes.
+			if (totalAimPointsPassed==numberOfAimPoints){
+				lapFinished = true;
+				running = false;
+				termination = Termination.LAP_FINISHED;
+				return false;
 			}
-			
-			// If the car has crossed the line.
-			if (model.hasCrossedLine(track)){
-				// If the lap has been completed, breaks the loop.
-				if (totalAimPointsPassed==numberOfAimPoints){
-					lapFinished = true;
-					break;
-				}
-				// Otherwise, resets the lap
-				else{
-					laptime = 0;
-					nextAimpoint = 0;
-					totalAimPointsPassed=0;
-				}
+			// Otherwise, resets the lap
+			else{
+				laptime = 0;
+				nextAimpoint = 0;
+				totalAimPointsPassed=0;
 			}
-		} // Main loop.
-		
+		}
 		
+		running = iteration < numberOfIterations;
+		if (!running)
+			termination = Termination.TIME_LIMIT;
+		return running;
+	}
 
+	/** 
+	 * Finishes the evaluation and returns the time to complete a lap and 
+	 * the distance. 
+	 */
+	public double[] finish() {
+		running = false;
+		// Evaluations finished before their end are penalized as if they had run out of time.
+		if (termination == null)
+			termination = Termination.TIME_LIMIT;
+		simulatedSteps.add(iteration);
 		
 		// If the car has not crossed the finish line.
 		if (!lapFinished){
@@ -171,30 +349,76 @@ public class ControllerEvaluation{
 		return results;
 	}
 
+	/** Returns true while the evaluation has not finished. */
+	public boolean isRunning() { return running; }
+
+	/** Returns true if the car has completed the lap. */
+	public boolean isLapFinished() { return lapFinished; }
+
+	/** Returns why the evaluation ended, or null if it is running. */
+	public Termination getTermination() { return termination; }
+
+	/** Returns the number of iterations carried out. */
+	public int getIteration() { return iteration; }
+
+	/** Returns the number of aim points passed in the current lap. */
+	public int getAimPointsPassed() { return totalAimPointsPassed; }
+
+	/** Returns the model of the car. */
+	public CarModel getModel() { return model; }
+
+	/** Returns the context of the evaluation (its model and layout of sensors). */
+	public EvaluationContext getContext() { return context; }
+
 	/**
-	 * Initializes the wall sensors.
+	 * Returns the distance covered in the current lap, measured as finish()
+	 * does for an unfinished lap: up to the next aim point, minus what is left
+	 * to reach it.
 	 */
-	private void initModel(CarModel model) {
-		// Initializes the sensors
-		sensorAngles = new double[] {-fortyFiveDegrees, -fortyFiveDegrees/2, 0, fortyFiveDegrees/2, fortyFiveDegrees};
-		sensorReaches = new double[] { 200, 300, 400, 300 ,200 };
-		sensorActivations = new double[sensorAngles.length];
+	public double getProgress() {
+		return track.getLengthToPoint(nextAimpoint) - model.getPosition().dist(aimChain.getPoint(nextAimpoint));
 	}
-	
+
+	/** Number of values stored by saveState: the car and the state of the lap. */
+	public static final int STATE_SIZE = CarModel.STATE_SIZE + 7;
+
+	/**
+	 * Stores the state of the evaluation (the car, see CarModel.saveState, and
+	 * the progress of the lap) in state, from offset. It can be restored in this
+	 * evaluation or in another one of the same track, for instance to simulate
+	 * ahead from the current step and come back.
+	 */
+	public void saveState(double[] state, int offset) {
+		model.saveState(state, offset);
+		offset += CarModel.STATE_SIZE;
+		state[offset] = nextAimpoint;
+		state[offset + 1] = totalAimPointsPassed;
+		state[offset + 2] = laptime;
+		state[offset + 3] = iteration;
+		state[offset + 4] = lapFinished ? 1 : 0;
+		state[offset + 5] = running ? 1 : 0;
+		state[offset + 6] = termination == null ? -1 : termination.ordinal();
+	}
+
+	/** Restores a state stored by saveState, from offset. */
+	public void restoreState(double[] state, int offset) {
+		model.restoreState(state, offset);
+		offset += CarModel.STATE_SIZE;
+		nextAimpoint = (int) state[offset];
+		totalAimPointsPassed = (int) state[offset + 1];
+		laptime = (long) state[offset + 2];
+		iteration = (int) state[offset + 3];
+		lapFinished = state[offset + 4] != 0;
+		running = state[offset + 5] != 0;
+		termination = state[offset + 6] < 0 ? null : Termination.values()[(int) state[offset + 6]];
+	}
+
 	/**
 	 * This function reads the sensors and uses the controller to determine which actions
 	 * must be carried out by the car.
 	 */
 	private void takeAction() {
-		for (int i = 0; i < sensorActivations.length; i++) {
-			sensorActivations[i] = model.wallSensor(track,sensorAngles[i],
-					sensorSteps, (int) sensorReaches[i]/sensorSteps);
-			inputs[i] = (sensorActivations[i]);
-		}
-		inputs[5] = model.getSpeed();
-		inputs[6] = model.targetAngleDifference(aimChain.getPoint(nextAimpoint));
-		inputs[7] = model.targetAngleDifference(aimChain.getPoint(nextAimpoint+1));
-		inputs[7] = inputs[7]-inputs[6];
+		readSensors();
 		// Determines the actions (power and steer).
 		actions = control.genAction(inputs);
 	}
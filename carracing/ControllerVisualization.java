@@ -116,6 +116,45 @@ public class ControllerVisualization{
 		frame.setVisible(true);
 	}
 
+	/** Builds a visualization without controller, which can only replay recordings. */
+	public ControllerVisualization(ShapeTrack track) {
+		this(track, null);
+	}
+
+	/** 
+	 * Replays a recording without simulating the car. Speed is a factor over
+	 * the simulated time (1 replays in real time, 10 ten times faster). When
+	 * the speed is high, the frames which can not be painted in time are skipped.
+	 */
+	public void replay(TrajectoryRecorder recording, double speed) {
+		// Sets the sensors in the view.
+		initModel(model);
+		
+		long replayStartTime = System.currentTimeMillis();
+		int frame = 0;
+		while (frame < recording.size()) {
+			// Places the car as it was in the frame.
+			model.place(recording.get(frame, TrajectoryRecorder.X), recording.get(frame, TrajectoryRecorder.Y),
+					recording.get(frame, TrajectoryRecorder.HEADING));
+			
+			// Repaints the window
+			view.repaint();
+			
+			// Waits until the next frame is due, and goes to the frame corresponding
+			// to the elapsed time (skipping those which could not be painted in time).
+			long due = (long) Math.ceil((frame + 1) * timeIteration / speed);
+			long elapsed = System.currentTimeMillis() - replayStartTime;
+			try {
+				if (due > elapsed)
+					Thread.sleep(due - elapsed);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+			frame = (int) ((System.currentTimeMillis() - replayStartTime) * speed / timeIteration);
+		}
+	}
+
 	/** Carries out the evaluation. Returns the time to complete a lap. */
 	public double[] visualize() {
 		
@@ -263,8 +302,19 @@ public class ControllerVisualization{
     	frame.dispose();
     }
     
-	/** Main */
+	/** 
+	 * Main. Without arguments, drives the car with the keyboard. With the name
+	 * of a track, a recording and a speed, replays the recording.
+	 */
 	public static void main(String[] args) throws Exception {
+		if (args.length == 3) {
+			ShapeTrack track = TrackLoader.getTrack("carracing.tracks."+args[0]);
+			ControllerVisualization cv = new ControllerVisualization(track);
+			cv.replay(TrajectoryRecorder.read(new java.io.File(args[1])), Double.parseDouble(args[2]));
+			cv.close();
+			return;
+		}
+		
 		// Sets the visualization
 		ShapeTrack track = TrackLoader.getTrack("carracing.tracks.Track3");
 		Controller control = ControllerLoader.getController("carracing.controllers.KeyBoardController");	
@@ -0,0 +1,58 @@
+package carracing;
+
+import java.util.Arrays;
+
+import carracing.tracks.ShapeTrack;
+
+/**
+ * Contains everything an evaluation needs to simulate the car: the model of
+ * the car, the layout of the sensors and the buffers where sensor readings
+ * and inputs of the controller are stored.
+ *
+ * Contexts are built once and reset in place before each evaluation, so
+ * evaluating a controller does not allocate any of these structures again.
+ * A context must be used by a single thread at a time.
+ */
+public class EvaluationContext {
+
+	/** Car */
+	final CarModel model;
+
+	/** Layout of the sensors. */
+	final SensorLayout layout;
+
+	/** Readings of the sensors. */
+	final double[] sensorActivations;
+
+	/** Inputs of the controller (sensors, speed and the two angles). */
+	final double[] inputs;
+
+	/** Creates a context with the default layout of sensors. */
+	public EvaluationContext() {
+		this(SensorLayout.DEFAULT);
+	}
+
+	/** Creates a context with a certain layout of sensors. */
+	public EvaluationContext(SensorLayout layout) {
+		this.layout = layout;
+		this.model = new CarModel();
+		this.sensorActivations = new double[layout.size()];
+		this.inputs = new double[layout.size() + 3];
+	}
+
+	/** Returns the model of the car. */
+	public CarModel getModel() { return model; }
+
+	/** Returns the layout of the sensors. */
+	public SensorLayout getLayout() { return layout; }
+
+	/** Returns the last readings of the sensors. */
+	public double[] getSensorActivations() { return sensorActivations; }
+
+	/** Places the car in the starting point of the track and clears the buffers. */
+	void reset(ShapeTrack track) {
+		model.fixCarStartingPosition(track);
+		Arrays.fill(sensorActivations, 0);
+		Arrays.fill(inputs, 0);
+	}
+}
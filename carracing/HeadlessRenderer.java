@@ -0,0 +1,165 @@
+package carracing;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.imageio.ImageIO;
+
+import carracing.controllers.Controller;
+import carracing.controllers.ControllerLoader;
+import carracing.tracks.ShapeTrack;
+import carracing.tracks.TrackLoader;
+
+/**
+ * Renders recorded laps into images, without window and without waiting
+ * between frames, so it can be used in machines without display. Each
+ * renderer owns its image, so several renderers can work in parallel.
+ */
+public class HeadlessRenderer {
+
+	/** Image where everything is painted. */
+	private final BufferedImage image;
+	private final Graphics2D g;
+
+	/** Paints the track and the car. */
+	private final TrackRenderer renderer;
+
+	/** Car used to place the recorded positions. */
+	private final CarModel model = new CarModel();
+
+	/** Sensors of the car. */
+	private final double[] sensorAngles;
+	private final double[] sensorReaches;
+
+	/** Creates a renderer for a track. */
+	public HeadlessRenderer(ShapeTrack track) {
+		image = new BufferedImage(View.width, View.height, BufferedImage.TYPE_INT_RGB);
+		g = image.createGraphics();
+		renderer = new TrackRenderer(track);
+		SensorLayout layout = SensorLayout.DEFAULT;
+		sensorAngles = new double[layout.size()];
+		sensorReaches = new double[layout.size()];
+		for (int i = 0; i < layout.size(); i++) {
+			sensorAngles[i] = layout.getAngle(i);
+			sensorReaches[i] = layout.getReach(i);
+		}
+	}
+
+	/** Paints a frame of a recording. The image is reused by the next call. */
+	public BufferedImage renderFrame(TrajectoryRecorder recording, int frame) {
+		renderer.paintStaticLayer(g, View.width, View.height);
+		placeCar(recording, frame);
+		renderer.paintCar(g, model, sensorAngles, sensorReaches);
+		return image;
+	}
+
+	/**
+	 * Paints the track and the whole trajectory over it, colored from blue
+	 * (slow) to red (fast), with the car in its last position.
+	 */
+	public BufferedImage renderOverlay(TrajectoryRecorder recording) {
+		renderer.paintStaticLayer(g, View.width, View.height);
+		g.setStroke(new BasicStroke(2));
+		for (int frame = 1; frame < recording.size(); frame++) {
+			float speed = Math.min(1, Math.abs(recording.get(frame, TrajectoryRecorder.SPEED)) / 16);
+			g.setColor(new Color(speed, 0, 1 - speed));
+			g.drawLine((int) recording.get(frame-1, TrajectoryRecorder.X), (int) recording.get(frame-1, TrajectoryRecorder.Y),
+					(int) recording.get(frame, TrajectoryRecorder.X), (int) recording.get(frame, TrajectoryRecorder.Y));
+		}
+		g.setStroke(new BasicStroke(1));
+		if (recording.size() > 0) {
+			placeCar(recording, recording.size() - 1);
+			renderer.paintCar(g, model, sensorAngles, sensorReaches);
+		}
+		return image;
+	}
+
+	/** Writes one PNG image every certain number of frames (frame_00000.png, ...) into a directory. */
+	public void writeFrames(TrajectoryRecorder recording, File directory, int every) throws IOException {
+		directory.mkdirs();
+		for (int frame = 0; frame < recording.size(); frame += every) {
+			ImageIO.write(renderFrame(recording, frame), "png", new File(directory, String.format("frame_%05d.png", frame)));
+		}
+	}
+
+	/** Writes the image of the whole trajectory into a PNG file. */
+	public void writeOverlay(TrajectoryRecorder recording, File file) throws IOException {
+		ImageIO.write(renderOverlay(recording), "png", file);
+	}
+
+	/** Places the car as it was in a frame. */
+	private void placeCar(TrajectoryRecorder recording, int frame) {
+		model.place(recording.get(frame, TrajectoryRecorder.X), recording.get(frame, TrajectoryRecorder.Y),
+				recording.get(frame, TrajectoryRecorder.HEADING));
+	}
+
+	/**
+	 * Main. Takes the name of the track, the mode (frames or overlay), the
+	 * output directory and the recordings to render, which are rendered in
+	 * parallel. Without recordings, simulates the default linear controller.
+	 *
+	 * Example:
+	 * 				java carracing.HeadlessRenderer Track2 overlay out lap1.trj lap2.trj
+	 */
+	public static void main(String[] args) throws Exception {
+		System.setProperty("java.awt.headless", "true");
+		final ShapeTrack track = TrackLoader.getTrack("carracing.tracks."+args[0]);
+		final boolean frames = args[1].equals("frames");
+		final File output = new File(args[2]);
+		output.mkdirs();
+
+		// Reads the recordings, or records the default controller.
+		final List<TrajectoryRecorder> recordings = new ArrayList<TrajectoryRecorder>();
+		final List<String> names = new ArrayList<String>();
+		for (int nArg = 3; nArg < args.length; nArg++) {
+			recordings.add(TrajectoryRecorder.read(new File(args[nArg])));
+			names.add(new File(args[nArg]).getName());
+		}
+		if (recordings.isEmpty()) {
+			Controller control = ControllerLoader.getController("carracing.controllers.LinearController");
+			ControllerEvaluation ce = new ControllerEvaluation(track, control);
+			TrajectoryRecorder recorder = new TrajectoryRecorder(SensorLayout.DEFAULT.size(), ce.numberOfIterations);
+			ce.setRecorder(recorder);
+			ce.evaluate();
+			recordings.add(recorder);
+			names.add("lap");
+		}
+
+		// Renders each recording with its own renderer, in as many threads as processors.
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		for (int i = 0; i < recordings.size(); i++) {
+			final int n = i;
+			tasks.add(new Callable<Void>() {
+				public Void call() throws IOException {
+					HeadlessRenderer hr = new HeadlessRenderer(track);
+					if (frames)
+						hr.writeFrames(recordings.get(n), new File(output, names.get(n)), 1);
+					else
+						hr.writeOverlay(recordings.get(n), new File(output, names.get(n)+".png"));
+					return null;
+				}
+			});
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(tasks.size(), Runtime.getRuntime().availableProcessors()));
+		try {
+			for (Future<Void> future : executor.invokeAll(tasks))
+				future.get();
+		} catch (ExecutionException e) {
+			throw new IOException("A recording could not be rendered.", e.getCause());
+		} finally {
+			executor.shutdown();
+		}
+		System.out.println(recordings.size()+" recordings rendered into "+output+".");
+	}
+}
@@ -0,0 +1,441 @@
+package carracing;
+
+import java.util.Random;
+
+import carracing.ControllerEvaluation.Termination;
+import carracing.controllers.Controller;
+import carracing.controllers.LinearController;
+import carracing.tracks.AimChain;
+import carracing.tracks.AimChainIndex;
+import carracing.tracks.Gate;
+import carracing.tracks.ShapeTrack;
+import carracing.tracks.TrackLoader;
+import carracing.utils.SpatialHash;
+import carracing.utils.Vector2d;
+
+/**
+ * Simulates several cars racing at the same time in a track, each one driven
+ * by its own controller. Each car follows the same rules as in
+ * ControllerEvaluation (walls, aim points, start line, stopping and maximum
+ * number of iterations), and gets the same results, but cars also touch each
+ * other (see CarModel.collide).
+ *
+ * Controllers receive the inputs described in Controller, followed by
+ * PROXIMITY_SECTORS proximity sensors: the distance to the closest car in
+ * front, to the right, behind and to the left (each sector covers 90
+ * degrees), relative to PROXIMITY_RANGE, or 1 if there is none. Controllers
+ * which only read the first inputs can be used unchanged.
+ *
+ * Cars are put in a spatial hash (see SpatialHash) after each step, with
+ * cells as large as the range of the proximity sensors, so both the contacts
+ * and the proximity sensors only look at the cars of the 3x3 cells around
+ * each car, and a step takes time proportional to the number of cars (as
+ * long as they are not all piled up in a few cells).
+ *
+ * Cars start in a grid behind the starting point of the track: the first one
+ * in the starting point, and the rest in rows of LANES cars, following the
+ * aim points backwards. The track must leave room for all of them.
+ */
+public class MultiCarSimulation {
+
+	/** Number of proximity sensors. */
+	public static final int PROXIMITY_SECTORS = 4;
+
+	/** Reach of the proximity sensors. */
+	public static final double PROXIMITY_RANGE = 100;
+
+	/** Distance between the centres of two cars in contact. */
+	public static final double CONTACT_DISTANCE = 12;
+
+	/** Cars per row, and distances between rows and lanes, of the starting grid. */
+	public static final int LANES = 3;
+	static final double ROW_SPACING = 25;
+	static final double LANE_SPACING = 20;
+
+	/** Determines the maximum length of the simulation (in iterations) */
+	final int numberOfIterations = 2000;
+
+	/** Simulated time per iteration. It is used to compute time. */
+	private final long timeIteration = 50; // Milliseconds
+
+	/** Scale of the model, in centimeters/pixel */
+	private final long scale = 20;
+
+	/** Track, aim points and start-finish line. */
+	private final ShapeTrack track;
+	private final AimChain aimChain;
+	private final int numberOfAimPoints;
+	private final Gate startGate;
+
+	/** Layout of the wall sensors. */
+	private final SensorLayout sensors;
+
+	/** Cars and their controllers. */
+	private final int nCars;
+	private final CarModel[] cars;
+	private final Controller[] controllers;
+
+	/** Inputs of each controller, and buffer of the wall sensors. */
+	private final double[][] inputs;
+	private final double[] sensorActivations;
+
+	/** Positions of the cars after the last step, and before it. */
+	private final double[] x, y, oldX, oldY;
+
+	/** Cars in the hash: the ones still running. */
+	private final SpatialHash hash;
+	private final int[] buckets = new int[9];
+
+	/** State of the lap of each car. */
+	private final int[] nextAimpoint;
+	private final int[] totalAimPointsPassed;
+	private final long[] laptime;
+	private final boolean[] running;
+	private final boolean[] lapFinished;
+	private final Termination[] termination;
+
+	/** Iterations carried out, and cars still running. */
+	private int iteration;
+	private int nRunning;
+
+	/** Contacts between cars in the last simulation. */
+	private long contacts;
+
+	/** Results of each car: lap time and distance. */
+	private final double[][] results;
+
+	/** Creates a simulation with the default layout of sensors. */
+	public MultiCarSimulation(ShapeTrack track, Controller[] controllers) {
+		this(track, controllers, SensorLayout.DEFAULT);
+	}
+
+	/** Creates a simulation of a car for each controller. */
+	public MultiCarSimulation(ShapeTrack track, Controller[] controllers, SensorLayout layout) {
+		this.track = track;
+		this.controllers = controllers.clone();
+		this.sensors = layout;
+		aimChain = track.getAimchain();
+		numberOfAimPoints = aimChain.nPoints();
+		startGate = track.getStartGate();
+
+		nCars = controllers.length;
+		cars = new CarModel[nCars];
+		inputs = new double[nCars][layout.size() + 3 + PROXIMITY_SECTORS];
+		for (int c = 0; c < nCars; c++)
+			cars[c] = new CarModel();
+		sensorActivations = new double[layout.size()];
+		x = new double[nCars];
+		y = new double[nCars];
+		oldX = new double[nCars];
+		oldY = new double[nCars];
+		hash = new SpatialHash(PROXIMITY_RANGE, nCars);
+		nextAimpoint = new int[nCars];
+		totalAimPointsPassed = new int[nCars];
+		laptime = new long[nCars];
+		running = new boolean[nCars];
+		lapFinished = new boolean[nCars];
+		termination = new Termination[nCars];
+		results = new double[nCars][2];
+	}
+
+	/** Runs a whole simulation, and returns the lap time and distance of each car. */
+	public double[][] run() {
+		reset();
+		while (step());
+		return finish();
+	}
+
+	/** Places the cars in the starting grid and prepares a new simulation. */
+	public void reset() {
+		double[][] grid = startingGrid();
+		for (int c = 0; c < nCars; c++) {
+			cars[c].fixCarStartingPosition(track);
+			cars[c].place(grid[c][0], grid[c][1], grid[c][2]);
+			x[c] = grid[c][0];
+			y[c] = grid[c][1];
+			nextAimpoint[c] = 0;
+			totalAimPointsPassed[c] = 0;
+			laptime[c] = 0;
+			running[c] = true;
+			lapFinished[c] = false;
+			termination[c] = null;
+		}
+		iteration = 0;
+		nRunning = nCars;
+		contacts = 0;
+		hash.build(x, y, running, nCars);
+	}
+
+	/**
+	 * Returns the starting positions (x, y and heading): the starting point of the
+	 * track, and then rows behind it, each one ROW_SPACING further along the aim
+	 * points backwards, with LANES positions across. Positions over a figure (or
+	 * too close to one) are skipped.
+	 */
+	private double[][] startingGrid() {
+		double[][] grid = new double[nCars][];
+		if (nCars == 0)
+			return grid;
+		double originX = track.getFixedOriginX(), originY = track.getFixedOriginY();
+		grid[0] = new double[] {originX, originY, track.getFixedOriginHeading()};
+
+		// Walks backwards from the starting point, towards the aim point before its segment.
+		AimChainIndex index = new AimChainIndex(aimChain);
+		int target = index.nearestSegment(originX, originY) - 1;
+		double px = originX, py = originY;
+		double walked = 0, available = index.getLength();
+		int placed = 1;
+		while (placed < nCars) {
+			Vector2d point = aimChain.getPoint((target % numberOfAimPoints + numberOfAimPoints) % numberOfAimPoints);
+			double dx = point.x - px, dy = point.y - py;
+			double length = Math.sqrt(dx * dx + dy * dy);
+			if (length < ROW_SPACING) {
+				// Goes on towards the previous aim point.
+				target--;
+				walked += length;
+				px = point.x;
+				py = point.y;
+				if (walked > available)
+					throw new IllegalArgumentException("The track has no room for " + nCars + " cars.");
+				continue;
+			}
+			px += dx / length * ROW_SPACING;
+			py += dy / length * ROW_SPACING;
+			walked += ROW_SPACING;
+			if (walked > available)
+				throw new IllegalArgumentException("The track has no room for " + nCars + " cars.");
+			// Cars face the opposite way to the walk, across the lanes.
+			double ux = -dx / length, uy = -dy / length;
+			double heading = Math.atan2(uy, ux);
+			for (int lane = 0; lane < LANES && placed < nCars; lane++) {
+				double offset = (lane - (LANES - 1) / 2.0) * LANE_SPACING;
+				double cx = px - uy * offset, cy = py + ux * offset;
+				if (roomy(cx, cy))
+					grid[placed++] = new double[] {cx, cy, heading};
+			}
+		}
+		return grid;
+	}
+
+	/** Returns true if a car fits in a point (the point and those around it at the contact distance are okay). */
+	private boolean roomy(double cx, double cy) {
+		double r = CONTACT_DISTANCE;
+		return track.okay(cx, cy) && track.okay(cx + r, cy) && track.okay(cx - r, cy)
+				&& track.okay(cx, cy + r) && track.okay(cx, cy - r);
+	}
+
+	/**
+	 * Carries out an iteration: every running car reads its sensors and moves,
+	 * then the contacts are solved and the laps updated. Returns false when all
+	 * the cars have finished.
+	 */
+	public boolean step() {
+		if (nRunning == 0)
+			return false;
+		iteration++;
+
+		// Every car decides with the positions of the previous step, and moves.
+		for (int c = 0; c < nCars; c++) {
+			if (!running[c])
+				continue;
+			double[] actions = controllers[c].genAction(readSensors(c));
+			cars[c].drive(actions[0], actions[1]);
+		}
+		for (int c = 0; c < nCars; c++) {
+			if (!running[c])
+				continue;
+			oldX[c] = x[c];
+			oldY[c] = y[c];
+			cars[c].next(track);
+			x[c] = cars[c].getPosition().x;
+			y[c] = cars[c].getPosition().y;
+		}
+
+		// Contacts between the cars which have moved.
+		hash.build(x, y, running, nCars);
+		for (int c = 0; c < nCars; c++) {
+			if (!running[c])
+				continue;
+			int n = hash.neighbourBuckets(x[c], y[c], buckets);
+			for (int k = 0; k < n; k++)
+				for (int p = hash.bucketStart(buckets[k]); p < hash.bucketEnd(buckets[k]); p++) {
+					int other = hash.getPoint(p);
+					if (other > c && cars[c].collide(cars[other], CONTACT_DISTANCE, track)) {
+						contacts++;
+						x[c] = cars[c].getPosition().x;
+						y[c] = cars[c].getPosition().y;
+						x[other] = cars[other].getPosition().x;
+						y[other] = cars[other].getPosition().y;
+					}
+				}
+		}
+
+		for (int c = 0; c < nCars; c++)
+			if (running[c])
+				updateLap(c);
+		// Cars which have finished leave the track.
+		if (nRunning < nCars)
+			hash.build(x, y, running, nCars);
+		return nRunning > 0;
+	}
+
+	/** Updates the lap of a car after a step, as ControllerEvaluation.advance. */
+	private void updateLap(int c) {
+		CarModel car = cars[c];
+		laptime[c]++;
+
+		// Tests if the car has stopped.
+		if (x[c] == oldX[c] && y[c] == oldY[c]) {
+			end(c, Termination.STOPPED);
+			return;
+		}
+
+		// Tests if the point has been passed and updates the nextAimpoint.
+		if (car.getPosition().dist(aimChain.getPoint(nextAimpoint[c])) < 100) {
+			totalAimPointsPassed[c] += 1;
+			nextAimpoint[c] = (nextAimpoint[c] + 1) % numberOfAimPoints;
+		}
+
+		// If the car has crossed the line (from where it was before the step).
+		if (startGate.crosses(oldX[c], oldY[c], x[c], y[c])) {
+			if (totalAimPointsPassed[c] == numberOfAimPoints) {
+				lapFinished[c] = true;
+				end(c, Termination.LAP_FINISHED);
+				return;
+			}
+			laptime[c] = 0;
+			nextAimpoint[c] = 0;
+			totalAimPointsPassed[c] = 0;
+		}
+
+		if (iteration >= numberOfIterations)
+			end(c, Termination.TIME_LIMIT);
+	}
+
+	/** Stops a car. */
+	private void end(int c, Termination reason) {
+		running[c] = false;
+		termination[c] = reason;
+		nRunning--;
+	}
+
+	/**
+	 * Reads the sensors of a car and returns the inputs of its controller. The
+	 * array is reused by the next call for the same car.
+	 */
+	public double[] readSensors(int c) {
+		CarModel car = cars[c];
+		double[] in = inputs[c];
+		int n = sensorActivations.length;
+		car.readSensors(track, sensors, sensorActivations);
+		for (int i = 0; i < n; i++)
+			in[i] = sensorActivations[i];
+		in[n] = car.getSpeed();
+		in[n+1] = car.targetAngleDifference(aimChain.getPoint(nextAimpoint[c]));
+		in[n+2] = car.targetAngleDifference(aimChain.getPoint(nextAimpoint[c]+1));
+		in[n+2] = in[n+2]-in[n+1];
+		readProximity(c, in, n + 3);
+		return in;
+	}
+
+	/** Stores the proximity sensors of a car in the inputs, from a position. */
+	private void readProximity(int c, double[] in, int from) {
+		for (int s = 0; s < PROXIMITY_SECTORS; s++)
+			in[from + s] = 1;
+		double heading = cars[c].getHeading();
+		int n = hash.neighbourBuckets(x[c], y[c], buckets);
+		for (int k = 0; k < n; k++)
+			for (int p = hash.bucketStart(buckets[k]); p < hash.bucketEnd(buckets[k]); p++) {
+				int other = hash.getPoint(p);
+				if (other == c)
+					continue;
+				double dx = x[other] - x[c], dy = y[other] - y[c];
+				double distance = Math.sqrt(dx * dx + dy * dy) / PROXIMITY_RANGE;
+				if (distance >= 1)
+					continue;
+				// Angle relative to the heading, between -pi and pi: 0 in front, positive to the right.
+				double angle = Math.atan2(dy, dx) - heading;
+				angle -= 2 * Math.PI * Math.floor((angle + Math.PI) / (2 * Math.PI));
+				int sector = (int) Math.floor((angle + Math.PI / 4) / (Math.PI / 2)) & (PROXIMITY_SECTORS - 1);
+				if (distance < in[from + sector])
+					in[from + sector] = distance;
+			}
+	}
+
+	/** Finishes the simulation and returns the lap time and distance of each car, as ControllerEvaluation.finish. */
+	public double[][] finish() {
+		for (int c = 0; c < nCars; c++) {
+			if (running[c])
+				end(c, Termination.TIME_LIMIT);
+			double time, distance;
+			if (!lapFinished[c]) {
+				time = numberOfIterations;
+				distance = track.getLengthToPoint(nextAimpoint[c]) - cars[c].getPosition().dist(aimChain.getPoint(nextAimpoint[c]));
+			}
+			else {
+				time = laptime[c];
+				distance = track.getTrackLenght();
+			}
+			results[c][0] = time * timeIteration;
+			results[c][1] = ((int) (distance * scale * 100.0)) / 100.0;
+		}
+		return results;
+	}
+
+	/** Returns the number of cars. */
+	public int nCars() { return nCars; }
+
+	/** Returns the model of a car. */
+	public CarModel getCar(int c) { return cars[c]; }
+
+	/** Returns true while a car has not finished. */
+	public boolean isRunning(int c) { return running[c]; }
+
+	/** Returns true if a car has completed the lap. */
+	public boolean isLapFinished(int c) { return lapFinished[c]; }
+
+	/** Returns why a car finished, or null if it is running. */
+	public Termination getTermination(int c) { return termination[c]; }
+
+	/** Returns the number of iterations carried out. */
+	public int getIteration() { return iteration; }
+
+	/** Returns the number of contacts between cars since the last reset. */
+	public long getContacts() { return contacts; }
+
+	/** Returns the number of inputs of the controllers. */
+	public int nInputs() { return sensors.size() + 3 + PROXIMITY_SECTORS; }
+
+	/**
+	 * Races a number of random linear controllers (by default 50) in a track,
+	 * and prints the results of each car, the contacts and the time taken.
+	 *
+	 * Example:
+	 * 				java carracing.MultiCarSimulation 50 carracing.tracks.Track1 42
+	 */
+	public static void main(String[] args) {
+		int n = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+		ShapeTrack track = TrackLoader.getTrack(args.length > 1 ? args[1] : "carracing.tracks.Track1");
+		Random random = new Random(args.length > 2 ? Long.parseLong(args[2]) : 42);
+
+		Controller[] controllers = new Controller[n];
+		for (int c = 0; c < n; c++) {
+			double[] parameters = new double[LinearController.NUM_COEFFICIENTS];
+			for (int j = 0; j < parameters.length; j++)
+				parameters[j] = LinearController.RANGES[0][j] + random.nextDouble() * (LinearController.RANGES[1][j] - LinearController.RANGES[0][j]);
+			LinearController controller = new LinearController();
+			controller.setParameters(parameters);
+			controllers[c] = controller;
+		}
+
+		MultiCarSimulation simulation = new MultiCarSimulation(track, controllers);
+		long start = System.nanoTime();
+		double[][] results = simulation.run();
+		long time = System.nanoTime() - start;
+		for (int c = 0; c < n; c++)
+			System.out.println("Car " + c + ": " + simulation.getTermination(c) + ", lap time " + (results[c][0] / 1000.0)
+					+ " s, distance " + (results[c][1] / 100.0) + " m");
+		System.out.println(simulation.getIteration() + " iterations, " + simulation.getContacts() + " contacts, "
+				+ (time / 1000000) + " ms.");
+	}
+}
@@ -0,0 +1,146 @@
+package carracing;
+
+import javax.swing.*;
+import java.awt.*;
+
+import carracing.tracks.ShapeTrack;
+
+/**
+ * Draws many cars at once on the same track. The state of the cars is read
+ * from flat arrays (position and heading), which are filled by the
+ * simulation at each frame.
+ *
+ * The arrays are double-buffered: the simulation fills the back frame (see
+ * getBackFrame) while the window paints the front one, and publish swaps
+ * them, so a frame is never painted while it is being written.
+ *
+ * The level of detail depends on the number of cars: the leaders are drawn
+ * as in View (with their sensors), the rest as plain rectangles and, when
+ * there are many cars, as small dots.
+ */
+public class PopulationView extends JPanel {
+
+	private static final long serialVersionUID = 1L;
+
+	/** Number of cars drawn with all their detail. */
+	static final int detailedCars = 3;
+	/** Above this number of cars, the rest are drawn as dots. */
+	static final int maxRectangles = 100;
+
+	/** State of the cars in a frame. */
+	static class Frame {
+		final double[] x;
+		final double[] y;
+		final double[] heading;
+		final boolean[] running;
+		/** Indices of the cars, from the leader to the last. */
+		final int[] ranking;
+		int nCars;
+
+		Frame(int maxCars) {
+			x = new double[maxCars];
+			y = new double[maxCars];
+			heading = new double[maxCars];
+			running = new boolean[maxCars];
+			ranking = new int[maxCars];
+		}
+	}
+
+	/** Paints the track. */
+	TrackRenderer renderer;
+
+	/** Car used to draw the leaders. */
+	private final CarModel car = new CarModel();
+
+	/** Sensors of the leaders. */
+	private final double[] sensorAngles;
+	private final double[] sensorReaches;
+
+	/** Frame painted, frame being written (by the simulation) and frame being painted (or null). */
+	private volatile Frame front;
+	private Frame back;
+	private volatile Frame painted;
+
+	/** Creates a view for up to a certain number of cars. */
+	public PopulationView(ShapeTrack track, int maxCars) {
+		renderer = new TrackRenderer(track);
+		front = new Frame(maxCars);
+		back = new Frame(maxCars);
+		SensorLayout layout = SensorLayout.DEFAULT;
+		sensorAngles = new double[layout.size()];
+		sensorReaches = new double[layout.size()];
+		for (int i = 0; i < layout.size(); i++) {
+			sensorAngles[i] = layout.getAngle(i);
+			sensorReaches[i] = layout.getReach(i);
+		}
+	}
+
+	/**
+	 * Returns the frame to be filled by the simulation, waiting if it is still
+	 * being painted (it was the front frame until the last publish).
+	 */
+	Frame getBackFrame() {
+		while (painted == back)
+			Thread.yield();
+		return back;
+	}
+
+	/** Shows the back frame, which becomes the front one, and repaints. */
+	void publish() {
+		Frame published = back;
+		back = front;
+		front = published;
+		repaint();
+	}
+
+	/** Draws the component */
+	public void paintComponent(Graphics go) {
+		// Marks the frame as painted before reading it again, so that the
+		// simulation either sees the mark or has already published a new frame.
+		Frame f;
+		do {
+			f = front;
+			painted = f;
+		} while (f != front);
+		try {
+			paint((Graphics2D) go, f);
+		} finally {
+			painted = null;
+		}
+	}
+
+	/** Draws the track and the cars of a frame. */
+	private void paint(Graphics2D g, Frame f) {
+		renderer.paintStaticLayer(g, View.width, View.height);
+
+		// Cars at the end of the ranking are drawn first, so that leaders are on top.
+		g.setRenderingHint(RenderingHints.KEY_ANTIALIASING,	RenderingHints.VALUE_ANTIALIAS_OFF);
+		int nCars = f.nCars;
+		boolean dots = nCars > maxRectangles;
+		for (int rank = nCars - 1; rank >= detailedCars; rank--) {
+			int i = f.ranking[rank];
+			g.setColor(f.running[i] ? Color.BLUE : Color.GRAY);
+			if (dots) {
+				g.fillRect((int) f.x[i] - 2, (int) f.y[i] - 2, 4, 4);
+			} else {
+				Graphics2D gc = (Graphics2D) g.create();
+				gc.translate(f.x[i], f.y[i]);
+				gc.rotate(f.heading[i]);
+				gc.fillRect(-car.length / 2, -car.width / 2, car.length, car.width);
+				gc.dispose();
+			}
+		}
+
+		// Leaders.
+		for (int rank = Math.min(nCars, detailedCars) - 1; rank >= 0; rank--) {
+			int i = f.ranking[rank];
+			car.place(f.x[i], f.y[i], f.heading[i]);
+			renderer.paintCar(g, car, sensorAngles, sensorReaches);
+		}
+	}
+
+	/** Returns the dimension of the component.*/
+	public Dimension getPreferredSize() {
+		return View.d;
+	}
+}
@@ -0,0 +1,200 @@
+package carracing;
+
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.util.Collections;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import javax.swing.JFrame;
+
+import carracing.controllers.LinearController;
+import carracing.tracks.ShapeTrack;
+import carracing.tracks.TrackLoader;
+import optimization.Configuration;
+import optimization.algorithms.genetic.GeneticAlgorithm;
+import optimization.problems.CarRacingProblem;
+
+/**
+ * Shows a whole population of linear controllers racing at the same time
+ * on a track. Each car is simulated independently (cars do not collide),
+ * all of them advance one step per frame, and the ranking is updated
+ * according to the aim points passed.
+ */
+public class PopulationVisualization {
+
+	/** Main window. */
+	protected JFrame frame;
+
+	/** View */
+	protected PopulationView view;
+
+	/** Evaluations of the cars. */
+	protected ControllerEvaluation[] evaluations;
+
+	/** Indices of the cars, from the leader to the last. */
+	private final int[] ranking;
+
+	/** Real time per iteration, in milliseconds. */
+	private final long timeIteration = 50;
+
+	/** Creates the visualization of a set of parameter vectors of linear controllers. */
+	public PopulationVisualization(ShapeTrack track, double[][] parameters) {
+		// Each car has its own context, as all of them are simulated in the same thread.
+		evaluations = new ControllerEvaluation[parameters.length];
+		for (int i = 0; i < parameters.length; i++) {
+			LinearController controller = new LinearController();
+			controller.setParameters(parameters[i]);
+			evaluations[i] = new ControllerEvaluation(track, controller, new EvaluationContext());
+		}
+
+		// Creates the window
+		frame = new JFrame("Visualize population");
+		frame.addWindowListener(new WindowAdapter() {
+			public void windowClosing(WindowEvent e) {
+				System.exit(0);
+			}
+		});
+		ranking = new int[parameters.length];
+		view = new PopulationView(track, parameters.length);
+		frame.getContentPane().add(view);
+		frame.pack();
+		frame.setVisible(true);
+	}
+
+	/**
+	 * Simulates all the cars until all of them finish. Speed is a factor over
+	 * the simulated time. Returns the results of each car [laptime, distance].
+	 */
+	public double[][] visualize(double speed) {
+		int nCars = evaluations.length;
+		for (int i = 0; i < nCars; i++) {
+			evaluations[i].reset();
+			ranking[i] = i;
+		}
+
+		boolean anyRunning = true;
+		while (anyRunning) {
+			long iterationStartTime = System.currentTimeMillis();
+
+			// Moves all the cars one step, and writes them in the back frame of the view.
+			PopulationView.Frame f = view.getBackFrame();
+			anyRunning = false;
+			for (int i = 0; i < nCars; i++) {
+				ControllerEvaluation ce = evaluations[i];
+				if (ce.isRunning())
+					anyRunning |= ce.step();
+				CarModel model = ce.getModel();
+				f.x[i] = model.getPosition().x;
+				f.y[i] = model.getPosition().y;
+				f.heading[i] = model.getHeading();
+				f.running[i] = ce.isRunning();
+			}
+			rank();
+			System.arraycopy(ranking, 0, f.ranking, 0, nCars);
+			f.nCars = nCars;
+
+			// Shows the frame
+			view.publish();
+			try {
+				while ((System.currentTimeMillis() - iterationStartTime) < timeIteration / speed) {
+					Thread.sleep(1);
+				}
+			} catch (Exception e) {
+				e.printStackTrace();
+			}
+		}
+
+		double[][] results = new double[nCars][];
+		for (int i = 0; i < nCars; i++)
+			results[i] = evaluations[i].finish().clone();
+		return results;
+	}
+
+	/** Sorts the cars by the number of aim points passed (insertion sort, the order changes little). */
+	private void rank() {
+		for (int i = 1; i < evaluations.length; i++) {
+			int car = ranking[i];
+			int passed = evaluations[car].getAimPointsPassed();
+			int j = i - 1;
+			while (j >= 0 && evaluations[ranking[j]].getAimPointsPassed() < passed) {
+				ranking[j + 1] = ranking[j];
+				j--;
+			}
+			ranking[j + 1] = car;
+		}
+	}
+
+	/**
+	 * Returns the parameters of the k best configurations of a population (those
+	 * with the lowest scores, as the searches minimize), from the best one. The
+	 * population is not modified.
+	 */
+	public static double[][] best(Configuration[] population, int k) {
+		k = Math.min(k, population.length);
+		// Keeps the k best seen so far in a heap whose head is the worst of them.
+		PriorityQueue<Configuration> heap = new PriorityQueue<Configuration>(Math.max(k, 1), Collections.reverseOrder());
+		for (Configuration configuration : population) {
+			if (heap.size() < k)
+				heap.add(configuration);
+			else if (k > 0 && configuration.compareTo(heap.peek()) < 0) {
+				heap.poll();
+				heap.add(configuration);
+			}
+		}
+		double[][] parameters = new double[heap.size()][];
+		for (int i = parameters.length - 1; i >= 0; i--)
+			parameters[i] = heap.poll().getValues().clone();
+		return parameters;
+	}
+
+	/** Closes the window */
+	public void close() {
+		frame.dispose();
+	}
+
+	/**
+	 * Main. Takes the name of the track, the number of cars and the speed,
+	 * and shows that number of random linear controllers. Optionally, takes a
+	 * number of generations and k: then a genetic algorithm evolves a population
+	 * of that number of cars for those generations, and its k best controllers
+	 * are shown.
+	 *
+	 * Examples:
+	 * 				java carracing.PopulationVisualization Track2 200 2
+	 * 				java carracing.PopulationVisualization Track2 200 2 10 20
+	 */
+	public static void main(String[] args) {
+		ShapeTrack track = TrackLoader.getTrack("carracing.tracks."+args[0]);
+		int nCars = Integer.parseInt(args[1]);
+		double speed = args.length > 2 ? Double.parseDouble(args[2]) : 1;
+
+		double[][] parameters;
+		if (args.length > 4) {
+			// Evolves the population (tournament selection, simple crossover, replacement, fixed generations).
+			CarRacingProblem problem = new CarRacingProblem();
+			problem.setTrack(track);
+			GeneticAlgorithm algorithm = new GeneticAlgorithm();
+			algorithm.setProblem(problem);
+			algorithm.setParams(new String[] {args[1], "0", "0", "0", "0", args[3]});
+			algorithm.search();
+			parameters = best(algorithm.getPopulation(), Integer.parseInt(args[4]));
+		} else {
+			// Generates the controllers, always the same ones.
+			Random random = new Random(0);
+			parameters = new double[nCars][LinearController.NUM_COEFFICIENTS];
+			for (int i = 0; i < nCars; i++)
+				for (int j = 0; j < LinearController.NUM_COEFFICIENTS; j++)
+					parameters[i][j] = LinearController.RANGES[0][j] + random.nextDouble() * (LinearController.RANGES[1][j] - LinearController.RANGES[0][j]);
+		}
+
+		PopulationVisualization pv = new PopulationVisualization(track, parameters);
+		pv.visualize(speed);
+		int finished = 0;
+		for (ControllerEvaluation ce : pv.evaluations)
+			if (ce.isLapFinished())
+				finished++;
+		System.out.println(finished + " of " + parameters.length + " cars completed the lap.");
+		pv.close();
+	}
+}
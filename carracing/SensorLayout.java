@@ -0,0 +1,72 @@
+package carracing;
+
+/**
+ * Describes the wall sensors of the car: the angle of each sensor (relative
+ * to the heading of the car), its reach, and the number of steps used to
+ * scan it. Everything that depends only on this layout (the distance
+ * advanced at each step, and the trigonometry of the relative angles) is
+ * calculated once, when the layout is built.
+ *
+ * Layouts are immutable, so that a single one can be shared by any number
+ * of evaluators and views.
+ */
+public final class SensorLayout {
+
+	/** This constant represents 45 degrees */
+	static final double fortyFiveDegrees = Math.PI / 4;
+
+	/** Layout used by default: five sensors between -45 and 45 degrees. */
+	public static final SensorLayout DEFAULT = new SensorLayout(
+			new double[] {-fortyFiveDegrees, -fortyFiveDegrees/2, 0, fortyFiveDegrees/2, fortyFiveDegrees},
+			new double[] { 200, 300, 400, 300 ,200 }, 30);
+
+	/** Angles of the sensors, relative to the heading of the car. */
+	private final double[] angles;
+	/** Reach of the sensors. */
+	private final double[] reaches;
+	/** Number of steps used to scan each sensor. */
+	private final int steps;
+	/** Distance advanced at each step of each sensor. */
+	private final int[] rangePerStep;
+	/** Cosine and sine of the relative angles. */
+	private final double[] cosines;
+	private final double[] sines;
+
+	/** Builds a layout from the angles and reaches of the sensors. */
+	public SensorLayout(double[] angles, double[] reaches, int steps) {
+		if (angles.length != reaches.length)
+			throw new IllegalArgumentException("Each sensor needs an angle and a reach.");
+		this.angles = angles.clone();
+		this.reaches = reaches.clone();
+		this.steps = steps;
+		rangePerStep = new int[angles.length];
+		cosines = new double[angles.length];
+		sines = new double[angles.length];
+		for (int i = 0; i < angles.length; i++) {
+			rangePerStep[i] = (int) reaches[i] / steps;
+			cosines[i] = Math.cos(angles[i]);
+			sines[i] = Math.sin(angles[i]);
+		}
+	}
+
+	/** Returns the number of sensors. */
+	public int size() { return angles.length; }
+
+	/** Returns the number of steps used to scan each sensor. */
+	public int getSteps() { return steps; }
+
+	/** Returns the angle of the ith sensor, relative to the car. */
+	public double getAngle(int i) { return angles[i]; }
+
+	/** Returns the reach of the ith sensor. */
+	public double getReach(int i) { return reaches[i]; }
+
+	/** Returns the distance advanced at each step of the ith sensor. */
+	public int getRangePerStep(int i) { return rangePerStep[i]; }
+
+	/** Returns the cosine of the angle of the ith sensor. */
+	public double getCos(int i) { return cosines[i]; }
+
+	/** Returns the sine of the angle of the ith sensor. */
+	public double getSin(int i) { return sines[i]; }
+}
@@ -0,0 +1,344 @@
+package carracing;
+
+import java.awt.Shape;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Rectangle2D;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import carracing.tracks.ShapeTrack;
+import carracing.tracks.TrackLoader;
+
+/**
+ * Precomputed readings of the wall sensors of a track. For a given track and
+ * layout of sensors, the readings only depend on the position and the heading
+ * of the car, so they are calculated once on a lattice of poses (x, y, heading)
+ * covering the track, and then read in constant time, either from the nearest
+ * pose of the lattice or interpolating between the surrounding ones.
+ *
+ * This is an approximation: the readings are exact on the lattice, but not
+ * between its poses. It is therefore off by default (see
+ * ControllerEvaluation.setSensorTable) and its error can be measured with
+ * carracing.reference.EquivalenceChecker.
+ *
+ * Tables are stored in memory-mapped files (in the directory given by the
+ * system property carracing.cache, or in the temporary directory), so they
+ * are only built once per track and resolution. Each reading takes a byte:
+ * the number of steps of the sensor until the obstacle.
+ */
+public class SensorTable {
+
+	/** Identifies the files of tables. */
+	private static final int MAGIC = 0x534E5431;
+
+	/** Size of the header of the files, in bytes. */
+	private static final int HEADER = 64;
+
+	/** Default resolution: size of the cells (pixels) and number of headings. */
+	public static final double DEFAULT_CELL_SIZE = 4;
+	public static final int DEFAULT_HEADINGS = 128;
+
+	/** Tables already loaded in this JVM, by file name. */
+	private static final Map<String, SensorTable> loaded = new ConcurrentHashMap<String, SensorTable>();
+
+	/** Track and sensors. */
+	private final ShapeTrack track;
+	private final SensorLayout layout;
+	private final int nSensors;
+
+	/** Lattice: origin, size of the cells, and number of points in each dimension. */
+	private final double originX, originY, cellSize;
+	private final int nx, ny, nHeadings;
+	private final double headingStep;
+
+	/** Readings (steps of each sensor), indexed by heading, x, y and sensor. */
+	private final MappedByteBuffer readings;
+
+	/** Creates a table on a lattice. The readings are those already in the buffer. */
+	private SensorTable(ShapeTrack track, SensorLayout layout, double originX, double originY, double cellSize,
+			int nx, int ny, int nHeadings, MappedByteBuffer readings) {
+		this.track = track;
+		this.layout = layout;
+		this.nSensors = layout.size();
+		this.originX = originX;
+		this.originY = originY;
+		this.cellSize = cellSize;
+		this.nx = nx;
+		this.ny = ny;
+		this.nHeadings = nHeadings;
+		this.headingStep = 2 * Math.PI / nHeadings;
+		this.readings = readings;
+	}
+
+	/** Returns the table of a track with the default layout and resolution. */
+	public static SensorTable get(ShapeTrack track) throws IOException {
+		return get(track, SensorLayout.DEFAULT, DEFAULT_CELL_SIZE, DEFAULT_HEADINGS);
+	}
+
+	/**
+	 * Returns the table of a track with a certain layout and resolution.
+	 * Loads it from its file if it exists, and otherwise builds it (in
+	 * parallel) and stores it.
+	 */
+	public static SensorTable get(ShapeTrack track, SensorLayout layout, double cellSize, int nHeadings) throws IOException {
+		Rectangle2D bounds = bounds(track);
+		long fingerprint = fingerprint(track, bounds, layout, cellSize, nHeadings);
+		File file = new File(cacheDirectory(), track.getClass().getSimpleName() + "-" + Long.toHexString(fingerprint) + ".sensors");
+		String key = file.getPath();
+		SensorTable table = loaded.get(key);
+		if (table != null && table.track == track && table.layout == layout)
+			return table;
+
+		synchronized (SensorTable.class) {
+			table = open(file, fingerprint, track, layout);
+			if (table == null)
+				table = build(file, fingerprint, track, layout, bounds, cellSize, nHeadings);
+		}
+		loaded.put(key, table);
+		return table;
+	}
+
+	/** Returns the track of the table. */
+	public ShapeTrack getTrack() { return track; }
+
+	/** Returns the layout of the sensors of the table. */
+	public SensorLayout getLayout() { return layout; }
+
+	/** Returns the size of the table, in bytes. */
+	public long size() { return (long) nx * ny * nHeadings * nSensors; }
+
+	/**
+	 * Reads all the sensors of a car, either from the nearest pose of the
+	 * lattice or interpolating. Poses out of the lattice are read by the car
+	 * itself (see CarModel.readSensors), with its own settings.
+	 */
+	public void read(CarModel model, boolean interpolate, double[] activations) {
+		double fx = (model.getPosition().x - originX) / cellSize;
+		double fy = (model.getPosition().y - originY) / cellSize;
+		if (!(fx >= 0 && fy >= 0 && fx <= nx - 1 && fy <= ny - 1)) {
+			model.readSensors(track, layout, activations);
+			return;
+		}
+		double heading = model.getHeading();
+		double fh = heading / headingStep;
+		fh -= Math.floor(fh / nHeadings) * nHeadings;
+		double steps = layout.getSteps();
+
+		if (!interpolate) {
+			int i = (int) (fx + 0.5), j = (int) (fy + 0.5), k = (int) (fh + 0.5) % nHeadings;
+			int base = index(k, i, j);
+			for (int s = 0; s < nSensors; s++)
+				activations[s] = readings.get(base + s) / steps;
+			return;
+		}
+
+		// Trilinear interpolation between the eight surrounding poses.
+		int i0 = Math.min((int) fx, nx - 2), j0 = Math.min((int) fy, ny - 2), k0 = (int) fh % nHeadings;
+		int k1 = (k0 + 1) % nHeadings;
+		double dx = fx - i0, dy = fy - j0, dh = fh - (int) fh;
+		for (int s = 0; s < nSensors; s++) {
+			double c0 = bilinear(k0, i0, j0, s, dx, dy);
+			double c1 = bilinear(k1, i0, j0, s, dx, dy);
+			activations[s] = (c0 + (c1 - c0) * dh) / steps;
+		}
+	}
+
+	/** Interpolates a sensor in x and y for a heading of the lattice. */
+	private double bilinear(int k, int i, int j, int s, double dx, double dy) {
+		double v00 = readings.get(index(k, i, j) + s);
+		double v01 = readings.get(index(k, i, j + 1) + s);
+		double v10 = readings.get(index(k, i + 1, j) + s);
+		double v11 = readings.get(index(k, i + 1, j + 1) + s);
+		double v0 = v00 + (v01 - v00) * dy;
+		double v1 = v10 + (v11 - v10) * dy;
+		return v0 + (v1 - v0) * dx;
+	}
+
+	/** Position of the readings of a pose of the lattice. */
+	private int index(int k, int i, int j) {
+		return HEADER + ((k * nx + i) * ny + j) * nSensors;
+	}
+
+	/** Opens the file of a table, or returns null if it does not exist or does not match. */
+	private static SensorTable open(File file, long fingerprint, ShapeTrack track, SensorLayout layout) throws IOException {
+		if (!file.exists())
+			return null;
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			if (raf.length() < HEADER)
+				return null;
+			MappedByteBuffer in = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+			if (in.getInt(0) != MAGIC || in.getLong(4) != fingerprint)
+				return null;
+			double originX = in.getDouble(12), originY = in.getDouble(20), cellSize = in.getDouble(28);
+			int nx = in.getInt(36), ny = in.getInt(40), nHeadings = in.getInt(44);
+			if (raf.length() != HEADER + (long) nx * ny * nHeadings * layout.size())
+				return null;
+			return new SensorTable(track, layout, originX, originY, cellSize, nx, ny, nHeadings, in);
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Builds the table of a track and stores it in a file. Each thread calculates
+	 * the readings of some headings, directly into the mapped file. The header is
+	 * written at the end, so an interrupted build is never taken as complete.
+	 */
+	private static SensorTable build(File file, long fingerprint, final ShapeTrack track, final SensorLayout layout,
+			Rectangle2D bounds, double cellSize, int nHeadings) throws IOException {
+		int nx = (int) Math.ceil(bounds.getWidth() / cellSize) + 1;
+		int ny = (int) Math.ceil(bounds.getHeight() / cellSize) + 1;
+		long length = HEADER + (long) nx * ny * nHeadings * layout.size();
+		if (length > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("The resolution is too fine: the table would take " + length + " bytes.");
+		if (layout.getSteps() > Byte.MAX_VALUE)
+			throw new IllegalArgumentException("Sensors with more than " + Byte.MAX_VALUE + " steps can not be stored.");
+
+		file.getParentFile().mkdirs();
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			raf.setLength(0);
+			final MappedByteBuffer out = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, length);
+			final SensorTable table = new SensorTable(track, layout, bounds.getX(), bounds.getY(), cellSize, nx, ny, nHeadings, out);
+
+			long start = System.currentTimeMillis();
+			final int nThreads = Runtime.getRuntime().availableProcessors();
+			Thread[] workers = new Thread[nThreads];
+			for (int w = 0; w < nThreads; w++) {
+				final int first = w;
+				workers[w] = new Thread() {
+					public void run() {
+						for (int k = first; k < table.nHeadings; k += nThreads)
+							table.fill(k, out);
+					}
+				};
+				workers[w].start();
+			}
+			for (Thread worker : workers) {
+				try {
+					worker.join();
+				} catch (InterruptedException e) {
+					throw new IOException("The build of the sensor table was interrupted.", e);
+				}
+			}
+
+			out.putLong(4, fingerprint);
+			out.putDouble(12, table.originX).putDouble(20, table.originY).putDouble(28, cellSize);
+			out.putInt(36, nx).putInt(40, ny).putInt(44, nHeadings);
+			out.putInt(0, MAGIC);
+			out.force();
+			System.out.println("Sensor table of " + track.getClass().getSimpleName() + " built in "
+					+ (System.currentTimeMillis() - start) + " ms (" + table.size() + " bytes, " + nThreads + " threads).");
+			return table;
+		} finally {
+			raf.close();
+		}
+	}
+
+	/** Calculates the readings of all the poses of the lattice with a heading. */
+	private void fill(int k, MappedByteBuffer out) {
+		double heading = k * headingStep;
+		double steps = layout.getSteps();
+		for (int i = 0; i < nx; i++) {
+			double x = originX + i * cellSize;
+			for (int j = 0; j < ny; j++) {
+				double y = originY + j * cellSize;
+				int base = index(k, i, j);
+				for (int s = 0; s < nSensors; s++) {
+					double activation = CarModel.wallSensor(track, x, y, heading, layout.getAngle(s), layout.getSteps(), layout.getRangePerStep(s));
+					out.put(base + s, (byte) Math.round(activation * steps));
+				}
+			}
+		}
+	}
+
+	/** Returns the rectangle containing all the figures of the track. */
+	private static Rectangle2D bounds(ShapeTrack track) {
+		Rectangle2D bounds = null;
+		for (Object figure : track.getShapeCollection()) {
+			Rectangle2D b = ((Shape) figure).getBounds2D();
+			if (bounds == null)
+				bounds = (Rectangle2D) b.clone();
+			else
+				bounds.add(b);
+		}
+		return bounds == null ? new Rectangle2D.Double(0, 0, 0, 0) : bounds;
+	}
+
+	/**
+	 * Identifies a track, a layout and a resolution, so that tables are not
+	 * reused for other ones. Tracks are identified by the outlines of their
+	 * figures (segments and coordinates), since tracks of the same class can
+	 * have different figures.
+	 */
+	private static long fingerprint(ShapeTrack track, Rectangle2D bounds, SensorLayout layout, double cellSize, int nHeadings) {
+		long h = track.getClass().getName().hashCode();
+		double[] coords = new double[6];
+		for (Object figure : track.getShapeCollection()) {
+			PathIterator path = ((Shape) figure).getPathIterator(null);
+			h = 31 * h + path.getWindingRule();
+			for (; !path.isDone(); path.next()) {
+				int type = path.currentSegment(coords);
+				h = 31 * h + type;
+				for (int c = 0; c < coordinates(type); c++)
+					h = 31 * h + Double.doubleToLongBits(coords[c]);
+			}
+			// Separates the figures, so that they can not be confused with a single one.
+			h = 31 * h - 1;
+		}
+		for (int s = 0; s < layout.size(); s++) {
+			h = 31 * h + Double.doubleToLongBits(layout.getAngle(s));
+			h = 31 * h + layout.getRangePerStep(s);
+		}
+		h = 31 * h + layout.getSteps();
+		h = 31 * h + Double.doubleToLongBits(cellSize);
+		h = 31 * h + nHeadings;
+		return h;
+	}
+
+	/** Number of coordinates of a segment of a PathIterator. */
+	private static int coordinates(int type) {
+		switch (type) {
+		case PathIterator.SEG_MOVETO:
+		case PathIterator.SEG_LINETO:
+			return 2;
+		case PathIterator.SEG_QUADTO:
+			return 4;
+		case PathIterator.SEG_CUBICTO:
+			return 6;
+		default:
+			return 0;
+		}
+	}
+
+	/** Directory of the files of the tables. */
+	private static File cacheDirectory() {
+		String directory = System.getProperty("carracing.cache");
+		if (directory == null)
+			directory = new File(System.getProperty("java.io.tmpdir"), "carracing").getPath();
+		return new File(directory);
+	}
+
+	/**
+	 * Builds (or loads) the table of a track and prints its size. Takes the name of the
+	 * track, and optionally the size of the cells and the number of headings.
+	 *
+	 * Example:
+	 * 				java carracing.SensorTable Track2 4 128
+	 */
+	public static void main(String[] args) throws Exception {
+		ShapeTrack track = TrackLoader.getTrack("carracing.tracks." + args[0]);
+		double cellSize = args.length > 1 ? Double.parseDouble(args[1]) : DEFAULT_CELL_SIZE;
+		int nHeadings = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_HEADINGS;
+		long start = System.currentTimeMillis();
+		SensorTable table = get(track, SensorLayout.DEFAULT, cellSize, nHeadings);
+		System.out.println("Sensor table of " + args[0] + ": " + table.nx + " x " + table.ny + " x " + table.nHeadings
+				+ " poses, " + table.size() + " bytes, ready in " + (System.currentTimeMillis() - start) + " ms.");
+	}
+}
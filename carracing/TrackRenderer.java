@@ -0,0 +1,111 @@
+package carracing;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+
+import carracing.tracks.AimChain;
+import carracing.tracks.ShapeTrack;
+import carracing.utils.Vector2d;
+
+/**
+ * Paints the track and the car on any Graphics2D, either the one of a
+ * window (View) or the one of an image (HeadlessRenderer).
+ *
+ * As only the car changes from one frame to the next, the track (ground,
+ * figures, finish line and aim points) is painted once into an image, which
+ * is copied at each frame and rebuilt only when the track changes.
+ */
+public class TrackRenderer {
+
+	// Colors
+	static final Color trackColor = new Color(230,230,230);
+	static final Color grassColor = new Color(100,200,0);
+	static final Color startLineColor = new Color(255,255,255);
+
+	// Track, aim points and finish line.
+	ShapeTrack track;
+	AimChain aims;
+	Vector2d[] startLine;
+
+	// Image with the track already painted.
+	private Image staticLayer;
+
+	/** Creates the renderer of a track. */
+	public TrackRenderer(ShapeTrack track) {
+		setTrack(track);
+	}
+
+	/** Changes the track. The image of the track will be painted again. */
+	public void setTrack(ShapeTrack track) {
+		this.track = track;
+		this.aims = track.getAimchain();
+		this.startLine = track.getStartLine();
+		this.staticLayer = null;
+	}
+
+	/** 
+	 * Copies the image of the track. The image is painted the first time, 
+	 * compatible with the device of g so that copying it is fast.
+	 */
+	public void paintStaticLayer(Graphics2D g, int width, int height) {
+		if (staticLayer == null || staticLayer.getWidth(null) != width || staticLayer.getHeight(null) != height) {
+			GraphicsConfiguration gc = g.getDeviceConfiguration();
+			staticLayer = (gc != null) ? gc.createCompatibleImage(width, height)
+					: new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+			Graphics2D layer = (Graphics2D) staticLayer.getGraphics();
+			paintTrack(layer, width, height);
+			layer.dispose();
+		}
+		g.drawImage(staticLayer, 0, 0, null);
+	}
+
+	/** Paints the ground, the figures of the track, the finish line and the aim points. */
+	public void paintTrack(Graphics2D g, int width, int height) {
+		g.setRenderingHint(RenderingHints.KEY_ANTIALIASING,	RenderingHints.VALUE_ANTIALIAS_ON);
+		g.setColor(trackColor);
+		g.fillRect(0, 0, width, height);
+
+		// Draws the track
+		g.setColor(grassColor);
+		for (Object figure : track.getShapeCollection()) {
+			g.fill((Shape) figure);
+		}
+		// Draws the finish line
+		g.setColor(startLineColor);
+		g.drawLine((int)startLine[0].x, (int)startLine[0].y, (int)startLine[1].x, (int)startLine[1].y);
+
+		// Draws the aim points
+		if (aims != null) {
+			aims.draw(g);
+		}
+	}
+
+	/** Paints the car and its sensors. */
+	public void paintCar(Graphics2D g, CarModel model, double[] sensorAngles, double[] sensorReaches) {
+		AffineTransform transform = g.getTransform();
+		g.setRenderingHint(RenderingHints.KEY_ANTIALIASING,	RenderingHints.VALUE_ANTIALIAS_ON);
+
+		// Draws the car making first a coordinate change in order to use
+		// its position and orientation as reference.
+		g.translate(model.getPosition().x, model.getPosition().y);
+		g.rotate(model.getHeading());
+		g.setColor(Color.RED);
+		g.fillRect(-model.length / 2, -model.width / 2, model.length,
+				model.width);
+
+		//Draws the sensors
+		g.setColor(Color.black);
+		for (int i = 0; i < sensorAngles.length; i++) {
+			g.drawLine(0, 0, (int) (Math.cos(sensorAngles[i])
+					* sensorReaches[i]), (int) (Math.sin(sensorAngles[i])
+					* sensorReaches[i]));
+		}
+
+		// Draws the windscreen
+		g.setColor(Color.white);
+		g.fillRect(0, -model.width / 2, model.width / 2, model.length / 2);
+
+		g.setTransform(transform);
+	}
+}
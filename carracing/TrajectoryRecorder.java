@@ -0,0 +1,186 @@
+package carracing;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import carracing.controllers.Controller;
+import carracing.controllers.ControllerLoader;
+import carracing.tracks.ShapeTrack;
+import carracing.tracks.TrackLoader;
+
+/**
+ * Records the state of the car at each step of a simulation into a ring
+ * buffer of floats which is allocated once. When the buffer is full, the
+ * oldest steps are overwritten. For long runs the buffer can be kept out
+ * of the heap.
+ *
+ * Each step (frame) stores, in this order: position (x, y), heading, speed,
+ * the activation of each sensor, power and steer.
+ *
+ * Recordings can be written to a compact binary file and read back, so that
+ * they can be replayed without simulating the car again.
+ */
+public class TrajectoryRecorder {
+
+	/** Positions of the fields within a frame. */
+	public static final int X = 0;
+	public static final int Y = 1;
+	public static final int HEADING = 2;
+	public static final int SPEED = 3;
+	public static final int SENSORS = 4;
+
+	/** Identifies the binary files ("TRJ1"). */
+	private static final int MAGIC = 0x54524A31;
+	/** Size of the header of the files: magic, number of sensors and number of frames. */
+	private static final int HEADER = 3 * 4;
+
+	/** Number of sensors. */
+	private final int nSensors;
+	/** Number of floats per frame. */
+	private final int stride;
+	/** Maximum number of frames. */
+	private final int capacity;
+	/** Buffer storing the frames. */
+	private final FloatBuffer buffer;
+	/** Number of frames recorded since the last clear. */
+	private long recorded;
+
+	/** Creates a recorder, in the heap, for a certain number of sensors and frames. */
+	public TrajectoryRecorder(int nSensors, int capacity) {
+		this(nSensors, capacity, false);
+	}
+
+	/** Creates a recorder. If offHeap is true, the frames are stored in a direct buffer. */
+	public TrajectoryRecorder(int nSensors, int capacity, boolean offHeap) {
+		if (capacity <= 0)
+			throw new IllegalArgumentException("The capacity must be positive: " + capacity + ".");
+		this.nSensors = nSensors;
+		this.stride = SENSORS + nSensors + 2;
+		this.capacity = capacity;
+		if (offHeap)
+			buffer = ByteBuffer.allocateDirect(checkedSize(4L * capacity * stride)).order(ByteOrder.nativeOrder()).asFloatBuffer();
+		else
+			buffer = FloatBuffer.allocate(checkedSize((long) capacity * stride));
+	}
+
+	/** Returns a size of a buffer, if it fits in an int. */
+	private static int checkedSize(long size) {
+		if (size > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("Too many frames for a buffer: " + size + ".");
+		return (int) size;
+	}
+
+	/** Creates a read-only recorder over frames which have already been stored. */
+	private TrajectoryRecorder(int nSensors, int frames, FloatBuffer buffer) {
+		this.nSensors = nSensors;
+		this.stride = SENSORS + nSensors + 2;
+		this.capacity = frames;
+		this.buffer = buffer;
+		this.recorded = frames;
+	}
+
+	/** Stores the current state of the car, the readings of the sensors and the actions applied. */
+	public void record(CarModel model, double[] sensorActivations, double power, double steer) {
+		int base = (int) (recorded % capacity) * stride;
+		buffer.put(base + X, (float) model.getPosition().x);
+		buffer.put(base + Y, (float) model.getPosition().y);
+		buffer.put(base + HEADING, (float) model.getHeading());
+		buffer.put(base + SPEED, (float) model.getSpeed());
+		for (int i = 0; i < nSensors; i++)
+			buffer.put(base + SENSORS + i, (float) sensorActivations[i]);
+		buffer.put(base + SENSORS + nSensors, (float) power);
+		buffer.put(base + SENSORS + nSensors + 1, (float) steer);
+		recorded++;
+	}
+
+	/** Discards all the frames. */
+	public void clear() {
+		recorded = 0;
+	}
+
+	/** Returns the number of frames available (at most, the capacity). */
+	public int size() {
+		return (int) Math.min(recorded, capacity);
+	}
+
+	/** Returns the number of sensors. */
+	public int nSensors() {
+		return nSensors;
+	}
+
+	/** Returns a field of a frame. Frame 0 is the oldest available. */
+	public float get(int frame, int field) {
+		long first = recorded - size();
+		return buffer.get((int) ((first + frame) % capacity) * stride + field);
+	}
+
+	/** Returns the activation of a sensor in a frame. */
+	public float getSensor(int frame, int sensor) {
+		return get(frame, SENSORS + sensor);
+	}
+
+	/** Returns the power applied in a frame. */
+	public float getPower(int frame) {
+		return get(frame, SENSORS + nSensors);
+	}
+
+	/** Returns the steer applied in a frame. */
+	public float getSteer(int frame) {
+		return get(frame, SENSORS + nSensors + 1);
+	}
+
+	/** Writes the available frames, oldest first, into a file. */
+	public void write(File file) throws IOException {
+		int frames = size();
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			FileChannel channel = raf.getChannel();
+			raf.setLength(0);
+			MappedByteBuffer out = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER + (long) frames * stride * 4);
+			out.putInt(MAGIC).putInt(nSensors).putInt(frames);
+			FloatBuffer floats = out.asFloatBuffer();
+			for (int frame = 0; frame < frames; frame++)
+				for (int field = 0; field < stride; field++)
+					floats.put(get(frame, field));
+			out.force();
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Reads a file written by write(). The file is mapped in memory, so the
+	 * frames are not copied. The resulting recorder is read-only.
+	 */
+	public static TrajectoryRecorder read(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			MappedByteBuffer in = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+			if (in.getInt() != MAGIC)
+				throw new IOException(file + " is not a trajectory file.");
+			int nSensors = in.getInt();
+			int frames = in.getInt();
+			return new TrajectoryRecorder(nSensors, frames, in.asFloatBuffer());
+		} finally {
+			raf.close();
+		}
+	}
+
+	/** Records a lap of a controller in a track and writes it into a file. */
+	public static void main(String[] args) throws Exception {
+		ShapeTrack track = TrackLoader.getTrack("carracing.tracks."+args[0]);
+		Controller control = ControllerLoader.getController("carracing.controllers.LinearController");
+		ControllerEvaluation ce = new ControllerEvaluation(track, control);
+		TrajectoryRecorder recorder = new TrajectoryRecorder(SensorLayout.DEFAULT.size(), ce.numberOfIterations);
+		ce.setRecorder(recorder);
+		ce.evaluate();
+		recorder.write(new File(args[1]));
+		System.out.println(recorder.size()+" steps written to "+args[1]+".");
+	}
+}
@@ -0,0 +1,390 @@
+package carracing.controllers;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiles the parameters of a LinearController into a class of its own,
+ * whose genAction has the coefficients as constants instead of reading them
+ * from an array, so that the JIT can fold them into the code. The class is
+ * written directly as bytecode and defined as a hidden class (see
+ * MethodHandles.Lookup.defineHiddenClass), which can be unloaded once the
+ * controller is no longer used.
+ *
+ * The compiled genAction carries out exactly the same operations, in the
+ * same order, as LinearController.genAction, so the actions are identical.
+ * The only difference is that the array of actions is reused by the next
+ * call instead of allocated.
+ *
+ * Since that array belongs to the instance, an instance must not be used
+ * by several threads at once. So the compiled classes are kept in a cache
+ * (the least recently used ones are dropped), so that the same parameters
+ * are not compiled again, but get returns a new instance of the class every
+ * time, which only allocates the array of actions.
+ */
+public final class ControllerCompiler {
+
+	/** Maximum number of compiled controllers kept by default. */
+	public static final int DEFAULT_CACHE_SIZE = 256;
+
+	/** Default compiler, shared by all the threads. */
+	private static final ControllerCompiler shared = new ControllerCompiler(DEFAULT_CACHE_SIZE);
+
+	/** Constructors of the compiled classes, by their parameters, in order of use. */
+	private final LinkedHashMap<Key, MethodHandle> cache;
+
+	/** Number of compilations and of controllers found in the cache. */
+	private long compilations, hits;
+
+	/** Creates a compiler which keeps up to cacheSize compiled controllers. */
+	public ControllerCompiler(final int cacheSize) {
+		cache = new LinkedHashMap<Key, MethodHandle>(16, 0.75f, true) {
+			protected boolean removeEldestEntry(Map.Entry<Key, MethodHandle> eldest) {
+				return size() > cacheSize;
+			}
+		};
+	}
+
+	/** Returns the compiler shared by all the threads. */
+	public static ControllerCompiler getShared() {
+		return shared;
+	}
+
+	/**
+	 * Returns a new compiled controller equivalent to a linear controller
+	 * with certain parameters (which are copied), whose class is taken from
+	 * the cache if possible.
+	 */
+	public Controller get(double[] parameters) {
+		return instantiate(constructor(parameters));
+	}
+
+	/** Returns the constructor of the class compiled for certain parameters, compiling it if needed. */
+	private synchronized MethodHandle constructor(double[] parameters) {
+		Key key = new Key(parameters);
+		MethodHandle constructor = cache.get(key);
+		if (constructor != null) {
+			hits++;
+			return constructor;
+		}
+		constructor = define(parameters);
+		compilations++;
+		cache.put(key, constructor);
+		return constructor;
+	}
+
+	/** Returns the number of compilations carried out. */
+	public synchronized long getCompilations() {
+		return compilations;
+	}
+
+	/** Returns the number of controllers found in the cache. */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/** Compiles the parameters of a linear controller (without the cache). */
+	public static Controller compile(double[] parameters) {
+		return instantiate(define(parameters));
+	}
+
+	/** Defines the class of a linear controller with certain parameters, and returns its constructor. */
+	private static MethodHandle define(double[] parameters) {
+		if (parameters.length < LinearController.NUM_COEFFICIENTS)
+			throw new IllegalArgumentException("A linear controller has " + LinearController.NUM_COEFFICIENTS + " parameters.");
+		try {
+			MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(emit(parameters), true);
+			return lookup.findConstructor(lookup.lookupClass(), MethodType.methodType(void.class));
+		} catch (IOException | ReflectiveOperationException e) {
+			throw new IllegalStateException("The controller could not be compiled.", e);
+		}
+	}
+
+	/** Creates an instance of a compiled class. */
+	private static Controller instantiate(MethodHandle constructor) {
+		try {
+			return (Controller) constructor.invoke();
+		} catch (Throwable e) {
+			throw new IllegalStateException("The controller could not be created.", e);
+		}
+	}
+
+	/** Parameters, compared by value. */
+	private static final class Key {
+		private final double[] values;
+		private final int hash;
+
+		Key(double[] values) {
+			this.values = values.clone();
+			hash = Arrays.hashCode(this.values);
+		}
+
+		public int hashCode() {
+			return hash;
+		}
+
+		public boolean equals(Object other) {
+			return other instanceof Key && Arrays.equals(values, ((Key) other).values);
+		}
+	}
+
+	// Bytecode of the class.
+
+	/** Name of the compiled classes (hidden classes get a suffix of their own). */
+	private static final String CLASS_NAME = "carracing/controllers/CompiledLinearController";
+
+	/** Opcodes used. */
+	private static final int ALOAD_0 = 0x2a, ALOAD_1 = 0x2b, ALOAD = 0x19, ASTORE = 0x3a, DLOAD = 0x18, DSTORE = 0x39,
+			ICONST_0 = 0x03, DCONST_0 = 0x0e, DCONST_1 = 0x0f, BIPUSH = 0x10, LDC2_W = 0x14, DALOAD = 0x31, DASTORE = 0x52,
+			DADD = 0x63, DSUB = 0x67, DMUL = 0x6b, DCMPL = 0x97, DCMPG = 0x98, IFGE = 0x9c, IFLE = 0x9e, GOTO = 0xa7,
+			ARETURN = 0xb0, RETURN = 0xb1, GETFIELD = 0xb4, PUTFIELD = 0xb5, INVOKESPECIAL = 0xb7, INVOKESTATIC = 0xb8,
+			NEWARRAY = 0xbc, T_DOUBLE = 7;
+
+	/** Local variables of genAction: this, inputs, targetSpeed (two slots) and actions. */
+	private static final int TARGET_SPEED = 2, ACTIONS = 4;
+
+	/**
+	 * Writes the class file. Its version is 50 (Java 6), so that the code
+	 * needs no stack map frames: the verifier infers the types itself.
+	 */
+	static byte[] emit(double[] p) throws IOException {
+		ConstantPool pool = new ConstantPool();
+		int thisClass = pool.classRef(CLASS_NAME);
+		int superClass = pool.classRef("java/lang/Object");
+		int controller = pool.classRef("carracing/controllers/Controller");
+		int actionsField = pool.memberRef(9, thisClass, "actions", "[D");
+		int objectInit = pool.memberRef(10, superClass, "<init>", "()V");
+		int sqrt = pool.memberRef(10, pool.classRef("java/lang/Math"), "sqrt", "(D)D");
+		int codeName = pool.utf8("Code");
+
+		// Constructor: creates the array of actions.
+		Code init = new Code();
+		init.op(ALOAD_0).op(INVOKESPECIAL).u2(objectInit);
+		init.op(ALOAD_0).op(ICONST_0 + 2).op(NEWARRAY).op(T_DOUBLE).op(PUTFIELD).u2(actionsField);
+		init.op(RETURN);
+
+		// genAction, following LinearController.genAction.
+		Code code = new Code();
+		// Target speed, depending on the angle of the curve (inputs[7]).
+		int elseIfCurve = code.newLabel(), elseCurve = code.newLabel(), clamp = code.newLabel();
+		code.input(7).constant(pool, -0.2).op(DCMPG).jump(IFGE, elseIfCurve);
+		code.constant(pool, p[0]).slower(pool, p[1], 2, sqrt).op(DSUB).slower(pool, p[2], 1, sqrt).op(DSUB);
+		code.op(DSTORE).op(TARGET_SPEED).jump(GOTO, clamp);
+		code.label(elseIfCurve);
+		code.input(7).constant(pool, 0.2).op(DCMPL).jump(IFLE, elseCurve);
+		code.constant(pool, p[0]).slower(pool, p[1], 2, sqrt).op(DSUB).slower(pool, p[2], 3, sqrt).op(DSUB);
+		code.op(DSTORE).op(TARGET_SPEED).jump(GOTO, clamp);
+		code.label(elseCurve);
+		code.constant(pool, p[3]).slower(pool, p[4], 2, sqrt).op(DSUB);
+		code.op(DSTORE).op(TARGET_SPEED);
+		// Limits of the target speed.
+		int notSlow = code.newLabel(), notFast = code.newLabel();
+		code.label(clamp);
+		code.op(DLOAD).op(TARGET_SPEED).constant(pool, -1).op(DCMPG).jump(IFGE, notSlow);
+		code.constant(pool, -1).op(DSTORE).op(TARGET_SPEED);
+		code.label(notSlow);
+		code.op(DLOAD).op(TARGET_SPEED).constant(pool, 16).op(DCMPL).jump(IFLE, notFast);
+		code.constant(pool, 16).op(DSTORE).op(TARGET_SPEED);
+		code.label(notFast);
+		// Power: maximum or brake to reach the target speed (inputs[5]).
+		int noPower = code.newLabel(), noBrake = code.newLabel();
+		code.op(ALOAD_0).op(GETFIELD).u2(actionsField).op(ASTORE).op(ACTIONS);
+		code.op(ALOAD).op(ACTIONS).op(ICONST_0).op(DCONST_0).op(DASTORE);
+		code.input(5).op(DLOAD).op(TARGET_SPEED).op(DCMPG).jump(IFGE, noPower);
+		code.op(ALOAD).op(ACTIONS).op(ICONST_0).constant(pool, 3).op(DASTORE);
+		code.label(noPower);
+		code.input(5).op(DLOAD).op(TARGET_SPEED).op(DCMPL).jump(IFLE, noBrake);
+		code.op(ALOAD).op(ACTIONS).op(ICONST_0).constant(pool, -3).op(DASTORE);
+		code.label(noBrake);
+		// Steer: linear combination of the differences between sensors.
+		code.op(ALOAD).op(ACTIONS).op(ICONST_0 + 1).constant(pool, p[5]);
+		int[][] differences = {{0, 1}, {1, 2}, {2, 3}, {3, 4}, {0, 4}, {1, 3}};
+		for (int k = 0; k < differences.length; k++)
+			code.constant(pool, p[6 + k]).input(differences[k][0]).input(differences[k][1]).op(DSUB).op(DMUL).op(DADD);
+		code.op(DASTORE);
+		code.op(ALOAD).op(ACTIONS).op(ARETURN);
+
+		int actionsName = pool.utf8("actions"), actionsType = pool.utf8("[D");
+		int initName = pool.utf8("<init>"), initType = pool.utf8("()V");
+		int genName = pool.utf8("genAction"), genType = pool.utf8("([D)[D");
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(0xCAFEBABE);
+		out.writeShort(0);
+		out.writeShort(50);
+		pool.write(out);
+		out.writeShort(0x0001 | 0x0010 | 0x0020); // public final super
+		out.writeShort(thisClass);
+		out.writeShort(superClass);
+		out.writeShort(1);
+		out.writeShort(controller);
+		// Field: private final double[] actions.
+		out.writeShort(1);
+		out.writeShort(0x0002 | 0x0010);
+		out.writeShort(actionsName);
+		out.writeShort(actionsType);
+		out.writeShort(0);
+		// Methods.
+		out.writeShort(2);
+		writeMethod(out, initName, initType, codeName, init, 3, 1);
+		writeMethod(out, genName, genType, codeName, code, 12, 5);
+		out.writeShort(0);
+		out.flush();
+		return bytes.toByteArray();
+	}
+
+	/** Writes a public method with its code. */
+	private static void writeMethod(DataOutputStream out, int name, int type, int codeName, Code code, int maxStack, int maxLocals) throws IOException {
+		byte[] bytecode = code.toByteArray();
+		out.writeShort(0x0001);
+		out.writeShort(name);
+		out.writeShort(type);
+		out.writeShort(1);
+		out.writeShort(codeName);
+		out.writeInt(12 + bytecode.length);
+		out.writeShort(maxStack);
+		out.writeShort(maxLocals);
+		out.writeInt(bytecode.length);
+		out.write(bytecode);
+		out.writeShort(0);
+		out.writeShort(0);
+	}
+
+	/** Constant pool of the class file, without repeated entries. */
+	private static final class ConstantPool {
+		private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		private final DataOutputStream out = new DataOutputStream(bytes);
+		private final Map<String, Integer> entries = new HashMap<String, Integer>();
+		private int next = 1;
+
+		int utf8(String value) throws IOException {
+			Integer index = entries.get("U" + value);
+			if (index != null)
+				return index;
+			out.writeByte(1);
+			out.writeUTF(value);
+			return add("U" + value, 1);
+		}
+
+		int classRef(String name) throws IOException {
+			Integer index = entries.get("C" + name);
+			if (index != null)
+				return index;
+			int nameIndex = utf8(name);
+			out.writeByte(7);
+			out.writeShort(nameIndex);
+			return add("C" + name, 1);
+		}
+
+		/** Field (tag 9) or method (tag 10) of a class. */
+		int memberRef(int tag, int owner, String name, String type) throws IOException {
+			String id = tag + "/" + owner + "/" + name + "/" + type;
+			Integer index = entries.get(id);
+			if (index != null)
+				return index;
+			int nameIndex = utf8(name), typeIndex = utf8(type);
+			out.writeByte(12);
+			out.writeShort(nameIndex);
+			out.writeShort(typeIndex);
+			int nameAndType = next++;
+			out.writeByte(tag);
+			out.writeShort(owner);
+			out.writeShort(nameAndType);
+			return add(id, 1);
+		}
+
+		/** Double constants are compared by their bits (so that -0.0 and NaN are kept). */
+		int doubleConstant(double value) throws IOException {
+			String id = "D" + Double.doubleToRawLongBits(value);
+			Integer index = entries.get(id);
+			if (index != null)
+				return index;
+			out.writeByte(6);
+			out.writeDouble(value);
+			return add(id, 2);
+		}
+
+		private int add(String id, int slots) {
+			int index = next;
+			entries.put(id, index);
+			next += slots;
+			return index;
+		}
+
+		void write(DataOutputStream target) throws IOException {
+			target.writeShort(next);
+			out.flush();
+			bytes.writeTo(target);
+		}
+	}
+
+	/** Bytecode of a method, with labels for the jumps. */
+	private static final class Code {
+		private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		private final List<int[]> jumps = new ArrayList<int[]>();
+		private final List<Integer> labels = new ArrayList<Integer>();
+
+		Code op(int opcode) {
+			bytes.write(opcode);
+			return this;
+		}
+
+		Code u2(int value) {
+			bytes.write(value >> 8);
+			bytes.write(value);
+			return this;
+		}
+
+		/** Pushes inputs[i]. */
+		Code input(int i) {
+			return op(ALOAD_1).op(BIPUSH).op(i).op(DALOAD);
+		}
+
+		/** Pushes a double constant. */
+		Code constant(ConstantPool pool, double value) throws IOException {
+			return op(LDC2_W).u2(pool.doubleConstant(value));
+		}
+
+		/** Pushes coefficient * (1 - Math.sqrt(inputs[i])). */
+		Code slower(ConstantPool pool, double coefficient, int i, int sqrt) throws IOException {
+			return constant(pool, coefficient).op(DCONST_1).input(i).op(INVOKESTATIC).u2(sqrt).op(DSUB).op(DMUL);
+		}
+
+		int newLabel() {
+			labels.add(-1);
+			return labels.size() - 1;
+		}
+
+		Code label(int label) {
+			labels.set(label, bytes.size());
+			return this;
+		}
+
+		/** Jumps to a label (the offset is filled in toByteArray). */
+		Code jump(int opcode, int label) {
+			jumps.add(new int[] {bytes.size(), label});
+			return op(opcode).u2(0);
+		}
+
+		byte[] toByteArray() {
+			byte[] code = bytes.toByteArray();
+			for (int[] jump : jumps) {
+				int offset = labels.get(jump[1]) - jump[0];
+				code[jump[0] + 1] = (byte) (offset >> 8);
+				code[jump[0] + 2] = (byte) offset;
+			}
+			return code;
+		}
+	}
+}
@@ -0,0 +1,118 @@
+package carracing.controllers;
+
+import java.util.Random;
+
+/**
+ * Divides the space of the inputs of a controller (see Controller) in a grid
+ * of cells, with a number of equal bins between a minimum and a maximum in
+ * each dimension (values outside go to the first or the last bin). Cells are
+ * numbered row-major, so the cell of some inputs is computed in constant time
+ * and can index a flat array, as in TableController, or be used as the state
+ * of tabular learning.
+ */
+public final class InputQuantizer {
+
+	/** Default ranges of the speed, of the angle to the next point and of the angle of the curve. */
+	public static final double MIN_SPEED = -4, MAX_SPEED = 16;
+	public static final double MAX_ANGLE = Math.PI;
+
+	/** Range and bins of each input, and the factor from a value to its bin. */
+	private final double[] min, max, scale;
+	private final int[] bins;
+
+	/** Distance between consecutive cells in each dimension. */
+	private final int[] strides;
+
+	/** Number of cells. */
+	private final int nCells;
+
+	/** Creates a grid with certain ranges and bins for each of the inputs. */
+	public InputQuantizer(double[] min, double[] max, int[] bins) {
+		if (min.length != max.length || min.length != bins.length)
+			throw new IllegalArgumentException("Each input needs a minimum, a maximum and some bins.");
+		this.min = min.clone();
+		this.max = max.clone();
+		this.bins = bins.clone();
+		scale = new double[bins.length];
+		strides = new int[bins.length];
+		long n = 1;
+		for (int d = bins.length - 1; d >= 0; d--) {
+			if (bins[d] < 1 || !(max[d] > min[d]))
+				throw new IllegalArgumentException("Input " + d + " needs some bins and a non-empty range.");
+			scale[d] = bins[d] / (max[d] - min[d]);
+			strides[d] = (int) n;
+			n *= bins[d];
+			if (n > Integer.MAX_VALUE / 2)
+				throw new IllegalArgumentException("Too many cells.");
+		}
+		nCells = (int) n;
+	}
+
+	/**
+	 * Creates a grid for the inputs of a number of sensors (readings between 0
+	 * and 1), the speed and the two angles, with the default ranges.
+	 */
+	public static InputQuantizer standard(int nSensors, int sensorBins, int speedBins, int angleBins, int curveBins) {
+		int n = nSensors + 3;
+		double[] min = new double[n], max = new double[n];
+		int[] bins = new int[n];
+		for (int i = 0; i < nSensors; i++) {
+			max[i] = 1;
+			bins[i] = sensorBins;
+		}
+		min[nSensors] = MIN_SPEED;
+		max[nSensors] = MAX_SPEED;
+		bins[nSensors] = speedBins;
+		for (int i = nSensors + 1; i < n; i++) {
+			min[i] = -MAX_ANGLE;
+			max[i] = MAX_ANGLE;
+			bins[i] = i == n - 1 ? curveBins : angleBins;
+		}
+		return new InputQuantizer(min, max, bins);
+	}
+
+	/** Returns the number of inputs. */
+	public int nInputs() {
+		return bins.length;
+	}
+
+	/** Returns the number of cells. */
+	public int nCells() {
+		return nCells;
+	}
+
+	/** Returns the number of bins of an input. */
+	public int getBins(int d) {
+		return bins[d];
+	}
+
+	/** Returns the cell of some inputs. */
+	public int cell(double[] inputs) {
+		int cell = 0;
+		for (int d = 0; d < bins.length; d++) {
+			int b = (int) ((inputs[d] - min[d]) * scale[d]);
+			if (b < 0)
+				b = 0;
+			else if (b >= bins[d])
+				b = bins[d] - 1;
+			cell += b * strides[d];
+		}
+		return cell;
+	}
+
+	/** Returns the bin of an input in a cell. */
+	public int bin(int cell, int d) {
+		return (cell / strides[d]) % bins[d];
+	}
+
+	/**
+	 * Stores in inputs a point of a cell: a random one, or its centre if
+	 * random is null.
+	 */
+	public void sample(int cell, Random random, double[] inputs) {
+		for (int d = 0; d < bins.length; d++) {
+			double offset = random == null ? 0.5 : random.nextDouble();
+			inputs[d] = min[d] + (bin(cell, d) + offset) / scale[d];
+		}
+	}
+}
@@ -4,7 +4,7 @@ package carracing.controllers;
  * Implements a simple controller which obtains the
  * outputs as a linear model of the inputs.
  */
-public class LinearController implements Controller {
+public class LinearController implements TrainableController {
 	
 	/* Number of parameters used in the controller. */
 	public static int NUM_COEFFICIENTS = 12;
@@ -66,6 +66,18 @@ public class LinearController implements Controller {
 		return actions;
 	}
 	
+	/** Returns the number of parameters (NUM_COEFFICIENTS). */
+	@Override
+	public int nParameters(){
+		return NUM_COEFFICIENTS;
+	}
+
+	/** Returns the allowed ranges of the parameters (RANGES). */
+	@Override
+	public double[][] getRanges(){
+		return RANGES;
+	}
+
 	/** Sets the parameters of the model */
 	public void setParameters(double[] parameters){
 		params = parameters;
@@ -0,0 +1,220 @@
+package carracing.controllers;
+
+import java.util.Arrays;
+
+/**
+ * Multilayer perceptron controller. The inputs (see Controller) go through
+ * fully connected layers with tanh activations (see tanh), and the two
+ * outputs are scaled to the ranges of the power and the steer.
+ *
+ * All the weights are kept in a single flat array, layer after layer: for a
+ * layer with nIn inputs and nOut outputs, nOut rows of nIn weights and then
+ * the nOut biases. That array is the vector of parameters, so the controller
+ * can be optimized as any TrainableController.
+ *
+ * Besides genAction, which evaluates a single input, forward() evaluates a
+ * batch of inputs (for instance, the sensors of many cars) with the same
+ * weights, layer by layer, as a blocked matrix product (four rows at a
+ * time share the loads of the weights), and forwardPopulation() evaluates a
+ * network per row of inputs, for instance a whole population of the search
+ * packed in a single array. Intermediate layers are kept in buffers which
+ * are only allocated when a larger batch is seen, so that evaluating does
+ * not allocate. A controller must be used by a single thread at a time.
+ */
+public class MLPController implements TrainableController {
+
+	/** Range of every weight: [-WEIGHT_RANGE, WEIGHT_RANGE]. */
+	public static final double WEIGHT_RANGE = 1;
+
+	/** Rows of the batch processed together (they share the loads of the weights). */
+	static final int BLOCK = 4;
+
+	/** Sizes of the layers, from the inputs to the outputs (always 2). */
+	private final int[] sizes;
+
+	/** Position of the weights of each layer in the parameters. */
+	private final int[] offsets;
+
+	/** Number of parameters, and the widest layer. */
+	private final int nParameters;
+	private final int maxWidth;
+
+	/** Parameters (weights and biases). */
+	private double[] parameters;
+
+	/** Ranges of the parameters, built once. */
+	private final double[][] ranges;
+
+	/** Activations of two consecutive layers, for batches of up to capacity rows. */
+	private double[] buffer0 = new double[0], buffer1 = new double[0];
+	private int capacity;
+
+	/** Actions returned by genAction (reused). */
+	private final double[] actions = new double[2];
+
+	/** Creates a network for the default inputs, with a hidden layer of 8 neurons. */
+	public MLPController() {
+		this(8, 8, 2);
+	}
+
+	/** Creates a network with the sizes of its layers: the inputs, the hidden layers and 2 outputs. */
+	public MLPController(int... sizes) {
+		if (sizes.length < 2 || sizes[sizes.length - 1] != 2)
+			throw new IllegalArgumentException("The network needs inputs and two outputs (power and steer).");
+		this.sizes = sizes.clone();
+		offsets = new int[sizes.length - 1];
+		int n = 0, width = 0;
+		for (int l = 0; l < sizes.length - 1; l++) {
+			if (sizes[l] < 1)
+				throw new IllegalArgumentException("Layers must have some neurons.");
+			offsets[l] = n;
+			n += (sizes[l] + 1) * sizes[l + 1];
+			width = Math.max(width, sizes[l + 1]);
+		}
+		nParameters = n;
+		maxWidth = width;
+		parameters = new double[n];
+		ranges = new double[2][n];
+		Arrays.fill(ranges[0], -WEIGHT_RANGE);
+		Arrays.fill(ranges[1], WEIGHT_RANGE);
+	}
+
+	/** Returns the sizes of the layers. */
+	public int[] getSizes() {
+		return sizes.clone();
+	}
+
+	/** Returns the number of inputs. */
+	public int nInputs() {
+		return sizes[0];
+	}
+
+	@Override
+	public int nParameters() {
+		return nParameters;
+	}
+
+	@Override
+	public double[][] getRanges() {
+		return ranges;
+	}
+
+	@Override
+	public void setParameters(double[] parameters) {
+		if (parameters.length < nParameters)
+			throw new IllegalArgumentException("The network has " + nParameters + " parameters.");
+		this.parameters = parameters;
+	}
+
+	@Override
+	public double[] getParameters() {
+		return parameters;
+	}
+
+	/**
+	 * Determines the actions given the inputs. The array returned is reused
+	 * by the next call.
+	 */
+	@Override
+	public double[] genAction(double[] inputs) {
+		forward(parameters, 0, inputs, 0, 1, actions, 0);
+		return actions;
+	}
+
+	/**
+	 * Evaluates a batch of inputs with the weights of this controller. Row b of
+	 * the batch is inputs[b * nInputs() ...], and its power and steer are stored
+	 * in outputs[2 * b] and outputs[2 * b + 1].
+	 */
+	public void forward(double[] inputs, int batch, double[] outputs) {
+		forward(parameters, 0, inputs, 0, batch, outputs, 0);
+	}
+
+	/**
+	 * Evaluates a network per row: row n of inputs (as in forward) goes through
+	 * the network whose parameters are weights[n * nParameters() ...], with the
+	 * same architecture as this one. As weights differ, rows are not blocked.
+	 */
+	public void forwardPopulation(double[] weights, int nNetworks, double[] inputs, double[] outputs) {
+		for (int n = 0; n < nNetworks; n++)
+			forward(weights, n * nParameters, inputs, n * sizes[0], 1, outputs, 2 * n);
+	}
+
+	/** Evaluates batch rows (from inputOffset) with the weights at weightOffset, storing the actions from outputOffset. */
+	private void forward(double[] weights, int weightOffset, double[] inputs, int inputOffset, int batch, double[] outputs, int outputOffset) {
+		if (batch > capacity) {
+			capacity = batch;
+			buffer0 = new double[batch * maxWidth];
+			buffer1 = new double[batch * maxWidth];
+		}
+		double[] in = inputs, out = buffer0;
+		int inOffset = inputOffset;
+		for (int l = 0; l < offsets.length; l++) {
+			boolean last = l == offsets.length - 1;
+			if (last)
+				out = outputs;
+			layer(weights, weightOffset + offsets[l], sizes[l], sizes[l + 1], in, inOffset, batch, out, last ? outputOffset : 0);
+			in = out;
+			inOffset = 0;
+			out = out == buffer0 ? buffer1 : buffer0;
+		}
+		for (int b = 0; b < batch; b++) {
+			outputs[outputOffset + 2 * b] *= Controlable.MAXPOWER;
+			outputs[outputOffset + 2 * b + 1] *= Controlable.MAXRIGHT;
+		}
+	}
+
+	/**
+	 * Activation: a rational approximation of the hyperbolic tangent, which
+	 * is monotonic, smooth, and reaches 1 and -1 at 3 and -3 (the error is
+	 * below 0.03). Math.tanh would take most of the time of the network.
+	 */
+	static double tanh(double x) {
+		if (x >= 3)
+			return 1;
+		if (x <= -3)
+			return -1;
+		double x2 = x * x;
+		return x * (27 + x2) / (27 + 9 * x2);
+	}
+
+	/**
+	 * A fully connected layer with tanh activations on a batch: out[b][o] =
+	 * tanh(bias[o] + sum of in[b][i] * w[o][i]). Four rows are computed at a
+	 * time, so each weight is loaded once for all of them.
+	 */
+	private static void layer(double[] w, int wOffset, int nIn, int nOut, double[] in, int inOffset, int batch, double[] out, int outOffset) {
+		int biases = wOffset + nIn * nOut;
+		int b = 0;
+		for (; b + BLOCK <= batch; b += BLOCK) {
+			int r0 = inOffset + b * nIn, r1 = r0 + nIn, r2 = r1 + nIn, r3 = r2 + nIn;
+			for (int o = 0; o < nOut; o++) {
+				int row = wOffset + o * nIn;
+				double bias = w[biases + o];
+				double s0 = bias, s1 = bias, s2 = bias, s3 = bias;
+				for (int i = 0; i < nIn; i++) {
+					double weight = w[row + i];
+					s0 += in[r0 + i] * weight;
+					s1 += in[r1 + i] * weight;
+					s2 += in[r2 + i] * weight;
+					s3 += in[r3 + i] * weight;
+				}
+				int o0 = outOffset + b * nOut + o;
+				out[o0] = tanh(s0);
+				out[o0 + nOut] = tanh(s1);
+				out[o0 + 2 * nOut] = tanh(s2);
+				out[o0 + 3 * nOut] = tanh(s3);
+			}
+		}
+		for (; b < batch; b++) {
+			int r = inOffset + b * nIn;
+			for (int o = 0; o < nOut; o++) {
+				int row = wOffset + o * nIn;
+				double s = w[biases + o];
+				for (int i = 0; i < nIn; i++)
+					s += in[r + i] * w[row + i];
+				out[outOffset + b * nOut + o] = tanh(s);
+			}
+		}
+	}
+}
@@ -0,0 +1,236 @@
+package carracing.controllers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import carracing.CarModel;
+import carracing.ControllerEvaluation;
+import carracing.EvaluationContext;
+import carracing.tracks.ShapeTrack;
+import carracing.tracks.TrackLoader;
+
+/**
+ * Model-predictive controller: at each step, it saves the state of the
+ * evaluation it drives (see ControllerEvaluation.saveState), simulates a
+ * short horizon ahead with each candidate sequence of actions, and takes
+ * the first action of the best one. Candidates keep a power and a steer
+ * for the whole horizon, and are scored by the progress along the track
+ * at its end (laps completed score above anything else, and stopping below).
+ *
+ * Rollouts are simulated in evaluations of their own, one per worker, so
+ * the evaluation being driven is never touched. With several workers, the
+ * candidates are split among them and simulated in parallel, either in
+ * threads of the controller (which close() stops) or with an executor
+ * given to it (which is left running).
+ *
+ * The controller reads the state of the car instead of the inputs, so it
+ * must be attached to the evaluation which uses it:
+ *
+ * 		PredictiveController controller = new PredictiveController();
+ * 		ControllerEvaluation evaluation = new ControllerEvaluation(track, controller);
+ * 		controller.attach(evaluation);
+ * 		evaluation.evaluate();
+ * 		controller.close();
+ */
+public class PredictiveController implements Controller, AutoCloseable {
+
+	/** Steps simulated ahead by default. */
+	public static final int DEFAULT_HORIZON = 30;
+
+	/** Powers and steers combined into the candidates. */
+	static final double[] powers = {Controlable.MAXPOWER, 1, Controlable.MINPOWER};
+	static final double[] steers = {-2, -1, -0.5, -0.2, 0, 0.2, 0.5, 1, 2};
+
+	/** Steps simulated ahead. */
+	private final int horizon;
+
+	/** Evaluation driven, and its state at the current step. */
+	private ControllerEvaluation evaluation;
+	private final double[] state = new double[ControllerEvaluation.STATE_SIZE];
+
+	/** Candidates (power and steer) and their scores. */
+	private final double[][] candidates;
+	private final double[] scores;
+
+	/**
+	 * Evaluations of the workers, and the threads which run them (null with
+	 * a single worker), which are stopped by close if they are owned.
+	 */
+	private final int nWorkers;
+	private ControllerEvaluation[] rollouts;
+	private final ExecutorService executor;
+	private final boolean ownsExecutor;
+	private final List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+
+	/** Rollouts simulated. */
+	private long nRollouts;
+
+	/** Creates a controller with the default horizon, and a worker per processor. */
+	public PredictiveController() {
+		this(DEFAULT_HORIZON, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Creates a controller which simulates a number of steps ahead, with a
+	 * number of workers (in threads of its own if there are several).
+	 */
+	public PredictiveController(int horizon, int nWorkers) {
+		this(horizon, nWorkers, null);
+	}
+
+	/**
+	 * Creates a controller which simulates a number of steps ahead, with a
+	 * number of workers run by an executor (or, if it is null and there are
+	 * several workers, by threads of the controller).
+	 */
+	public PredictiveController(int horizon, int nWorkers, ExecutorService executor) {
+		if (horizon < 1 || nWorkers < 1)
+			throw new IllegalArgumentException("The horizon and the number of workers must be positive.");
+		this.horizon = horizon;
+		this.nWorkers = nWorkers;
+		candidates = new double[powers.length * steers.length][];
+		for (int p = 0; p < powers.length; p++)
+			for (int s = 0; s < steers.length; s++)
+				candidates[p * steers.length + s] = new double[] {powers[p], steers[s]};
+		scores = new double[candidates.length];
+		ownsExecutor = executor == null && nWorkers > 1;
+		if (ownsExecutor)
+			executor = Executors.newFixedThreadPool(nWorkers, new ThreadFactory() {
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "PredictiveController");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		this.executor = nWorkers > 1 ? executor : null;
+		if (this.executor != null) {
+			for (int w = 0; w < nWorkers; w++) {
+				final int worker = w;
+				tasks.add(new Callable<Void>() {
+					public Void call() {
+						simulate(worker);
+						return null;
+					}
+				});
+			}
+		}
+	}
+
+	/**
+	 * Attaches the controller to the evaluation it drives. The rollouts use the
+	 * same track, layout of sensors and modes of the car.
+	 */
+	public void attach(ControllerEvaluation evaluation) {
+		this.evaluation = evaluation;
+		CarModel model = evaluation.getModel();
+		rollouts = new ControllerEvaluation[nWorkers];
+		for (int w = 0; w < nWorkers; w++) {
+			EvaluationContext context = new EvaluationContext(evaluation.getContext().getLayout());
+			context.getModel().setFastMath(model.isFastMath());
+			context.getModel().setMarchingSensors(model.isMarchingSensors());
+			context.getModel().setGridSensors(model.isGridSensors());
+			// Rollouts only advance the car, so they never ask their controller.
+			rollouts[w] = new ControllerEvaluation(evaluation.getTrack(), this, context);
+		}
+	}
+
+	/** Returns the first action of the best candidate from the current state. */
+	@Override
+	public double[] genAction(double[] inputs) {
+		if (evaluation == null)
+			throw new IllegalStateException("The controller is not attached to an evaluation.");
+		if (rollouts[0].getTrack() != evaluation.getTrack())
+			attach(evaluation);
+		evaluation.saveState(state, 0);
+		if (executor == null)
+			simulate(0);
+		else {
+			try {
+				for (Future<Void> future : executor.invokeAll(tasks))
+					future.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("The rollouts were interrupted.", e);
+			} catch (ExecutionException e) {
+				throw new IllegalStateException("A rollout failed.", e.getCause());
+			}
+		}
+		nRollouts += candidates.length;
+		int best = 0;
+		for (int c = 1; c < candidates.length; c++)
+			if (scores[c] > scores[best])
+				best = c;
+		return new double[] {candidates[best][0], candidates[best][1]};
+	}
+
+	/** Simulates the candidates of a worker (one of every nWorkers). */
+	private void simulate(int worker) {
+		ControllerEvaluation rollout = rollouts[worker];
+		double trackLength = evaluation.getTrack().getTrackLenght();
+		for (int c = worker; c < candidates.length; c += nWorkers) {
+			rollout.restoreState(state, 0);
+			int steps = 0;
+			while (steps < horizon && rollout.advance(candidates[c][0], candidates[c][1]))
+				steps++;
+			if (rollout.isLapFinished())
+				// Earlier is better.
+				scores[c] = 2 * trackLength + (horizon - steps);
+			else if (rollout.getTermination() == ControllerEvaluation.Termination.STOPPED)
+				scores[c] = Double.NEGATIVE_INFINITY;
+			else
+				scores[c] = rollout.getProgress();
+		}
+	}
+
+	/** Returns the number of rollouts simulated. */
+	public long getRollouts() {
+		return nRollouts;
+	}
+
+	/** Stops the threads of the controller (an executor given to it is left running). */
+	@Override
+	public void close() {
+		if (ownsExecutor)
+			executor.shutdown();
+	}
+
+	/**
+	 * Compares the controller with the default linear controller in some tracks.
+	 * Takes optional arguments: the horizon, the number of workers and the tracks.
+	 *
+	 * Example:
+	 * 				java carracing.controllers.PredictiveController 30 1 Track1 Track2 Track3
+	 */
+	public static void main(String[] args) {
+		int horizon = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_HORIZON;
+		int nWorkers = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+		String[] tracks = args.length > 2 ? Arrays.copyOfRange(args, 2, args.length) : new String[] {"Track1", "Track2", "Track3"};
+		for (String trackName : tracks) {
+			ShapeTrack track = TrackLoader.getTrack("carracing.tracks." + trackName);
+			double[] linear = new ControllerEvaluation(track, new LinearController(), new EvaluationContext()).evaluate().clone();
+
+			PredictiveController controller = new PredictiveController(horizon, nWorkers);
+			ControllerEvaluation evaluation = new ControllerEvaluation(track, controller, new EvaluationContext());
+			controller.attach(evaluation);
+			long start = System.nanoTime();
+			double[] predictive;
+			try {
+				predictive = evaluation.evaluate();
+			} finally {
+				controller.close();
+			}
+			long time = System.nanoTime() - start;
+
+			System.out.println(trackName + ": linear " + (linear[0] / 1000.0) + " s (" + (linear[1] / 100.0) + " m), predictive "
+					+ (predictive[0] / 1000.0) + " s (" + (predictive[1] / 100.0) + " m), "
+					+ controller.getRollouts() + " rollouts in " + (time / 1000000) + " ms.");
+		}
+	}
+}
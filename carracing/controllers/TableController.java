@@ -0,0 +1,221 @@
+package carracing.controllers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+import carracing.ControllerEvaluation;
+import carracing.EvaluationContext;
+import carracing.SensorLayout;
+import carracing.tracks.ShapeTrack;
+import carracing.tracks.TrackLoader;
+
+/**
+ * Controller which looks its actions up in a table: the inputs are
+ * quantized into a cell of a grid (see InputQuantizer), and the power and
+ * the steer of each cell are stored in a flat array of floats. The table can
+ * be filled by distilling another controller (see distill), or by tabular
+ * learning.
+ *
+ * The array of actions returned by genAction is reused by the next call.
+ */
+public class TableController implements Controller {
+
+	/** Cells distilled by each task. */
+	static final int CHUNK = 4096;
+
+	/** Grid of the inputs. */
+	private final InputQuantizer quantizer;
+
+	/** Power and steer of each cell: table[2 * cell] and table[2 * cell + 1]. */
+	private final float[] table;
+
+	/** Actions returned by genAction (reused). */
+	private final double[] actions = new double[2];
+
+	/** Creates a controller whose actions are all 0. */
+	public TableController(InputQuantizer quantizer) {
+		this.quantizer = quantizer;
+		table = new float[2 * quantizer.nCells()];
+	}
+
+	/** Returns the actions of the cell of the inputs. */
+	@Override
+	public double[] genAction(double[] inputs) {
+		int c = 2 * quantizer.cell(inputs);
+		actions[0] = table[c];
+		actions[1] = table[c + 1];
+		return actions;
+	}
+
+	/** Returns the grid of the inputs. */
+	public InputQuantizer getQuantizer() {
+		return quantizer;
+	}
+
+	/** Returns the table (power and steer of each cell), which can be modified. */
+	public float[] getTable() {
+		return table;
+	}
+
+	/** Sets the actions of a cell. */
+	public void setActions(int cell, double power, double steer) {
+		table[2 * cell] = (float) power;
+		table[2 * cell + 1] = (float) steer;
+	}
+
+	/** Returns the memory used by the table, in bytes. */
+	public long getMemory() {
+		return 4L * table.length;
+	}
+
+	/**
+	 * Builds a table which approximates a controller: the actions of each cell
+	 * are the mean of those of the controller on some random points of the
+	 * cell (or on its centre, with a single sample). Cells are distilled in
+	 * chunks by nThreads threads, each chunk with a controller of its own from
+	 * source, and with a random generator of its own, so that the table only
+	 * depends on the seed.
+	 */
+	public static TableController distill(final Supplier<? extends Controller> source, InputQuantizer quantizer,
+			final int samplesPerCell, final long seed, int nThreads) {
+		final TableController result = new TableController(quantizer);
+		final int nCells = quantizer.nCells();
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		for (int start = 0; start < nCells; start += CHUNK) {
+			final int first = start, last = Math.min(start + CHUNK, nCells);
+			tasks.add(new Callable<Void>() {
+				public Void call() {
+					result.distill(source.get(), first, last, samplesPerCell, new Random(seed + first));
+					return null;
+				}
+			});
+		}
+		if (nThreads <= 1) {
+			for (Callable<Void> task : tasks)
+				try {
+					task.call();
+				} catch (Exception e) {
+					throw new IllegalStateException("The controller could not be distilled.", e);
+				}
+			return result;
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(nThreads);
+		try {
+			for (Future<Void> future : executor.invokeAll(tasks))
+				future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("The distillation was interrupted.", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("The controller could not be distilled.", e.getCause());
+		} finally {
+			executor.shutdown();
+		}
+		return result;
+	}
+
+	/** Fills the cells from first to last (excluded) with the mean actions of a controller. */
+	private void distill(Controller controller, int first, int last, int samplesPerCell, Random random) {
+		double[] inputs = new double[quantizer.nInputs()];
+		for (int cell = first; cell < last; cell++) {
+			double power = 0, steer = 0;
+			for (int s = 0; s < samplesPerCell; s++) {
+				quantizer.sample(cell, samplesPerCell == 1 ? null : random, inputs);
+				double[] action = controller.genAction(inputs);
+				power += action[0];
+				steer += action[1];
+			}
+			setActions(cell, power / samplesPerCell, steer / samplesPerCell);
+		}
+	}
+
+	/**
+	 * Returns the mean absolute difference between the power and between the
+	 * steer of two controllers on some inputs.
+	 */
+	public static double[] error(Controller reference, Controller approximation, List<double[]> inputs) {
+		double power = 0, steer = 0;
+		for (double[] input : inputs) {
+			double[] expected = reference.genAction(input);
+			double expectedPower = expected[0], expectedSteer = expected[1];
+			double[] actual = approximation.genAction(input);
+			power += Math.abs(actual[0] - expectedPower);
+			steer += Math.abs(actual[1] - expectedSteer);
+		}
+		return new double[] {power / inputs.size(), steer / inputs.size()};
+	}
+
+	/**
+	 * Distills a controller (by default, a linear one) with several grids and
+	 * reports, for each one, the memory of the table, the error of its actions
+	 * on the inputs seen while the controller drives the tracks, and its lap
+	 * times. Takes optional arguments: the name of the class of the controller,
+	 * the number of threads and the parameters of the controller (if it is a
+	 * TrainableController).
+	 *
+	 * Example:
+	 * 				java carracing.controllers.TableController carracing.controllers.LinearController 4 10 12 1.4 7.5 0.1 -0.2 -1 -0.3 -0.8 -0.5 0.2 -0.4
+	 */
+	public static void main(String[] args) {
+		final String controllerName = args.length > 0 ? args[0] : "carracing.controllers.LinearController";
+		int nThreads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+		final double[] parameters = args.length > 2 ? new double[args.length - 2] : null;
+		for (int i = 2; i < args.length; i++)
+			parameters[i - 2] = Double.parseDouble(args[i]);
+		String[] tracks = {"Track1", "Track2", "Track3"};
+		Supplier<Controller> source = new Supplier<Controller>() {
+			public Controller get() {
+				Controller controller = ControllerLoader.getController(controllerName);
+				if (parameters != null)
+					((TrainableController) controller).setParameters(parameters.clone());
+				return controller;
+			}
+		};
+
+		// Inputs seen while the controller drives, and its lap times.
+		final List<double[]> seen = new ArrayList<double[]>();
+		final Controller reference = source.get();
+		Controller recorder = new Controller() {
+			public double[] genAction(double[] inputs) {
+				seen.add(inputs.clone());
+				return reference.genAction(inputs);
+			}
+		};
+		StringBuilder laps = new StringBuilder();
+		for (String track : tracks)
+			laps.append(" ").append(lapTime(track, recorder));
+		System.out.println(controllerName + ":" + laps + " s, " + seen.size() + " inputs.");
+
+		int nSensors = SensorLayout.DEFAULT.size();
+		// Bins of the sensors, the speed, the angle and the curve (an odd number of
+		// bins keeps the straight curves, near 0, in a bin of their own).
+		int[][] grids = {{3, 10, 3, 5}, {4, 20, 3, 9}, {5, 20, 3, 15}, {6, 20, 2, 15}};
+		for (int[] grid : grids) {
+			InputQuantizer quantizer = InputQuantizer.standard(nSensors, grid[0], grid[1], grid[2], grid[3]);
+			long start = System.nanoTime();
+			TableController table = distill(source, quantizer, 4, 0, nThreads);
+			long time = System.nanoTime() - start;
+			double[] error = error(reference, table, seen);
+			laps.setLength(0);
+			for (String track : tracks)
+				laps.append(" ").append(lapTime(track, table));
+			System.out.println("Bins " + Arrays.toString(grid) + ": " + quantizer.nCells() + " cells, " + (table.getMemory() / 1024)
+					+ " KB, distilled in " + (time / 1000000) + " ms, mean error " + error[0] + " (power) " + error[1]
+					+ " (steer), laps" + laps + " s.");
+		}
+	}
+
+	/** Returns the lap time of a controller in a track, in seconds (100 if it does not finish). */
+	private static double lapTime(String trackName, Controller controller) {
+		ShapeTrack track = TrackLoader.getTrack("carracing.tracks." + trackName);
+		return new ControllerEvaluation(track, controller, new EvaluationContext()).evaluate()[0] / 1000.0;
+	}
+}
@@ -0,0 +1,24 @@
+package carracing.controllers;
+
+/**
+ * Controller whose behaviour is given by a vector of parameters, so that it
+ * can be optimized by any search algorithm (see CarRacingProblem): the
+ * configurations of the search are the parameters of the controller.
+ */
+public interface TrainableController extends Controller {
+
+	/** Returns the number of parameters. */
+	public int nParameters();
+
+	/**
+	 * Returns the allowed ranges of the parameters: [0][i] is the minimum of
+	 * parameter i, and [1][i] its maximum.
+	 */
+	public double[][] getRanges();
+
+	/** Sets the parameters (the array may be kept, not copied). */
+	public void setParameters(double[] parameters);
+
+	/** Returns the parameters. */
+	public double[] getParameters();
+}
@@ -0,0 +1,316 @@
+package carracing.learning;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import carracing.ControllerEvaluation;
+import carracing.EvaluationContext;
+import carracing.SensorLayout;
+import carracing.controllers.Controlable;
+import carracing.controllers.InputQuantizer;
+import carracing.controllers.TableController;
+import carracing.tracks.ShapeTrack;
+import carracing.tracks.TrackLoader;
+
+/**
+ * Tabular Q-learning of a policy for a track. States are the cells of the
+ * inputs of the controllers (see InputQuantizer), read with the sensors of
+ * ControllerEvaluation, and actions are combinations of a few powers and
+ * steers. The reward of a step is the progress along the track (see
+ * ControllerEvaluation.getProgress); stopping against a wall is penalized
+ * and finishing the lap is rewarded.
+ *
+ * The Q-table is a flat array of floats, Q(state, action) at
+ * state * nActions() + action. Episodes run in parallel, each thread with
+ * an evaluation of its own, and all of them update the same table without
+ * locks: each update is a compare-and-set of its entry, retried if another
+ * thread changed it in between. Reads are not synchronized, so a thread can
+ * see an entry slightly out of date, which Q-learning tolerates.
+ *
+ * Episodes start at the starting line, and are cut after a number of steps.
+ * The greedy policy learnt is exported as a TableController (see getPolicy).
+ */
+public class QLearningTrainer {
+
+	/** Powers and steers combined into the actions (the first action is the default one). */
+	static final double[] powers = {Controlable.MAXPOWER, 1, Controlable.MINPOWER};
+	static final double[] steers = {0, -0.5, 0.5, -1, 1, -2, 2};
+
+	/** Default learning rate, discount, exploration and length of the episodes. */
+	public static final double DEFAULT_ALPHA = 0.1;
+	public static final double DEFAULT_GAMMA = 0.98;
+	public static final double DEFAULT_EPSILON = 0.1;
+	public static final int DEFAULT_EPISODE_STEPS = 400;
+
+	/** Reward when the car stops against a wall (negated) and when the lap is finished. */
+	public static final double CRASH_PENALTY = 100;
+	public static final double LAP_BONUS = 100;
+
+	/** Largest progress of a step (larger ones come from the lap being reset, and are ignored). */
+	static final double MAX_PROGRESS = 2 * InputQuantizer.MAX_SPEED;
+
+	/** Atomic access to the entries of the Q-table. */
+	private static final VarHandle entries = MethodHandles.arrayElementVarHandle(float[].class);
+
+	/** Track and states. */
+	private final ShapeTrack track;
+	private final InputQuantizer quantizer;
+
+	/** Actions: power and steer. */
+	private final double[][] actions;
+
+	/** Q-table. */
+	private final float[] table;
+
+	/** Parameters of the learning. */
+	private double alpha = DEFAULT_ALPHA, gamma = DEFAULT_GAMMA, epsilon = DEFAULT_EPSILON;
+	private int episodeSteps = DEFAULT_EPISODE_STEPS;
+
+	/** Whether the trigonometric functions of the car are approximated (see CarModel.setFastMath). */
+	private boolean fastMath;
+
+	/** Episodes and steps simulated. */
+	private final AtomicLong episodes = new AtomicLong(), steps = new AtomicLong();
+
+	/** Creates a trainer for a track with a grid of states, and a table of zeros. */
+	public QLearningTrainer(ShapeTrack track, InputQuantizer quantizer) {
+		if (quantizer.nInputs() != SensorLayout.DEFAULT.size() + 3)
+			throw new IllegalArgumentException("The states must have the inputs of the default sensors.");
+		this.track = track;
+		this.quantizer = quantizer;
+		actions = new double[powers.length * steers.length][];
+		for (int p = 0; p < powers.length; p++)
+			for (int s = 0; s < steers.length; s++)
+				actions[p * steers.length + s] = new double[] {powers[p], steers[s]};
+		long size = (long) quantizer.nCells() * actions.length;
+		if (size > Integer.MAX_VALUE - 8)
+			throw new IllegalArgumentException("The Q-table would be too large.");
+		table = new float[(int) size];
+	}
+
+	/** Sets the learning rate. */
+	public void setAlpha(double alpha) {
+		this.alpha = alpha;
+	}
+
+	/** Sets the discount of future rewards. */
+	public void setGamma(double gamma) {
+		this.gamma = gamma;
+	}
+
+	/** Sets the probability of a random action. */
+	public void setEpsilon(double epsilon) {
+		this.epsilon = epsilon;
+	}
+
+	/** Sets the maximum number of steps of an episode. */
+	public void setEpisodeSteps(int episodeSteps) {
+		this.episodeSteps = episodeSteps;
+	}
+
+	/** Sets whether the car approximates the trigonometric functions. */
+	public void setFastMath(boolean fastMath) {
+		this.fastMath = fastMath;
+	}
+
+	/** Returns the grid of states. */
+	public InputQuantizer getQuantizer() {
+		return quantizer;
+	}
+
+	/** Returns the number of actions. */
+	public int nActions() {
+		return actions.length;
+	}
+
+	/** Returns the power and steer of an action. */
+	public double[] getAction(int action) {
+		return actions[action].clone();
+	}
+
+	/** Returns the Q-table. */
+	public float[] getTable() {
+		return table;
+	}
+
+	/** Returns the episodes simulated. */
+	public long getEpisodes() {
+		return episodes.get();
+	}
+
+	/** Returns the steps simulated. */
+	public long getSteps() {
+		return steps.get();
+	}
+
+	/**
+	 * Runs a number of episodes in nThreads threads. Each thread takes episodes
+	 * until there are no more, with a random generator of its own, whose seed
+	 * mixes seed and the number of the thread (see workerSeed).
+	 */
+	public void train(long nEpisodes, int nThreads, final long seed) {
+		final AtomicLong remaining = new AtomicLong(nEpisodes);
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		for (int w = 0; w < Math.max(nThreads, 1); w++) {
+			final int worker = w;
+			tasks.add(new Callable<Void>() {
+				public Void call() {
+					work(remaining, new Random(workerSeed(seed, worker)));
+					return null;
+				}
+			});
+		}
+		if (tasks.size() == 1) {
+			work(remaining, new Random(workerSeed(seed, 0)));
+			return;
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(tasks.size());
+		try {
+			for (Future<Void> future : executor.invokeAll(tasks))
+				future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("The training was interrupted.", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("An episode failed.", e.getCause());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Returns the seed of a worker: the value number worker + 1 of a SplitMix64
+	 * sequence which starts from seed (mixed), so that close seeds (such as
+	 * those of consecutive calls of train) and workers do not share or repeat
+	 * their random streams.
+	 */
+	static long workerSeed(long seed, int worker) {
+		return mix(mix(seed) + (worker + 1) * 0x9E3779B97F4A7C15L);
+	}
+
+	/** Finalizer of SplitMix64, a bijection which spreads close values apart. */
+	private static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	/** Runs episodes while there are some remaining. */
+	private void work(AtomicLong remaining, Random random) {
+		EvaluationContext context = new EvaluationContext();
+		context.getModel().setFastMath(fastMath);
+		// The evaluation is only advanced step by step, so it never asks its controller.
+		ControllerEvaluation evaluation = new ControllerEvaluation(track, null, context);
+		while (remaining.getAndDecrement() > 0) {
+			long n = episode(evaluation, random);
+			episodes.incrementAndGet();
+			steps.addAndGet(n);
+		}
+	}
+
+	/** Runs an episode with epsilon-greedy actions, updating the table. Returns the steps. */
+	private long episode(ControllerEvaluation evaluation, Random random) {
+		int nActions = actions.length;
+		evaluation.reset();
+		int state = quantizer.cell(evaluation.readSensors());
+		int t = 0;
+		while (t < episodeSteps) {
+			int action = random.nextDouble() < epsilon ? random.nextInt(nActions) : greedy(state);
+			double before = evaluation.getProgress();
+			boolean running = evaluation.advance(actions[action][0], actions[action][1]);
+			t++;
+			double reward = evaluation.getProgress() - before;
+			if (reward > MAX_PROGRESS || reward < -MAX_PROGRESS)
+				reward = 0;
+			boolean terminal = false;
+			if (evaluation.isLapFinished()) {
+				reward = LAP_BONUS;
+				terminal = true;
+			} else if (evaluation.getTermination() == ControllerEvaluation.Termination.STOPPED) {
+				reward = -CRASH_PENALTY;
+				terminal = true;
+			}
+			int next = terminal ? -1 : quantizer.cell(evaluation.readSensors());
+			update(state, action, terminal ? reward : reward + gamma * table[next * nActions + greedy(next)]);
+			// The time limit of the evaluation only cuts the episode, as episodeSteps does.
+			if (!running)
+				break;
+			state = next;
+		}
+		return t;
+	}
+
+	/** Moves Q(state, action) towards a target, atomically. */
+	private void update(int state, int action, double target) {
+		int i = state * actions.length + action;
+		float old = table[i];
+		while (true) {
+			float updated = (float) (old + alpha * (target - old));
+			float witness = (float) entries.compareAndExchange(table, i, old, updated);
+			if (Float.floatToRawIntBits(witness) == Float.floatToRawIntBits(old))
+				return;
+			old = witness;
+		}
+	}
+
+	/** Returns the action with the highest value in a state (the first one, on ties). */
+	public int greedy(int state) {
+		int offset = state * actions.length;
+		int best = 0;
+		for (int a = 1; a < actions.length; a++)
+			if (table[offset + a] > table[offset + best])
+				best = a;
+		return best;
+	}
+
+	/** Returns the greedy policy: the best action of each state, as a controller. */
+	public TableController getPolicy() {
+		TableController policy = new TableController(quantizer);
+		for (int cell = 0; cell < quantizer.nCells(); cell++) {
+			double[] action = actions[greedy(cell)];
+			policy.setActions(cell, action[0], action[1]);
+		}
+		return policy;
+	}
+
+	/**
+	 * Trains a policy for a track, and reports every round of episodes the
+	 * speed of the training and the lap of the greedy policy. Takes optional
+	 * arguments: the track, the number of episodes, the number of threads and
+	 * the number of rounds.
+	 *
+	 * Example:
+	 * 				java carracing.learning.QLearningTrainer Track1 100000 4 10
+	 */
+	public static void main(String[] args) {
+		String trackName = args.length > 0 ? args[0] : "Track1";
+		long nEpisodes = args.length > 1 ? Long.parseLong(args[1]) : 100000;
+		int nThreads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+		int rounds = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+		ShapeTrack track = TrackLoader.getTrack("carracing.tracks." + trackName);
+		InputQuantizer quantizer = InputQuantizer.standard(SensorLayout.DEFAULT.size(), 3, 8, 5, 5);
+		QLearningTrainer trainer = new QLearningTrainer(track, quantizer);
+		System.out.println(quantizer.nCells() + " states, " + trainer.nActions() + " actions, "
+				+ (4L * trainer.getTable().length / 1024) + " KB of Q-table.");
+		long start = System.nanoTime();
+		for (int r = 0; r < rounds; r++) {
+			// The last round also runs the episodes left by the division.
+			long roundEpisodes = nEpisodes / rounds + (r == rounds - 1 ? nEpisodes % rounds : 0);
+			trainer.train(roundEpisodes, nThreads, r);
+			double seconds = (System.nanoTime() - start) / 1e9;
+			double[] lap = new ControllerEvaluation(track, trainer.getPolicy(), new EvaluationContext()).evaluate();
+			System.out.println(trainer.getEpisodes() + " episodes (" + Math.round(trainer.getEpisodes() * 3600 / seconds)
+					+ " per hour, " + Math.round(trainer.getSteps() / seconds) + " steps per second): lap "
+					+ (lap[0] / 1000.0) + " s (" + (lap[1] / 100.0) + " m).");
+		}
+	}
+}
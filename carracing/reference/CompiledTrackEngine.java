@@ -0,0 +1,34 @@
+package carracing.reference;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import carracing.controllers.Controller;
+import carracing.tracks.CompiledTrack;
+import carracing.tracks.ShapeTrack;
+
+/**
+ * Engine which carries out the simulation with the current code on frozen
+ * copies of the tracks (see carracing.tracks.CompiledTrack). It is expected
+ * to give exactly the same results as the reference.
+ */
+public class CompiledTrackEngine extends EvaluationEngine {
+
+	/** Copies of the tracks, built the first time each one is used. */
+	private final Map<ShapeTrack, CompiledTrack> compiled = new IdentityHashMap<ShapeTrack, CompiledTrack>();
+
+	@Override
+	public String getName() {
+		return "compiled";
+	}
+
+	@Override
+	public void reset(ShapeTrack track, Controller controller) {
+		CompiledTrack copy = compiled.get(track);
+		if (copy == null) {
+			copy = new CompiledTrack(track);
+			compiled.put(track, copy);
+		}
+		super.reset(copy, controller);
+	}
+}
@@ -0,0 +1,227 @@
+package carracing.reference;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import carracing.controllers.LinearController;
+import carracing.tracks.ShapeTrack;
+import carracing.tracks.TrackLoader;
+
+/**
+ * Differential test of the simulation. Evaluates random linear controllers
+ * both with the reference engine (the original code) and with another
+ * engine, step by step, and reports the first step where the trajectories
+ * of the car diverge by more than a tolerance, as well as any difference
+ * in the results (lap time and distance).
+ *
+ * Any change which makes the simulation faster must pass this check with
+ * tolerance 0 before its results are trusted, unless it is explicitly an
+ * approximation, in which case the tolerance documents how far it can go.
+ *
+ * Takes the name of the engine (see getEngine), and optionally the number
+ * of configurations per track, the tolerance, the seed and the tracks.
+ * Exits with status 1 if any configuration diverges.
+ *
+ * Example:
+ * 				java carracing.reference.EquivalenceChecker current 1000 0 0 Track1 Track2 Track3
+ */
+public class EquivalenceChecker {
+
+	/** Fields of the state of the car which are compared. */
+	static final String[] fields = {"x", "y", "heading", "speed"};
+
+	/** Engines. */
+	private final SimulationEngine reference;
+	private final SimulationEngine engine;
+
+	/** Maximum difference allowed in each field of the state and in the results. */
+	private final double tolerance;
+
+	/** Maximum difference found. */
+	private double maxDifference = 0;
+
+	/** First divergence found (null if none). */
+	private Divergence firstDivergence;
+
+	/** A step where an engine diverges from the reference. */
+	public static class Divergence {
+		public String track;
+		public int configuration;
+		public double[] parameters;
+		public int step;
+		public String field;
+		public double referenceValue;
+		public double engineValue;
+
+		public String toString(){
+			return track + ", configuration " + configuration + ", step " + step + ": " + field
+					+ " is " + engineValue + " (reference " + referenceValue + ")\n"
+					+ "Parameters: " + Arrays.toString(parameters);
+		}
+	}
+
+	/** Creates a checker of an engine. */
+	public EquivalenceChecker(SimulationEngine engine, double tolerance){
+		this.reference = new ReferenceEvaluation();
+		this.engine = engine;
+		this.tolerance = tolerance;
+	}
+
+	/**
+	 * Evaluates a configuration with both engines. Returns the divergence found
+	 * (the first one), or null if the engines are equivalent.
+	 */
+	public Divergence check(ShapeTrack track, LinearController controller){
+		reference.reset(track, controller);
+		engine.reset(track, controller);
+		int step = 0;
+		boolean referenceRunning = true, engineRunning = true;
+		while (referenceRunning && engineRunning){
+			step++;
+			referenceRunning = reference.step();
+			engineRunning = engine.step();
+			Divergence divergence = compare(step, 0, reference.getX(), engine.getX());
+			if (divergence == null) divergence = compare(step, 1, reference.getY(), engine.getY());
+			if (divergence == null) divergence = compare(step, 2, reference.getHeading(), engine.getHeading());
+			if (divergence == null) divergence = compare(step, 3, reference.getSpeed(), engine.getSpeed());
+			if (divergence != null)
+				return divergence;
+		}
+		if (referenceRunning != engineRunning)
+			return divergence(step, "end of the evaluation", referenceRunning ? 1 : 0, engineRunning ? 1 : 0);
+
+		double[] referenceResults = reference.finish().clone();
+		double[] engineResults = engine.finish();
+		if (difference(referenceResults[0], engineResults[0]) > tolerance)
+			return divergence(step, "lap time", referenceResults[0], engineResults[0]);
+		if (difference(referenceResults[1], engineResults[1]) > tolerance)
+			return divergence(step, "distance", referenceResults[1], engineResults[1]);
+		return null;
+	}
+
+	/** Compares a field of the state. */
+	private Divergence compare(int step, int field, double referenceValue, double engineValue){
+		double difference = difference(referenceValue, engineValue);
+		if (difference > maxDifference)
+			maxDifference = difference;
+		if (difference > tolerance)
+			return divergence(step, fields[field], referenceValue, engineValue);
+		return null;
+	}
+
+	private static double difference(double referenceValue, double engineValue){
+		if (Double.compare(referenceValue, engineValue) == 0)
+			return 0;
+		double difference = Math.abs(referenceValue - engineValue);
+		return Double.isNaN(difference) ? Double.POSITIVE_INFINITY : difference;
+	}
+
+	private static Divergence divergence(int step, String field, double referenceValue, double engineValue){
+		Divergence divergence = new Divergence();
+		divergence.step = step;
+		divergence.field = field;
+		divergence.referenceValue = referenceValue;
+		divergence.engineValue = engineValue;
+		return divergence;
+	}
+
+	/**
+	 * Checks a number of random configurations in a track. Returns the number
+	 * of configurations which diverge.
+	 */
+	public int checkTrack(String trackName, int nConfigurations, Random random){
+		ShapeTrack track = TrackLoader.getTrack("carracing.tracks." + trackName);
+		LinearController controller = new LinearController();
+		int diverged = 0;
+		for (int i = 0; i < nConfigurations; i++){
+			double[] parameters = new double[LinearController.NUM_COEFFICIENTS];
+			for (int j = 0; j < parameters.length; j++)
+				parameters[j] = LinearController.RANGES[0][j] + random.nextDouble() * (LinearController.RANGES[1][j] - LinearController.RANGES[0][j]);
+			controller.setParameters(parameters);
+			Divergence divergence = check(track, controller);
+			if (divergence != null){
+				diverged++;
+				if (firstDivergence == null){
+					divergence.track = trackName;
+					divergence.configuration = i;
+					divergence.parameters = parameters;
+					firstDivergence = divergence;
+				}
+			}
+		}
+		return diverged;
+	}
+
+	/** Returns the first divergence found, or null. */
+	public Divergence getFirstDivergence(){
+		return firstDivergence;
+	}
+
+	/** Returns the maximum difference found in the state of the car. */
+	public double getMaxDifference(){
+		return maxDifference;
+	}
+
+	/**
+	 * Returns an engine given its name: "current" (ControllerEvaluation),
+	 * "reference", "compiled" (on frozen copies of the tracks), "fastmath"
+	 * (approximated trigonometric functions), "marching" (sensors refined by bisection),
+	 * "grid" (sensors which skip points with the occupancy grid),
+	 * "sensortable" and "sensortable-interpolated" (sensors read from
+	 * precomputed tables), or the name of a class implementing
+	 * SimulationEngine.
+	 */
+	public static SimulationEngine getEngine(String name){
+		if (name.equals("current"))
+			return new EvaluationEngine();
+		if (name.equals("reference"))
+			return new ReferenceEvaluation();
+		if (name.equals("compiled"))
+			return new CompiledTrackEngine();
+		if (name.equals("fastmath"))
+			return new FastMathEngine();
+		if (name.equals("marching"))
+			return new MarchingSensorEngine();
+		if (name.equals("grid"))
+			return new GridSensorEngine();
+		if (name.equals("sensortable"))
+			return new SensorTableEngine(false);
+		if (name.equals("sensortable-interpolated"))
+			return new SensorTableEngine(true);
+		try{
+			return (SimulationEngine) Class.forName(name).getDeclaredConstructor().newInstance();
+		}
+		catch (Exception e){
+			System.out.println("The engine "+name+" can't be built.");
+			System.exit(-1);
+		}
+		return null;
+	}
+
+	/** Main */
+	public static void main(String[] args){
+		SimulationEngine engine = getEngine(args.length > 0 ? args[0] : "current");
+		int nConfigurations = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+		double tolerance = args.length > 2 ? Double.parseDouble(args[2]) : 0;
+		long seed = args.length > 3 ? Long.parseLong(args[3]) : 0;
+		String[] tracks = args.length > 4 ? Arrays.copyOfRange(args, 4, args.length) : new String[]{"Track1", "Track2", "Track3"};
+
+		System.out.println("Checking engine " + engine.getName() + " against the reference, " + nConfigurations
+				+ " configurations per track, tolerance " + tolerance + ", seed " + seed + ".");
+		EquivalenceChecker checker = new EquivalenceChecker(engine, tolerance);
+		Random random = new Random(seed);
+		int diverged = 0;
+		for (String track : tracks){
+			int trackDiverged = checker.checkTrack(track, nConfigurations, random);
+			System.out.println(track + ": " + trackDiverged + " of " + nConfigurations + " configurations diverge.");
+			diverged += trackDiverged;
+		}
+		System.out.println("Maximum difference in the state of the car: " + checker.getMaxDifference());
+
+		if (diverged > 0){
+			System.out.println("FAILED. First divergence:\n" + checker.getFirstDivergence());
+			System.exit(1);
+		}
+		System.out.println("PASSED.");
+	}
+}
@@ -0,0 +1,72 @@
+package carracing.reference;
+
+import carracing.CarModel;
+import carracing.ControllerEvaluation;
+import carracing.EvaluationContext;
+import carracing.controllers.Controller;
+import carracing.tracks.ShapeTrack;
+
+/**
+ * Engine which carries out the simulation with the current code
+ * (carracing.ControllerEvaluation), with its own context. Subclasses can 
+ * configure the context to check other simulation modes.
+ */
+public class EvaluationEngine implements SimulationEngine {
+
+	/** Context of the simulations. */
+	protected final EvaluationContext context = new EvaluationContext();
+
+	/** Evaluation, built in the first reset. */
+	protected ControllerEvaluation evaluation;
+
+	@Override
+	public String getName() {
+		return "current";
+	}
+
+	@Override
+	public void reset(ShapeTrack track, Controller controller) {
+		if (evaluation == null) {
+			evaluation = new ControllerEvaluation(track, controller, context);
+			configure(track);
+		}
+		else {
+			evaluation.setController(controller);
+			if (evaluation.getTrack() != track) {
+				evaluation.setTrack(track);
+				configure(track);
+			}
+		}
+		evaluation.reset();
+	}
+
+	/** Called when the evaluation starts using a track, to set the simulation mode. */
+	protected void configure(ShapeTrack track) {
+	}
+
+	@Override
+	public boolean step() {
+		return evaluation.step();
+	}
+
+	@Override
+	public double getX() { return model().getPosition().x; }
+
+	@Override
+	public double getY() { return model().getPosition().y; }
+
+	@Override
+	public double getHeading() { return model().getHeading(); }
+
+	@Override
+	public double getSpeed() { return model().getSpeed(); }
+
+	@Override
+	public double[] finish() {
+		return evaluation.finish();
+	}
+
+	private CarModel model() {
+		return evaluation.getModel();
+	}
+}
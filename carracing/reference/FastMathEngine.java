@@ -0,0 +1,21 @@
+package carracing.reference;
+
+import carracing.tracks.ShapeTrack;
+
+/**
+ * Engine which uses the approximated trigonometric functions of the model
+ * of the car (see carracing.utils.FastMath). It is an approximation, so it
+ * is expected to diverge slightly from the reference.
+ */
+public class FastMathEngine extends EvaluationEngine {
+
+	@Override
+	public String getName() {
+		return "fastmath";
+	}
+
+	@Override
+	protected void configure(ShapeTrack track) {
+		context.getModel().setFastMath(true);
+	}
+}
@@ -0,0 +1,21 @@
+package carracing.reference;
+
+import carracing.tracks.ShapeTrack;
+
+/**
+ * Engine whose sensors skip points with the occupancy grid of the track (see
+ * CarModel.gridWallSensor). The readings are the same as those of the
+ * reference.
+ */
+public class GridSensorEngine extends EvaluationEngine {
+
+	@Override
+	public String getName() {
+		return "grid";
+	}
+
+	@Override
+	protected void configure(ShapeTrack track) {
+		context.getModel().setGridSensors(true);
+	}
+}
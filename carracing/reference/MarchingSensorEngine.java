@@ -0,0 +1,21 @@
+package carracing.reference;
+
+import carracing.tracks.ShapeTrack;
+
+/**
+ * Engine whose sensors march along the rays in coarse steps and refine the
+ * hits by bisection (see CarModel.marchingWallSensor). The readings are
+ * continuous distances, so it is expected to diverge from the reference.
+ */
+public class MarchingSensorEngine extends EvaluationEngine {
+
+	@Override
+	public String getName() {
+		return "marching";
+	}
+
+	@Override
+	protected void configure(ShapeTrack track) {
+		context.getModel().setMarchingSensors(true);
+	}
+}
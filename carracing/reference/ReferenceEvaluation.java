@@ -0,0 +1,196 @@
+package carracing.reference;
+
+import carracing.controllers.Controller;
+import carracing.tracks.AimChain;
+import carracing.tracks.ShapeTrack;
+import carracing.utils.Vector2d;
+
+/**
+ * Frozen copy of the original evaluation of a controller (carracing.ControllerEvaluation
+ * before any optimization), with ReferenceCarModel. The body of the original
+ * main loop is carried out by step(), with the same operations in the same
+ * order, so that it can be compared step by step with other engines. It 
+ * must never be changed.
+ */
+public class ReferenceEvaluation implements SimulationEngine {
+
+	/** Car */
+	protected ReferenceCarModel model = new ReferenceCarModel();
+
+	/** Track */
+	protected ShapeTrack track;
+
+	/** Controller */
+	protected Controller control;
+
+	/** Aim points */
+	protected AimChain aimChain;
+	protected int nextAimpoint=0;
+	protected int totalAimPointsPassed=0;
+	protected int numberOfAimPoints;
+
+	/** This constant represents 45 degrees */
+	final double fortyFiveDegrees = Math.PI / 4;
+
+	/** Data structures which allow managing sensors. */
+	private double sensorAngles[] = {-fortyFiveDegrees, -fortyFiveDegrees/2, 0, fortyFiveDegrees/2, fortyFiveDegrees};
+	private double sensorReaches[] = { 200, 300, 400, 300 ,200 };
+	private double sensorActivations[] = new double[sensorAngles.length];
+	final int sensorSteps = 30;
+
+	/** Inputs of the sensors. */
+	private final double[] inputs = new double[8];
+	
+	/** Vector storing the actions. */
+	double[] actions = new double[2];
+	
+	/** Determines the maximum length of the evaluation (in iterations) */
+	final int numberOfIterations = 2000;
+	
+	/** Stores lap time and distance. */
+	private long laptime;
+	private double distance;
+	private double stepDistance;
+
+	/** State of the main loop. */
+	private int iteration;
+	private boolean lapFinished;
+
+	/** Simulated time per iteration. It is used to compute time. */
+	private final long timeIteration = 50; // Milliseconds
+	
+	/** Scale of the model, in centimeters/pixel */
+	private final long scale = 20;
+	
+	/** Results. */
+	double[] results = new double[2];
+
+	@Override
+	public String getName() {
+		return "reference";
+	}
+
+	@Override
+	public void reset(ShapeTrack track, Controller control) {
+		this.track = track;
+		this.control = control;
+		aimChain = track.getAimchain();
+		numberOfAimPoints = aimChain.nPoints();
+
+		// Fix the starting point of the car
+		model.fixCarStartingPosition(track);
+
+		nextAimpoint = 0;
+		totalAimPointsPassed = 0;
+		laptime = 0;
+		distance = 0;
+		iteration = 0;
+		lapFinished = false;
+	}
+
+	@Override
+	public boolean step() {
+		iteration++;
+
+		// Reads the position of the model.
+		Vector2d oldModelPosition = model.getPosition();
+		
+		// Calculates the actions depending on the sensors.
+		takeAction();
+		
+		// Carries out the actions.
+		model.drive(actions[0], actions[1]);
+		
+		// Carries out the next movement
+		model.next(track);
+		
+		// Updates the lap time
+		laptime++;
+		
+		// Tests if the car has stopped. If so, penalizes with the maximum time, and finishes.
+		stepDistance = model.getPosition().dist(oldModelPosition);	
+		if (stepDistance==0){
+			return false;
+		}			
+		
+		// Tests if the point has been passed and updates the nextAimpoint.		
+		if (model.getPosition().dist(aimChain.getPoint(nextAimpoint))<100){		
+			 totalAimPointsPassed += 1;
+			 nextAimpoint = (nextAimpoint+1)%numberOfAimPoints;				 
+		}
+		
+		// If the car has crossed the line.
+		if (model.hasCrossedLine(track)){
+			// If the lap has been completed, breaks the loop.
+			if (totalAimPointsPassed==numberOfAimPoints){
+				lapFinished = true;
+				return false;
+			}
+			// Otherwise, resets the lap
+			else{
+				laptime = 0;
+				nextAimpoint = 0;
+				totalAimPointsPassed=0;
+			}
+		}
+		return iteration < numberOfIterations;
+	}
+
+	@Override
+	public double getX() { return model.getPosition().x; }
+
+	@Override
+	public double getY() { return model.getPosition().y; }
+
+	@Override
+	public double getHeading() { return model.getHeading(); }
+
+	@Override
+	public double getSpeed() { return model.getSpeed(); }
+
+	@Override
+	public double[] finish() {
+		// If the car has not crossed the finish line.
+		if (!lapFinished){
+			// Penalizes with the maximum simulated lap time.
+			laptime = numberOfIterations;
+			distance = track.getLengthToPoint(nextAimpoint) - model.getPosition().dist(aimChain.getPoint(nextAimpoint));
+		}		
+		else{
+			distance = track.getTrackLenght();
+		}
+		
+		// Re scales the results
+		laptime = laptime * timeIteration;
+		distance = uglyRound(distance * scale);	
+		
+		// Returns the results
+		results[0] = laptime;
+		results[1] = distance;
+		
+		return results;
+	}
+
+	/**
+	 * This function reads the sensors and uses the controller to determine which actions
+	 * must be carried out by the car.
+	 */
+	private void takeAction() {
+		for (int i = 0; i < sensorActivations.length; i++) {
+			sensorActivations[i] = model.wallSensor(track,sensorAngles[i],
+					sensorSteps, (int) sensorReaches[i]/sensorSteps);
+			inputs[i] = (sensorActivations[i]);
+		}
+		inputs[5] = model.getSpeed();
+		inputs[6] = model.targetAngleDifference(aimChain.getPoint(nextAimpoint));
+		inputs[7] = model.targetAngleDifference(aimChain.getPoint(nextAimpoint+1));
+		inputs[7] = inputs[7]-inputs[6];
+		// Determines the actions (power and steer).
+		actions = control.genAction(inputs);
+	}
+	
+	/** Round integers */
+	private double uglyRound(double value) {
+		return (((int) (value * 100.0)) / 100.0);
+	}	
+}
@@ -0,0 +1,42 @@
+package carracing.reference;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import carracing.SensorTable;
+import carracing.tracks.ShapeTrack;
+
+/**
+ * Engine which reads the sensors from precomputed tables of the tracks
+ * (see carracing.SensorTable), from the nearest pose or interpolating.
+ * It is an approximation, so it is expected to diverge from the reference.
+ */
+public class SensorTableEngine extends EvaluationEngine {
+
+	/** Whether the readings are interpolated. */
+	private final boolean interpolate;
+
+	/** Creates an engine which reads the nearest pose of the tables. */
+	public SensorTableEngine() {
+		this(false);
+	}
+
+	/** Creates an engine which reads the nearest pose of the tables, or interpolates. */
+	public SensorTableEngine(boolean interpolate) {
+		this.interpolate = interpolate;
+	}
+
+	@Override
+	public String getName() {
+		return interpolate ? "sensortable-interpolated" : "sensortable";
+	}
+
+	@Override
+	protected void configure(ShapeTrack track) {
+		try {
+			evaluation.setSensorTable(SensorTable.get(track, context.getLayout(), SensorTable.DEFAULT_CELL_SIZE, SensorTable.DEFAULT_HEADINGS), interpolate);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
@@ -0,0 +1,30 @@
+package carracing.reference;
+
+import carracing.controllers.Controller;
+import carracing.tracks.ShapeTrack;
+
+/**
+ * A simulation of a controller in a track which can be carried out step by
+ * step, so that two simulations can be compared after every step. 
+ * EquivalenceChecker compares any engine with ReferenceEvaluation.
+ */
+public interface SimulationEngine {
+
+	/** Returns the name of the engine. */
+	public String getName();
+
+	/** Places the car in the starting point of a track, driven by a controller. */
+	public void reset(ShapeTrack track, Controller controller);
+
+	/** Carries out an iteration. Returns false when the evaluation ends. */
+	public boolean step();
+
+	/** State of the car after the last step. */
+	public double getX();
+	public double getY();
+	public double getHeading();
+	public double getSpeed();
+
+	/** Finishes the evaluation and returns the lap time and the distance. */
+	public double[] finish();
+}
@@ -13,7 +13,6 @@ public class AimChain  {
     Vector2d[] points;
     final int n;
     String fileName;
-    int index;
     int r = 5;
     double[] distancesToNextPoint;
 
@@ -37,10 +36,11 @@ public class AimChain  {
     }
 
     /**
-     * Returns the index of the closest aim point.
+     * Returns the index of the closest aim point. Goes through all the
+     * points (see AimChainIndex for long chains).
      */
     public int getClosestIndex(Vector2d v) {
-        index = 0;
+        int index = 0;
         double min = points[index].sqDist(v);
         for (int i=1; i < n; i++) {
             if (points[i].sqDist(v) < min) {
@@ -0,0 +1,252 @@
+package carracing.tracks;
+
+import carracing.utils.Vector2d;
+
+/**
+ * Immutable index over the points of an AimChain, which can be shared by
+ * several threads.
+ *
+ * The points are bucketed in a grid of square cells (compressed rows, as in
+ * OccupancyGrid), so nearest() only looks at the cells around the position
+ * instead of at every point, and returns the same index as
+ * AimChain.getClosestIndex.
+ *
+ * The chain is also seen as a closed polyline which starts and ends at the
+ * last point (on the start line), so that the progress along it is a
+ * continuous value between 0 and getLength(), which reaches
+ * ShapeTrack.getLengthToPoint(k) at point k. Following a car, a Cursor
+ * finds the progress in amortized constant time, starting from the segment
+ * where it was before.
+ */
+public final class AimChainIndex {
+
+	/** Coordinates of the points. */
+	private final double[] xs, ys;
+
+	/** Distance along the chain from the last point to each point (as ShapeTrack.getLengthToPoint). */
+	private final double[] lengths;
+
+	/** Origin of the grid, size of the cells and number of cells. */
+	private final double originX, originY, cellSize;
+	private final int nx, ny;
+
+	/** Points of each cell (cellStart[c] to cellStart[c+1] in cellPoints, in increasing order). */
+	private final int[] cellStart, cellPoints;
+
+	/** Builds the index of a chain of aim points. */
+	public AimChainIndex(AimChain chain) {
+		int n = chain.nPoints();
+		xs = new double[n];
+		ys = new double[n];
+		double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+		for (int k = 0; k < n; k++) {
+			Vector2d point = chain.getPoint(k);
+			xs[k] = point.x;
+			ys[k] = point.y;
+			minX = Math.min(minX, point.x);
+			minY = Math.min(minY, point.y);
+			maxX = Math.max(maxX, point.x);
+			maxY = Math.max(maxY, point.y);
+		}
+		lengths = new double[n];
+		lengths[0] = chain.getPoint(0).dist(chain.getPoint(n - 1));
+		for (int k = 1; k < n; k++)
+			lengths[k] = lengths[k - 1] + chain.getPoint(k - 1).dist(chain.getPoint(k));
+
+		// About one point per cell.
+		originX = minX;
+		originY = minY;
+		cellSize = Math.max(1, Math.sqrt((maxX - minX + 1) * (maxY - minY + 1) / n));
+		nx = (int) ((maxX - minX) / cellSize) + 1;
+		ny = (int) ((maxY - minY) / cellSize) + 1;
+		cellStart = new int[nx * ny + 1];
+		int[] cells = new int[n];
+		for (int k = 0; k < n; k++) {
+			cells[k] = cell(xs[k], ys[k]);
+			cellStart[cells[k] + 1]++;
+		}
+		for (int c = 0; c < nx * ny; c++)
+			cellStart[c + 1] += cellStart[c];
+		cellPoints = new int[n];
+		int[] next = cellStart.clone();
+		for (int k = 0; k < n; k++)
+			cellPoints[next[cells[k]]++] = k;
+	}
+
+	/** Returns the cell of a point of the chain. */
+	private int cell(double x, double y) {
+		return (int) ((y - originY) / cellSize) * nx + (int) ((x - originX) / cellSize);
+	}
+
+	/** Returns the number of points. */
+	public int nPoints() {
+		return xs.length;
+	}
+
+	/** Returns the length of the chain. */
+	public double getLength() {
+		return lengths[xs.length - 1];
+	}
+
+	/** Returns the distance along the chain from the last point to a point. */
+	public double getLengthToPoint(int point) {
+		return lengths[point];
+	}
+
+	/**
+	 * Returns the index of the closest point (the lowest one if several are
+	 * at the same distance, as AimChain.getClosestIndex).
+	 */
+	public int nearest(double x, double y) {
+		int ci = clamp((int) Math.floor((x - originX) / cellSize), nx);
+		int cj = clamp((int) Math.floor((y - originY) / cellSize), ny);
+		int best = -1;
+		double bestDistance = Double.POSITIVE_INFINITY;
+		for (int ring = 0; ; ring++) {
+			int i0 = ci - ring, i1 = ci + ring, j0 = cj - ring, j1 = cj + ring;
+			for (int j = Math.max(0, j0); j <= Math.min(ny - 1, j1); j++) {
+				boolean edge = j == j0 || j == j1;
+				for (int i = Math.max(0, i0); i <= Math.min(nx - 1, i1); i += edge || i == i1 ? 1 : i1 - i) {
+					int c = j * nx + i;
+					for (int p = cellStart[c]; p < cellStart[c + 1]; p++) {
+						int k = cellPoints[p];
+						double dx = xs[k] - x, dy = ys[k] - y;
+						double d = dx * dx + dy * dy;
+						if (d < bestDistance || (d == bestDistance && k < best)) {
+							best = k;
+							bestDistance = d;
+						}
+					}
+				}
+			}
+
+			// Points not visited yet are out of the block of cells, beyond the nearest of its inner sides.
+			double bound = Double.POSITIVE_INFINITY;
+			if (i0 > 0)
+				bound = Math.min(bound, x - (originX + i0 * cellSize));
+			if (i1 < nx - 1)
+				bound = Math.min(bound, originX + (i1 + 1) * cellSize - x);
+			if (j0 > 0)
+				bound = Math.min(bound, y - (originY + j0 * cellSize));
+			if (j1 < ny - 1)
+				bound = Math.min(bound, originY + (j1 + 1) * cellSize - y);
+			if (bound == Double.POSITIVE_INFINITY || (bound > 0 && bound * bound > bestDistance))
+				return best;
+		}
+	}
+
+	/** Limits a cell coordinate to the grid. */
+	private static int clamp(int i, int n) {
+		return i < 0 ? 0 : i >= n ? n - 1 : i;
+	}
+
+	/**
+	 * Returns the progress along the chain of the closest position of a
+	 * segment to a point. Segment k goes from point k-1 to point k (segment
+	 * 0 from the last point to the first one).
+	 */
+	public double progress(int segment, double x, double y) {
+		double t = parameter(segment, x, y);
+		double length = segmentLength(segment);
+		return lengths[segment] - length + Math.max(0, Math.min(1, t)) * length;
+	}
+
+	/** Returns the length of a segment. */
+	private double segmentLength(int segment) {
+		return segment == 0 ? lengths[0] : lengths[segment] - lengths[segment - 1];
+	}
+
+	/** Returns the position of the projection of a point along a segment (0 at its start, 1 at its end). */
+	private double parameter(int segment, double x, double y) {
+		int from = segment == 0 ? xs.length - 1 : segment - 1;
+		double sx = xs[segment] - xs[from], sy = ys[segment] - ys[from];
+		double squaredLength = sx * sx + sy * sy;
+		if (squaredLength == 0)
+			return 0;
+		return ((x - xs[from]) * sx + (y - ys[from]) * sy) / squaredLength;
+	}
+
+	/** Returns the squared distance from a point to a segment. */
+	private double squaredDistance(int segment, double x, double y) {
+		int from = segment == 0 ? xs.length - 1 : segment - 1;
+		double t = Math.max(0, Math.min(1, parameter(segment, x, y)));
+		double dx = xs[from] + (xs[segment] - xs[from]) * t - x;
+		double dy = ys[from] + (ys[segment] - ys[from]) * t - y;
+		return dx * dx + dy * dy;
+	}
+
+	/** Returns the segment closest to a point, among the two which touch its closest aim point. */
+	public int nearestSegment(double x, double y) {
+		int k = nearest(x, y);
+		int after = (k + 1) % xs.length;
+		return squaredDistance(after, x, y) < squaredDistance(k, x, y) ? after : k;
+	}
+
+	/** Returns a cursor placed at the segment closest to a point. */
+	public Cursor cursor(double x, double y) {
+		return new Cursor(nearestSegment(x, y));
+	}
+
+	/**
+	 * Follows a position which moves along the chain. Each thread needs its
+	 * own cursor; the index can be shared.
+	 */
+	public final class Cursor {
+
+		/** Current segment. */
+		private int segment;
+
+		/** Number of laps completed (negative when going backwards past the start). */
+		private int laps;
+
+		private Cursor(int segment) {
+			this.segment = segment;
+		}
+
+		/**
+		 * Moves the cursor to the segment of a new position, going to the
+		 * next or the previous segment while it is closer to the position
+		 * than the current one (or as close, going forwards past the end of
+		 * the current one). Returns the progress along the chain, between 0
+		 * and getLength().
+		 */
+		public double advance(double x, double y) {
+			int n = xs.length;
+			for (int steps = 0; steps < n; steps++) {
+				int next = (segment + 1) % n, previous = (segment + n - 1) % n;
+				double current = squaredDistance(segment, x, y);
+				double ahead = squaredDistance(next, x, y);
+				if (ahead < current || (ahead == current && parameter(segment, x, y) > 1)) {
+					if (next == 0)
+						laps++;
+					segment = next;
+				}
+				else if (squaredDistance(previous, x, y) < current) {
+					if (segment == 0)
+						laps--;
+					segment = previous;
+				}
+				else
+					break;
+			}
+			return progress(segment, x, y);
+		}
+
+		/** Returns the current segment (ending at aim point getSegment()). */
+		public int getSegment() {
+			return segment;
+		}
+
+		/** Returns the number of times the cursor has gone past the last point. */
+		public int getLaps() {
+			return laps;
+		}
+
+		/** Returns the progress including the laps completed. */
+		public double getTotalProgress(double x, double y) {
+			double progress = advance(x, y);
+			return laps * getLength() + progress;
+		}
+	}
+}
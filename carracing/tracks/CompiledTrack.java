@@ -0,0 +1,167 @@
+package carracing.tracks;
+
+import java.awt.Polygon;
+import java.awt.Rectangle;
+import java.awt.Shape;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import carracing.utils.Vector2d;
+
+/**
+ * Frozen copy of a track, which any number of threads can share.
+ *
+ * Takes copies of the figures, the aim points, the start line, the origins
+ * and the distances to the aim points of another track, and builds an
+ * occupancy grid of the figures, an index of the aim points and gates at
+ * the aim points (see GateChain). Nothing of it changes afterwards: the
+ * methods which would modify the track throw UnsupportedOperationException,
+ * and the collection of figures can not be modified. The figures, the aim
+ * points and the start line which the getters return must not be modified
+ * either.
+ *
+ * okay() uses the grid and gives exactly the same answers as the original
+ * track, so evaluations give the same results. Random origins should be
+ * taken with getRandomizedOrigins(Random), passing the generator of the
+ * thread.
+ */
+public final class CompiledTrack extends ShapeTrack {
+
+	/** Occupancy grid of the figures. */
+	private final OccupancyGrid grid;
+
+	/** Index of the aim points. */
+	private final AimChainIndex aimChainIndex;
+
+	/** Distances from the start to each aim point. */
+	private final double[] lengths;
+
+	/** Start line, and the same line as a gate. */
+	private final Vector2d[] line;
+	private final Gate startGate;
+
+	/** Gates at the aim points. */
+	private final GateChain gateChain;
+
+	/** Copies a track, with the default size of the cells of the grid. */
+	public CompiledTrack(ShapeTrack track) {
+		this(track, TrackCompiler.DEFAULT_CELL_SIZE);
+	}
+
+	/** Copies a track, with a certain size of the cells of the grid. */
+	public CompiledTrack(ShapeTrack track, double cellSize) {
+		List<Shape> shapes = new ArrayList<Shape>();
+		for (Object figure : track.getShapeCollection())
+			shapes.add(copy((Shape) figure));
+		r = Collections.unmodifiableList(shapes);
+		grid = OccupancyGrid.build(shapes.toArray(new Shape[shapes.size()]), cellSize);
+
+		fixedOriginX = track.fixedOriginX;
+		fixedOriginY = track.fixedOriginY;
+		fixedOriginHeading = track.fixedOriginHeading;
+		minOriginX = track.minOriginX;
+		maxOriginX = track.maxOriginX;
+		minOriginY = track.minOriginY;
+		maxOriginY = track.maxOriginY;
+		minOriginHeading = track.minOriginHeading;
+		maxOriginHeading = track.maxOriginHeading;
+		line = new Vector2d[] {new Vector2d(track.startLine[0].x, track.startLine[0].y),
+				new Vector2d(track.startLine[1].x, track.startLine[1].y)};
+		startLine = line;
+		startGate = new Gate(line[0], line[1]);
+
+		AimChain source = track.getAimchain();
+		Vector2d[] points = new Vector2d[source.nPoints()];
+		lengths = new double[points.length];
+		for (int k = 0; k < points.length; k++) {
+			points[k] = new Vector2d(source.getPoint(k).x, source.getPoint(k).y);
+			lengths[k] = track.getLengthToPoint(k);
+		}
+		aimchain = new AimChain(points);
+		partialLenghts = lengths;
+		aimChainIndex = new AimChainIndex(aimchain);
+		gateChain = new GateChain(this);
+	}
+
+	/**
+	 * Copies a figure. Rectangles and polygons are copied (with the bounds
+	 * of polygons already calculated, as contains() would do it lazily);
+	 * other figures are kept as they are.
+	 */
+	private static Shape copy(Shape shape) {
+		if (shape instanceof Rectangle)
+			return new Rectangle((Rectangle) shape);
+		if (shape instanceof Polygon) {
+			Polygon p = (Polygon) shape;
+			Polygon polygon = new Polygon(p.xpoints, p.ypoints, p.npoints);
+			polygon.getBounds();
+			return polygon;
+		}
+		return shape;
+	}
+
+	/** Uses the occupancy grid (same answer as ShapeTrack.okay). */
+	@Override
+	public boolean okay(double x, double y) {
+		return grid.okay(x, y);
+	}
+
+	/** Returns the occupancy grid. */
+	@Override
+	public OccupancyGrid getGrid() {
+		return grid;
+	}
+
+	/** Returns the index of the aim points. */
+	public AimChainIndex getAimChainIndex() {
+		return aimChainIndex;
+	}
+
+	/** Returns the gates at the aim points. */
+	public GateChain getGateChain() {
+		return gateChain;
+	}
+
+	@Override
+	public Vector2d[] getStartLine() {
+		return line;
+	}
+
+	@Override
+	public Gate getStartGate() {
+		return startGate;
+	}
+
+	@Override
+	public double getTrackLenght() {
+		return lengths[lengths.length - 1];
+	}
+
+	@Override
+	public double getLengthToPoint(int point) {
+		return lengths[point];
+	}
+
+	/** Compiled tracks can not be modified. */
+	@Override
+	public void add(Shape s) {
+		throw new UnsupportedOperationException("Compiled tracks can not be modified.");
+	}
+
+	@Override
+	public void setFixedOrigins(int originX, int originY, double originHeading) {
+		throw new UnsupportedOperationException("Compiled tracks can not be modified.");
+	}
+
+	@Override
+	public void setRandomOriginParameters(int minOriginX, int maxOriginX, int minOriginY,
+			int maxOriginY, double minOriginHeading, double maxOriginHeading) {
+		throw new UnsupportedOperationException("Compiled tracks can not be modified.");
+	}
+
+	@Override
+	public void setAimchain(AimChain aimchain) {
+		throw new UnsupportedOperationException("Compiled tracks can not be modified.");
+	}
+}
@@ -0,0 +1,70 @@
+package carracing.tracks;
+
+import carracing.utils.Vector2d;
+
+/**
+ * Segment which the car crosses, such as the start line. The implicit form
+ * of its line (a*x + b*y + c, whose sign tells the side of a point) is
+ * calculated once, so that testing a movement needs a few products and no
+ * divisions, and vertical segments are not a special case.
+ *
+ * A movement crosses the gate when its end is on a different side of the
+ * line than its start (points on the line count as the negative side, so
+ * reaching the line and leaving it is a single crossing), and the ends of
+ * the gate are on different sides of the movement. Gates are immutable.
+ */
+public final class Gate {
+
+	/** Ends of the gate. */
+	private final double x0, y0, x1, y1;
+
+	/** Coefficients of the line: a*x + b*y + c. */
+	private final double a, b, c;
+
+	/** Builds a gate between two points. */
+	public Gate(double x0, double y0, double x1, double y1) {
+		this.x0 = x0;
+		this.y0 = y0;
+		this.x1 = x1;
+		this.y1 = y1;
+		a = y1 - y0;
+		b = x0 - x1;
+		c = -(a * x0 + b * y0);
+	}
+
+	/** Builds a gate between two points. */
+	public Gate(Vector2d from, Vector2d to) {
+		this(from.x, from.y, to.x, to.y);
+	}
+
+	/** Returns a*x + b*y + c: positive on one side of the line, negative on the other and 0 on it. */
+	public double side(double x, double y) {
+		return a * x + b * y + c;
+	}
+
+	/** Returns true if the movement from (px, py) to (qx, qy) crosses the gate, in any direction. */
+	public boolean crosses(double px, double py, double qx, double qy) {
+		if ((side(px, py) > 0) == (side(qx, qy) > 0))
+			return false;
+		double dx = qx - px, dy = qy - py;
+		double e0 = dx * (y0 - py) - dy * (x0 - px);
+		double e1 = dx * (y1 - py) - dy * (x1 - px);
+		return (e0 > 0) != (e1 > 0);
+	}
+
+	/** Returns true if the movement crosses the gate from its negative side to its positive side. */
+	public boolean crossesForward(double px, double py, double qx, double qy) {
+		return side(px, py) <= 0 && crosses(px, py, qx, qy);
+	}
+
+	/** Returns true if the gate joins these two points. */
+	public boolean joins(Vector2d from, Vector2d to) {
+		return from.x == x0 && from.y == y0 && to.x == x1 && to.y == y1;
+	}
+
+	/** Returns the ends of the gate. */
+	public double getX0() { return x0; }
+	public double getY0() { return y0; }
+	public double getX1() { return x1; }
+	public double getY1() { return y1; }
+}
@@ -0,0 +1,86 @@
+package carracing.tracks;
+
+import carracing.utils.Vector2d;
+
+/**
+ * Gates across the track at each aim point, so that the progress of a car
+ * can be measured by the gates it crosses in order. The gate of each aim
+ * point is perpendicular to the chain there and reaches the walls at both
+ * sides (or a maximum distance); the gate of the last aim point is the
+ * start line.
+ *
+ * The chain is immutable and keeps no state of any car: the caller keeps
+ * the number of gates passed and update() returns the new one. Each step
+ * tests the next gate and the one after it, because on tight curves two
+ * consecutive gates can cross each other, and the car may go through the
+ * second one before the first.
+ */
+public final class GateChain {
+
+	/** Maximum distance from an aim point to the ends of its gate. */
+	public static final double DEFAULT_REACH = 200;
+
+	/** Gates, one per aim point. */
+	private final Gate[] gates;
+
+	/** Builds the gates of a track, with the default reach. */
+	public GateChain(ShapeTrack track) {
+		this(track, DEFAULT_REACH);
+	}
+
+	/** Builds the gates of a track, with a certain reach. */
+	public GateChain(ShapeTrack track, double reach) {
+		AimChain chain = track.getAimchain();
+		int n = chain.nPoints();
+		gates = new Gate[n];
+		for (int k = 0; k < n - 1; k++) {
+			Vector2d point = chain.getPoint(k);
+			Vector2d previous = chain.getPoint(k + n - 1), next = chain.getPoint(k + 1);
+			// Normal to the chain at the point (or to the segment before it, if the chain goes back).
+			double nx = -(next.y - previous.y), ny = next.x - previous.x;
+			if (nx == 0 && ny == 0) {
+				nx = -(point.y - previous.y);
+				ny = point.x - previous.x;
+			}
+			double length = Math.sqrt(nx * nx + ny * ny);
+			nx /= length;
+			ny /= length;
+			double left = free(track, point, nx, ny, reach), right = free(track, point, -nx, -ny, reach);
+			gates[k] = new Gate(point.x + nx * left, point.y + ny * left, point.x - nx * right, point.y - ny * right);
+		}
+		gates[n - 1] = track.getStartGate();
+	}
+
+	/** Returns the distance which can be transited from a point in a direction (up to reach). */
+	private static double free(ShapeTrack track, Vector2d point, double dx, double dy, double reach) {
+		double distance = 0;
+		while (distance < reach && track.okay(point.x + dx * (distance + 1), point.y + dy * (distance + 1)))
+			distance++;
+		// One more unit, so that the gate touches the wall.
+		return distance + 1;
+	}
+
+	/** Returns the number of gates. */
+	public int nGates() {
+		return gates.length;
+	}
+
+	/** Returns the ith gate. */
+	public Gate getGate(int i) {
+		return gates[i % gates.length];
+	}
+
+	/**
+	 * Returns the number of gates passed after a movement from (px, py) to
+	 * (qx, qy), given the number passed before: one more if the movement
+	 * crosses the next gate, two more if it crosses the one after it. A lap
+	 * is completed every nGates() gates.
+	 */
+	public int update(int passed, double px, double py, double qx, double qy) {
+		if (gates[passed % gates.length].crosses(px, py, qx, qy))
+			return passed + 1;
+		if (gates[(passed + 1) % gates.length].crosses(px, py, qx, qy))
+			return passed + 2;
+		return passed;
+	}
+}
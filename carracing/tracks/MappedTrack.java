@@ -0,0 +1,106 @@
+package carracing.tracks;
+
+import java.awt.Polygon;
+import java.awt.Rectangle;
+import java.awt.Shape;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import carracing.utils.Vector2d;
+
+/**
+ * Track loaded from a file compiled by TrackCompiler. The file is mapped in
+ * memory: the occupancy grid is used where it is, and the distances to the
+ * aim points are read instead of calculated. okay() uses the grid, and
+ * gives exactly the same answers as the figures themselves.
+ */
+public class MappedTrack extends ShapeTrack {
+
+	/** Occupancy grid of the figures. */
+	private final OccupancyGrid grid;
+
+	/** Loads a compiled track. */
+	public MappedTrack(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			MappedByteBuffer in = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+			if (in.getInt() != TrackCompiler.MAGIC || in.getInt() != TrackCompiler.VERSION)
+				throw new IOException(file + " is not a compiled track.");
+			fixedOriginX = in.getInt();
+			fixedOriginY = in.getInt();
+			fixedOriginHeading = in.getDouble();
+			minOriginX = in.getInt();
+			maxOriginX = in.getInt();
+			minOriginY = in.getInt();
+			maxOriginY = in.getInt();
+			minOriginHeading = in.getDouble();
+			maxOriginHeading = in.getDouble();
+			startLine[0] = new Vector2d(in.getDouble(), in.getDouble());
+			startLine[1] = new Vector2d(in.getDouble(), in.getDouble());
+
+			int nAimPoints = in.getInt();
+			Vector2d[] points = new Vector2d[nAimPoints];
+			for (int k = 0; k < nAimPoints; k++)
+				points[k] = new Vector2d(in.getDouble(), in.getDouble());
+			aimchain = new AimChain(points);
+			partialLenghts = new double[nAimPoints];
+			in.asDoubleBuffer().get(partialLenghts);
+			in.position(in.position() + nAimPoints * 8);
+
+			Shape[] shapes = new Shape[in.getInt()];
+			for (int s = 0; s < shapes.length; s++) {
+				int type = in.getInt();
+				int nPoints = in.getInt();
+				if (type == TrackCompiler.RECTANGLE)
+					shapes[s] = new Rectangle(in.getInt(), in.getInt(), in.getInt(), in.getInt());
+				else {
+					int[] xs = new int[nPoints], ys = new int[nPoints];
+					for (int k = 0; k < nPoints; k++) {
+						xs[k] = in.getInt();
+						ys[k] = in.getInt();
+					}
+					shapes[s] = new Polygon(xs, ys, nPoints);
+				}
+				add(shapes[s]);
+			}
+
+			double originX = in.getDouble(), originY = in.getDouble(), cellSize = in.getDouble();
+			int nx = in.getInt(), ny = in.getInt(), nCellShapes = in.getInt();
+			int nCells = nx * ny;
+			ByteBuffer states = slice(in, nCells);
+			in.position(in.position() + TrackCompiler.padded(nCells));
+			ByteBuffer rings = slice(in, nCells);
+			in.position(in.position() + TrackCompiler.padded(nCells));
+			IntBuffer cellStart = slice(in, (nCells + 1) * 4).asIntBuffer();
+			in.position(in.position() + (nCells + 1) * 4);
+			IntBuffer cellShapes = slice(in, nCellShapes * 4).asIntBuffer();
+			grid = new OccupancyGrid(shapes, originX, originY, cellSize, nx, ny, states, rings, cellStart, cellShapes);
+		} finally {
+			raf.close();
+		}
+	}
+
+	/** Returns a view of the next bytes of a buffer. */
+	private static ByteBuffer slice(ByteBuffer buffer, int length) {
+		ByteBuffer view = buffer.slice();
+		view.limit(length);
+		return view;
+	}
+
+	/** Uses the occupancy grid (same answer as ShapeTrack.okay, usually without testing figures). */
+	@Override
+	public boolean okay(double x, double y) {
+		return grid.okay(x, y);
+	}
+
+	/** Returns the occupancy grid. */
+	@Override
+	public OccupancyGrid getGrid() {
+		return grid;
+	}
+}
@@ -0,0 +1,251 @@
+package carracing.tracks;
+
+import java.awt.Shape;
+import java.awt.geom.Rectangle2D;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.Collection;
+
+/**
+ * Grid of square cells over the figures of a track, which answers
+ * ShapeTrack.okay() exactly but, in most cells, without testing any figure.
+ *
+ * Each cell is FREE (no figure touches it), BLOCKED (a figure covers it
+ * completely), or MIXED. Only points in MIXED cells are tested against the
+ * figures, and only against those whose bounds overlap the cell, which are
+ * listed in compressed rows (cellStart[c] to cellStart[c+1] in cellShapes).
+ * Points out of the grid are tested against all the figures.
+ *
+ * The grid also keeps, for each cell, how many cells away (in rings around
+ * it) the nearest cell which is not FREE is, which bounds from below the
+ * distance to the figures (see clearance). It is calculated when the grid
+ * is built, and stored with it.
+ *
+ * The arrays are kept in buffers, so that a grid can be read directly from
+ * a memory-mapped file (see MappedTrack).
+ */
+public class OccupancyGrid {
+
+	/** States of the cells. */
+	public static final byte FREE = 0;
+	public static final byte BLOCKED = 1;
+	public static final byte MIXED = 2;
+
+	/** Margin added to the cells when classifying them, so that their borders are also covered. */
+	private static final double margin = 0.5;
+
+	/** Figures of the track. */
+	private final Shape[] shapes;
+
+	/** Origin of the grid, size of the cells and number of cells. */
+	private final double originX, originY, cellSize;
+	private final int nx, ny;
+
+	/** Inverse of the size of the cells (a point rounded to a neighbour cell is within the margin). */
+	private final double scale;
+
+	/** State of each cell, and figures which overlap each cell (compressed rows). */
+	private final ByteBuffer states;
+	private final IntBuffer cellStart;
+	private final IntBuffer cellShapes;
+
+	/** Rings of FREE cells around each cell (0 if it is not FREE), up to MAX_RINGS. */
+	private final ByteBuffer rings;
+	private static final int MAX_RINGS = 127;
+
+	/** Creates a grid from its arrays. */
+	public OccupancyGrid(Shape[] shapes, double originX, double originY, double cellSize, int nx, int ny,
+			ByteBuffer states, ByteBuffer rings, IntBuffer cellStart, IntBuffer cellShapes) {
+		this.shapes = shapes;
+		this.originX = originX;
+		this.originY = originY;
+		this.cellSize = cellSize;
+		scale = 1 / cellSize;
+		this.nx = nx;
+		this.ny = ny;
+		this.states = states;
+		this.cellStart = cellStart;
+		this.cellShapes = cellShapes;
+		this.rings = rings;
+	}
+
+	/**
+	 * Chebyshev distance transform of the cells which are not FREE, in two
+	 * passes. Cells out of the grid have no figures, so they count as FREE.
+	 */
+	private static ByteBuffer rings(ByteBuffer states, int nx, int ny) {
+		int[] d = new int[nx * ny];
+		for (int j = 0; j < ny; j++)
+			for (int i = 0; i < nx; i++) {
+				int cell = j * nx + i;
+				if (states.get(cell) != FREE)
+					continue;
+				int v = MAX_RINGS;
+				if (i > 0)
+					v = Math.min(v, d[cell - 1] + 1);
+				if (j > 0) {
+					v = Math.min(v, d[cell - nx] + 1);
+					if (i > 0)
+						v = Math.min(v, d[cell - nx - 1] + 1);
+					if (i < nx - 1)
+						v = Math.min(v, d[cell - nx + 1] + 1);
+				}
+				d[cell] = v;
+			}
+		ByteBuffer rings = ByteBuffer.allocate(nx * ny);
+		for (int j = ny - 1; j >= 0; j--)
+			for (int i = nx - 1; i >= 0; i--) {
+				int cell = j * nx + i;
+				int v = d[cell];
+				if (v == 0)
+					continue;
+				if (i < nx - 1)
+					v = Math.min(v, d[cell + 1] + 1);
+				if (j < ny - 1) {
+					v = Math.min(v, d[cell + nx] + 1);
+					if (i < nx - 1)
+						v = Math.min(v, d[cell + nx + 1] + 1);
+					if (i > 0)
+						v = Math.min(v, d[cell + nx - 1] + 1);
+				}
+				d[cell] = v;
+				rings.put(cell, (byte) v);
+			}
+		return rings;
+	}
+
+	/** Builds the grid of a set of figures, with cells of a certain size. */
+	public static OccupancyGrid build(Shape[] shapes, double cellSize) {
+		Rectangle2D bounds = null;
+		for (Shape shape : shapes) {
+			if (bounds == null)
+				bounds = (Rectangle2D) shape.getBounds2D().clone();
+			else
+				bounds.add(shape.getBounds2D());
+		}
+		if (bounds == null)
+			bounds = new Rectangle2D.Double();
+		double originX = Math.floor(bounds.getX()), originY = Math.floor(bounds.getY());
+		int nx = Math.max(1, (int) Math.ceil((bounds.getMaxX() - originX) / cellSize));
+		int ny = Math.max(1, (int) Math.ceil((bounds.getMaxY() - originY) / cellSize));
+
+		// Each figure is only tested against the cells under its bounds. The
+		// pairs of cells and figures which overlap are kept in order of figure.
+		int nCells = nx * ny;
+		ByteBuffer states = ByteBuffer.allocate(nCells);
+		int[] pairCells = new int[16], pairShapes = new int[16];
+		int nPairs = 0;
+		for (int s = 0; s < shapes.length; s++) {
+			Rectangle2D b = shapes[s].getBounds2D();
+			int i0 = Math.max(0, (int) Math.floor((b.getMinX() - margin - originX) / cellSize) - 1);
+			int i1 = Math.min(nx - 1, (int) Math.floor((b.getMaxX() + margin - originX) / cellSize) + 1);
+			int j0 = Math.max(0, (int) Math.floor((b.getMinY() - margin - originY) / cellSize) - 1);
+			int j1 = Math.min(ny - 1, (int) Math.floor((b.getMaxY() + margin - originY) / cellSize) + 1);
+			for (int j = j0; j <= j1; j++) {
+				for (int i = i0; i <= i1; i++) {
+					int cell = j * nx + i;
+					if (states.get(cell) == BLOCKED)
+						continue;
+					double x = originX + i * cellSize - margin, y = originY + j * cellSize - margin, size = cellSize + 2 * margin;
+					if (shapes[s].contains(x, y, size, size))
+						states.put(cell, BLOCKED);
+					else if (shapes[s].intersects(x, y, size, size)) {
+						if (nPairs == pairCells.length) {
+							pairCells = java.util.Arrays.copyOf(pairCells, nPairs * 2);
+							pairShapes = java.util.Arrays.copyOf(pairShapes, nPairs * 2);
+						}
+						pairCells[nPairs] = cell;
+						pairShapes[nPairs++] = s;
+					}
+				}
+			}
+		}
+
+		// Cells which are not blocked and overlap some figure are mixed, and list those figures.
+		int[] start = new int[nCells + 1];
+		for (int k = 0; k < nPairs; k++)
+			if (states.get(pairCells[k]) != BLOCKED) {
+				states.put(pairCells[k], MIXED);
+				start[pairCells[k] + 1]++;
+			}
+		for (int cell = 0; cell < nCells; cell++)
+			start[cell + 1] += start[cell];
+		int[] list = new int[start[nCells]];
+		int[] next = java.util.Arrays.copyOf(start, nCells);
+		for (int k = 0; k < nPairs; k++)
+			if (states.get(pairCells[k]) == MIXED)
+				list[next[pairCells[k]]++] = pairShapes[k];
+		return new OccupancyGrid(shapes, originX, originY, cellSize, nx, ny, states, rings(states, nx, ny), IntBuffer.wrap(start),
+				IntBuffer.wrap(list));
+	}
+
+	/** Returns true if the point is not over any figure (the same as ShapeTrack.okay). */
+	public boolean okay(double x, double y) {
+		double fx = (x - originX) * scale, fy = (y - originY) * scale;
+		if (fx >= 0 && fy >= 0 && fx < nx && fy < ny) {
+			int cell = (int) fy * nx + (int) fx;
+			byte state = states.get(cell);
+			if (state == FREE)
+				return true;
+			if (state == BLOCKED)
+				return false;
+			int end = cellStart.get(cell + 1);
+			for (int k = cellStart.get(cell); k < end; k++)
+				if (shapes[cellShapes.get(k)].contains(x, y))
+					return false;
+			return true;
+		}
+		for (Shape shape : shapes)
+			if (shape.contains(x, y))
+				return false;
+		return true;
+	}
+
+	/**
+	 * Returns a distance from the point to the figures which is never larger
+	 * than the real one: 0 if its cell is not FREE (or it is out of the grid),
+	 * and otherwise the width of the rings of FREE cells around its cell, plus
+	 * the margin by which FREE cells are apart from the figures. So any point
+	 * closer than that is okay.
+	 */
+	public double clearance(double x, double y) {
+		double fx = (x - originX) * scale, fy = (y - originY) * scale;
+		if (fx >= 0 && fy >= 0 && fx < nx && fy < ny) {
+			int r = rings.get((int) fy * nx + (int) fx);
+			if (r > 0)
+				return (r - 1) * cellSize + margin;
+		}
+		return 0;
+	}
+
+	/** Returns true if the grid was built from certain figures (the same objects, in the same order). */
+	public boolean hasShapes(Collection<?> figures) {
+		if (figures.size() != shapes.length)
+			return false;
+		int s = 0;
+		for (Object figure : figures)
+			if (figure != shapes[s++])
+				return false;
+		return true;
+	}
+
+	/** Returns the origin of the grid. */
+	public double getOriginX() { return originX; }
+	public double getOriginY() { return originY; }
+
+	/** Returns the size of the cells. */
+	public double getCellSize() { return cellSize; }
+
+	/** Returns the number of cells in each dimension. */
+	public int getNx() { return nx; }
+	public int getNy() { return ny; }
+
+	/** Returns the state of a cell. */
+	public byte getState(int i, int j) { return states.get(j * nx + i); }
+
+	/** Buffers with the arrays of the grid (used to store it). */
+	ByteBuffer getStates() { return states; }
+	ByteBuffer getRings() { return rings; }
+	IntBuffer getCellStart() { return cellStart; }
+	IntBuffer getCellShapes() { return cellShapes; }
+}
@@ -3,6 +3,7 @@ package carracing.tracks;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.ArrayList;
+import java.util.Random;
 import java.awt.*;
 
 import carracing.utils.Vector2d;
@@ -35,6 +36,12 @@ public class ShapeTrack{
     // Distance of each aimpoint to the start line.
     protected double[] partialLenghts;
 
+    // Start-Finish line as a gate, built again if the line changes.
+    private Gate startGate;
+
+    // Occupancy grid of the figures (see getGrid), built when first needed.
+    private volatile OccupancyGrid grid;
+
     
     /** Constructor */
     public ShapeTrack() {
@@ -64,6 +71,27 @@ public class ShapeTrack{
     }
     
 
+    /**
+     * Returns an occupancy grid of the figures, which answers okay() in the
+     * same way and bounds the distance to the figures (see OccupancyGrid). It
+     * is built the first time it is needed, and again whenever the collection
+     * of figures has changed (figures added, removed or replaced, also through
+     * getShapeCollection). Figures modified in place are not detected.
+     */
+    public OccupancyGrid getGrid () {
+        OccupancyGrid grid = this.grid;
+        if (grid == null || ! grid.hasShapes (r)) {
+            // Several threads may build it at the same time, but they build the same grid.
+            Shape[] shapes = new Shape[r.size ()];
+            int n = 0;
+            for (Object shape : r)
+                shapes[n++] = (Shape) shape;
+            grid = OccupancyGrid.build (shapes, TrackCompiler.DEFAULT_CELL_SIZE);
+            this.grid = grid;
+        }
+        return grid;
+    }
+
     /** Adds a figure */
     public void add(Shape s) {
         r.add(s);
@@ -108,6 +136,16 @@ public class ShapeTrack{
         return origins;
     }
 
+    /** Gets random origin, using a certain generator (so that each thread can use its own). */
+    public double[] getRandomizedOrigins (Random random) {
+        double[] origins = new double[3];
+        origins[0] = minOriginX + (int) (random.nextDouble () * (maxOriginX - minOriginX));
+        origins[1] = minOriginY + (int) (random.nextDouble () * (maxOriginY - minOriginY));
+        origins[2] = minOriginHeading + (random.nextDouble () *
+                (maxOriginHeading - minOriginHeading));
+        return origins;
+    }
+
     /** Returns the heading in the fixed origin. */
     public double getFixedOriginHeading () {
         return fixedOriginHeading;
@@ -134,6 +172,16 @@ public class ShapeTrack{
 		return startLine;
 	}
 	
+	/** Returns the start-finish line as a gate (see Gate). */
+	public Gate getStartGate() {
+		Gate gate = startGate;
+		if (gate == null || !gate.joins(startLine[0], startLine[1])) {
+			gate = new Gate(startLine[0], startLine[1]);
+			startGate = gate;
+		}
+		return gate;
+	}
+
 	/** Returns the lenght of the track. */
 	public double getTrackLenght(){
 		return partialLenghts[aimchain.nPoints()-1];
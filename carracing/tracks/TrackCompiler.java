@@ -0,0 +1,146 @@
+package carracing.tracks;
+
+import java.awt.Polygon;
+import java.awt.Rectangle;
+import java.awt.Shape;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import carracing.utils.Vector2d;
+
+/**
+ * Compiles a track into a binary file which MappedTrack maps in memory and
+ * uses without parsing anything: the figures, the occupancy grid of the
+ * figures, the aim points and the distance to each of them, the start line
+ * and the origins.
+ *
+ * Format (big endian):
+ * 		int magic, int version
+ * 		int fixedOriginX, int fixedOriginY, double fixedOriginHeading
+ * 		int minOriginX, maxOriginX, minOriginY, maxOriginY, double minOriginHeading, maxOriginHeading
+ * 		double startLine x1, y1, x2, y2
+ * 		int nAimPoints, then x and y of each point (doubles), then the partial lengths (doubles)
+ * 		int nShapes, then each figure: int type (0 rectangle, 1 polygon), int nPoints, int coordinates
+ * 		double originX, originY, cellSize, int nx, ny, int nCellShapes
+ * 		nx * ny bytes with the states of the cells (padded to a multiple of 4)
+ * 		nx * ny bytes with the rings of FREE cells around the cells (padded to a multiple of 4)
+ * 		nx * ny + 1 ints with the start of each cell, nCellShapes ints with the figures of the cells
+ */
+public class TrackCompiler {
+
+	/** Identifies compiled tracks. */
+	static final int MAGIC = 0x43545231;
+	static final int VERSION = 2;
+
+	/** Types of figures. */
+	static final int RECTANGLE = 0;
+	static final int POLYGON = 1;
+
+	/** Default size of the cells of the occupancy grid. */
+	public static final double DEFAULT_CELL_SIZE = 8;
+
+	/** Compiles a track into a file. */
+	public static void compile(ShapeTrack track, File file, double cellSize) throws IOException {
+		Shape[] shapes = shapes(track);
+		OccupancyGrid grid = OccupancyGrid.build(shapes, cellSize);
+		AimChain aimChain = track.getAimchain();
+		int nAimPoints = aimChain.nPoints();
+		int nCells = grid.getNx() * grid.getNy();
+		int nCellShapes = grid.getCellShapes().limit();
+
+		// Size of the file.
+		long length = 4 * 4 + 8 + 4 * 4 + 2 * 8 + 4 * 8 + 4 + nAimPoints * 3 * 8 + 4;
+		for (Shape shape : shapes)
+			length += 8 + (shape instanceof Rectangle ? 4 * 4 : ((Polygon) shape).npoints * 2 * 4);
+		length += 3 * 8 + 3 * 4 + 2 * padded(nCells) + (nCells + 1) * 4 + nCellShapes * 4;
+
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			raf.setLength(0);
+			MappedByteBuffer out = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, length);
+			out.putInt(0).putInt(VERSION);
+			out.putInt(track.getFixedOriginX()).putInt(track.getFixedOriginY()).putDouble(track.getFixedOriginHeading());
+			out.putInt(track.minOriginX).putInt(track.maxOriginX).putInt(track.minOriginY).putInt(track.maxOriginY);
+			out.putDouble(track.minOriginHeading).putDouble(track.maxOriginHeading);
+			Vector2d[] line = track.getStartLine();
+			out.putDouble(line[0].x).putDouble(line[0].y).putDouble(line[1].x).putDouble(line[1].y);
+
+			out.putInt(nAimPoints);
+			for (int k = 0; k < nAimPoints; k++)
+				out.putDouble(aimChain.getPoint(k).x).putDouble(aimChain.getPoint(k).y);
+			for (int k = 0; k < nAimPoints; k++)
+				out.putDouble(track.getLengthToPoint(k));
+
+			out.putInt(shapes.length);
+			for (Shape shape : shapes) {
+				if (shape instanceof Rectangle) {
+					Rectangle r = (Rectangle) shape;
+					out.putInt(RECTANGLE).putInt(2).putInt(r.x).putInt(r.y).putInt(r.width).putInt(r.height);
+				}
+				else {
+					Polygon p = (Polygon) shape;
+					out.putInt(POLYGON).putInt(p.npoints);
+					for (int k = 0; k < p.npoints; k++)
+						out.putInt(p.xpoints[k]).putInt(p.ypoints[k]);
+				}
+			}
+
+			out.putDouble(grid.getOriginX()).putDouble(grid.getOriginY()).putDouble(grid.getCellSize());
+			out.putInt(grid.getNx()).putInt(grid.getNy()).putInt(nCellShapes);
+			for (int c = 0; c < nCells; c++)
+				out.put(grid.getStates().get(c));
+			for (int c = nCells; c < padded(nCells); c++)
+				out.put((byte) 0);
+			for (int c = 0; c < nCells; c++)
+				out.put(grid.getRings().get(c));
+			for (int c = nCells; c < padded(nCells); c++)
+				out.put((byte) 0);
+			for (int c = 0; c <= nCells; c++)
+				out.putInt(grid.getCellStart().get(c));
+			for (int k = 0; k < nCellShapes; k++)
+				out.putInt(grid.getCellShapes().get(k));
+
+			// The magic number is written at the end, so that incomplete files are rejected.
+			out.putInt(0, MAGIC);
+			out.force();
+		} finally {
+			raf.close();
+		}
+	}
+
+	/** Returns the figures of a track, checking that they can be compiled. */
+	static Shape[] shapes(ShapeTrack track) {
+		Shape[] shapes = new Shape[track.getShapeCollection().size()];
+		int n = 0;
+		for (Object figure : track.getShapeCollection()) {
+			Shape shape = (Shape) figure;
+			if (!(shape instanceof Rectangle) && !(shape instanceof Polygon))
+				throw new IllegalArgumentException("Figures of type " + shape.getClass().getName() + " can not be compiled.");
+			shapes[n++] = shape;
+		}
+		return shapes;
+	}
+
+	/** Rounds a number of bytes up to a multiple of 4. */
+	static int padded(int bytes) {
+		return (bytes + 3) & ~3;
+	}
+
+	/**
+	 * Compiles a track, given either as a text file (see TrackFormat) or as
+	 * the name of a class, into a binary file. Optionally takes the size of
+	 * the cells of the occupancy grid.
+	 *
+	 * Example:
+	 * 				java carracing.tracks.TrackCompiler tracks/Track2.track tracks/Track2.ctrack
+	 */
+	public static void main(String[] args) throws Exception {
+		ShapeTrack track = TrackLoader.getTrack(args[0].endsWith(".track") ? args[0] : "carracing.tracks." + args[0]);
+		double cellSize = args.length > 2 ? Double.parseDouble(args[2]) : DEFAULT_CELL_SIZE;
+		compile(track, new File(args[1]), cellSize);
+		System.out.println(args[0] + " compiled into " + args[1] + ".");
+	}
+}
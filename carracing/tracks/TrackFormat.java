@@ -0,0 +1,187 @@
+package carracing.tracks;
+
+import java.awt.Polygon;
+import java.awt.Rectangle;
+import java.awt.Shape;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+
+import carracing.utils.Vector2d;
+
+/**
+ * Reads and writes tracks in a declarative text format, one element per line:
+ *
+ * 		# Comment
+ * 		rect x y width height
+ * 		polygon x1 y1 x2 y2 x3 y3 ...
+ * 		origin x y heading
+ * 		randomorigin minX maxX minY maxY minHeading maxHeading
+ * 		aim x y
+ * 		startline x1 y1 x2 y2
+ *
+ * Figures (rectangles and polygons, with integer coordinates) are the parts
+ * of the window which can not be transited. Aim points are listed in order,
+ * and the last one must be in the start line. Angles can be written as
+ * numbers or as products and quotients of numbers and pi (for example pi/2
+ * or 2*pi/3, evaluated from left to right).
+ *
+ * The tracks which are read are plain ShapeTracks. TrackCompiler turns them
+ * into binary files which load faster (see MappedTrack).
+ */
+public class TrackFormat {
+
+	/** Reads a track from a text file. */
+	public static ShapeTrack read(File file) throws IOException {
+		ShapeTrack track = new ShapeTrack();
+		ArrayList<Vector2d> aimPoints = new ArrayList<Vector2d>();
+		boolean hasOrigin = false, hasStartLine = false;
+		BufferedReader in = new BufferedReader(new FileReader(file));
+		try {
+			String line;
+			int nLine = 0;
+			while ((line = in.readLine()) != null) {
+				nLine++;
+				int comment = line.indexOf('#');
+				if (comment >= 0)
+					line = line.substring(0, comment);
+				String[] tokens = line.trim().split("\\s+");
+				if (tokens[0].isEmpty())
+					continue;
+				try {
+					String element = tokens[0];
+					if (element.equals("rect")) {
+						expect(tokens, 4);
+						track.add(new Rectangle(integer(tokens[1]), integer(tokens[2]), integer(tokens[3]), integer(tokens[4])));
+					}
+					else if (element.equals("polygon")) {
+						if (tokens.length < 7 || tokens.length % 2 == 0)
+							throw new IllegalArgumentException("a polygon needs at least three points");
+						Polygon polygon = new Polygon();
+						for (int i = 1; i < tokens.length; i += 2)
+							polygon.addPoint(integer(tokens[i]), integer(tokens[i + 1]));
+						track.add(polygon);
+					}
+					else if (element.equals("origin")) {
+						expect(tokens, 3);
+						track.setFixedOrigins(integer(tokens[1]), integer(tokens[2]), number(tokens[3]));
+						hasOrigin = true;
+					}
+					else if (element.equals("randomorigin")) {
+						expect(tokens, 6);
+						track.setRandomOriginParameters(integer(tokens[1]), integer(tokens[2]), integer(tokens[3]), integer(tokens[4]),
+								number(tokens[5]), number(tokens[6]));
+					}
+					else if (element.equals("aim")) {
+						expect(tokens, 2);
+						aimPoints.add(new Vector2d(number(tokens[1]), number(tokens[2])));
+					}
+					else if (element.equals("startline")) {
+						expect(tokens, 4);
+						track.startLine[0] = new Vector2d(number(tokens[1]), number(tokens[2]));
+						track.startLine[1] = new Vector2d(number(tokens[3]), number(tokens[4]));
+						hasStartLine = true;
+					}
+					else
+						throw new IllegalArgumentException("unknown element " + element);
+				} catch (IllegalArgumentException e) {
+					throw new IOException(file + ", line " + nLine + ": " + e.getMessage());
+				}
+			}
+		} finally {
+			in.close();
+		}
+		if (aimPoints.size() < 2 || !hasOrigin || !hasStartLine)
+			throw new IOException(file + ": a track needs an origin, a start line and at least two aim points.");
+		track.setAimchain(new AimChain(aimPoints.toArray(new Vector2d[aimPoints.size()])));
+		return track;
+	}
+
+	/**
+	 * Writes a track into a text file. Numbers are written so that they are
+	 * read back exactly. Only rectangles and polygons can be written.
+	 */
+	public static void write(ShapeTrack track, File file) throws IOException {
+		PrintWriter out = new PrintWriter(file);
+		try {
+			out.println("# " + track.getClass().getSimpleName());
+			for (Object figure : track.getShapeCollection()) {
+				Shape shape = (Shape) figure;
+				if (shape instanceof Rectangle) {
+					Rectangle r = (Rectangle) shape;
+					out.println("rect " + r.x + " " + r.y + " " + r.width + " " + r.height);
+				}
+				else if (shape instanceof Polygon) {
+					Polygon p = (Polygon) shape;
+					StringBuilder line = new StringBuilder("polygon");
+					for (int k = 0; k < p.npoints; k++)
+						line.append(' ').append(p.xpoints[k]).append(' ').append(p.ypoints[k]);
+					out.println(line);
+				}
+				else
+					throw new IOException("Figures of type " + shape.getClass().getName() + " can not be written.");
+			}
+			out.println("origin " + track.getFixedOriginX() + " " + track.getFixedOriginY() + " " + track.getFixedOriginHeading());
+			out.println("randomorigin " + track.minOriginX + " " + track.maxOriginX + " " + track.minOriginY + " " + track.maxOriginY
+					+ " " + track.minOriginHeading + " " + track.maxOriginHeading);
+			AimChain aimChain = track.getAimchain();
+			for (int k = 0; k < aimChain.nPoints(); k++)
+				out.println("aim " + aimChain.getPoint(k).x + " " + aimChain.getPoint(k).y);
+			Vector2d[] line = track.getStartLine();
+			out.println("startline " + line[0].x + " " + line[0].y + " " + line[1].x + " " + line[1].y);
+		} finally {
+			out.close();
+		}
+		if (out.checkError())
+			throw new IOException("The track can not be written into " + file + ".");
+	}
+
+	/** Checks the number of values of an element. */
+	private static void expect(String[] tokens, int nValues) {
+		if (tokens.length != nValues + 1)
+			throw new IllegalArgumentException(tokens[0] + " needs " + nValues + " values");
+	}
+
+	/** Parses an integer. */
+	private static int integer(String token) {
+		return Integer.parseInt(token);
+	}
+
+	/** Parses a number, which can be a product or quotient of numbers and pi. */
+	private static double number(String token) {
+		double value = 0;
+		char operator = '*';
+		int start = 0;
+		for (int i = 0; i <= token.length(); i++) {
+			if (i == token.length() || ((token.charAt(i) == '*' || token.charAt(i) == '/') && i > start)) {
+				String factor = token.substring(start, i);
+				double f = factor.equals("pi") ? Math.PI : factor.equals("-pi") ? -Math.PI : Double.parseDouble(factor);
+				if (start == 0)
+					value = f;
+				else if (operator == '*')
+					value *= f;
+				else
+					value /= f;
+				if (i < token.length())
+					operator = token.charAt(i);
+				start = i + 1;
+			}
+		}
+		return value;
+	}
+
+	/**
+	 * Writes a track implemented as a class into a text file.
+	 *
+	 * Example:
+	 * 				java carracing.tracks.TrackFormat Track2 tracks/Track2.track
+	 */
+	public static void main(String[] args) throws Exception {
+		ShapeTrack track = TrackLoader.getTrack("carracing.tracks." + args[0]);
+		write(track, new File(args[1]));
+		System.out.println(args[0] + " written into " + args[1] + ".");
+	}
+}
@@ -0,0 +1,293 @@
+package carracing.tracks;
+
+import java.awt.Polygon;
+import java.io.File;
+import java.util.Random;
+
+import carracing.utils.Vector2d;
+
+/**
+ * Generates closed tracks procedurally, so that the simulation and the
+ * searches can be tested on tracks of any size and complexity.
+ *
+ * The centre of the track is a closed curve: an ellipse filling the area,
+ * whose radius is perturbed by a few random harmonics (the curvature sets
+ * their amplitude, and they are reduced if the track would overlap
+ * itself). The curve is divided into segments of equal length, and
+ * each segment gets a wall (a quadrilateral) at each side. Walls of
+ * consecutive segments share their vertices, so there are no gaps between
+ * them. Shorter segments give more figures: a large area with short
+ * segments gives tens of thousands of them. Obstacles are quadrilaterals
+ * attached to one of the walls, covering at most a third of the width of
+ * the track, so the centre of the track is always free.
+ *
+ * Aim points are placed on the centre of the track, the last one on the
+ * start line, which crosses the track at the first point of the curve. The
+ * car starts a bit before it, heading along the track. The same seed and
+ * parameters always give the same track.
+ */
+public class TrackGenerator {
+
+	/** Random number generator. */
+	private final Random random;
+
+	/** Size of the area. */
+	private int width = 1040, height = 640;
+
+	/** Width of the track and thickness of its walls. */
+	private double trackWidth = 120, wallThickness = 20;
+
+	/** Amplitude of the perturbations of the radius (0 gives an ellipse). */
+	private double curvature = 0.25;
+
+	/** Number of obstacles. */
+	private int obstacles = 0;
+
+	/** Length of the segments of the walls, and distance between aim points. */
+	private double segmentLength = 40, aimSpacing = 150;
+
+	/** Creates a generator with a certain seed. */
+	public TrackGenerator(long seed) {
+		random = new Random(seed);
+	}
+
+	/** Sets the size of the area. */
+	public void setSize(int width, int height) {
+		this.width = width;
+		this.height = height;
+	}
+
+	/** Sets the width of the track. */
+	public void setTrackWidth(double trackWidth) {
+		this.trackWidth = trackWidth;
+	}
+
+	/** Sets the thickness of the walls (which must be larger than the distance the car advances in a step). */
+	public void setWallThickness(double wallThickness) {
+		this.wallThickness = wallThickness;
+	}
+
+	/**
+	 * Sets the curvature, between 0 (an ellipse) and 1. Curves too sharp for
+	 * the width of the track are smoothed.
+	 */
+	public void setCurvature(double curvature) {
+		if (curvature < 0 || curvature > 1)
+			throw new IllegalArgumentException("The curvature must be between 0 and 1.");
+		this.curvature = curvature;
+	}
+
+	/** Sets the number of obstacles. */
+	public void setObstacles(int obstacles) {
+		this.obstacles = obstacles;
+	}
+
+	/** Sets the length of the segments of the walls. */
+	public void setSegmentLength(double segmentLength) {
+		this.segmentLength = segmentLength;
+	}
+
+	/** Sets the distance between aim points. */
+	public void setAimSpacing(double aimSpacing) {
+		this.aimSpacing = aimSpacing;
+	}
+
+	/** Generates a track. */
+	public ShapeTrack generate() {
+		ShapeTrack track = new ShapeTrack();
+
+		// Centre of the track, and direction and normal at each point.
+		double[][] centre = centreLine();
+		double[] x = centre[0], y = centre[1];
+		int n = x.length;
+		double[] tx = new double[n], ty = new double[n];
+		for (int i = 0; i < n; i++) {
+			double dx = x[(i + 1) % n] - x[(i + n - 1) % n];
+			double dy = y[(i + 1) % n] - y[(i + n - 1) % n];
+			double length = Math.sqrt(dx * dx + dy * dy);
+			tx[i] = dx / length;
+			ty[i] = dy / length;
+		}
+
+		// Walls at both sides.
+		for (int side = -1; side <= 1; side += 2) {
+			int[] innerX = new int[n], innerY = new int[n], outerX = new int[n], outerY = new int[n];
+			for (int i = 0; i < n; i++) {
+				double nx = -ty[i] * side, ny = tx[i] * side;
+				innerX[i] = (int) Math.round(x[i] + nx * trackWidth / 2);
+				innerY[i] = (int) Math.round(y[i] + ny * trackWidth / 2);
+				outerX[i] = (int) Math.round(x[i] + nx * (trackWidth / 2 + wallThickness));
+				outerY[i] = (int) Math.round(y[i] + ny * (trackWidth / 2 + wallThickness));
+			}
+			for (int i = 0; i < n; i++) {
+				int j = (i + 1) % n;
+				track.add(new Polygon(new int[] {innerX[i], innerX[j], outerX[j], outerX[i]},
+						new int[] {innerY[i], innerY[j], outerY[j], outerY[i]}, 4));
+			}
+		}
+
+		// Obstacles, attached to a wall and away from the start.
+		int margin = Math.max(1, (int) Math.ceil(2 * aimSpacing / segmentLength));
+		for (int k = 0; k < obstacles && n > 2 * margin; k++) {
+			int i = margin + random.nextInt(n - 2 * margin);
+			int side = random.nextBoolean() ? 1 : -1;
+			double depth = trackWidth * (1 + random.nextDouble()) / 6;
+			double length = segmentLength * (0.5 + random.nextDouble());
+			double nx = -ty[i] * side, ny = tx[i] * side;
+			double wallX = x[i] + nx * trackWidth / 2, wallY = y[i] + ny * trackWidth / 2;
+			double innerX = x[i] + nx * (trackWidth / 2 - depth), innerY = y[i] + ny * (trackWidth / 2 - depth);
+			double ax = tx[i] * length / 2, ay = ty[i] * length / 2;
+			track.add(new Polygon(
+					new int[] {(int) Math.round(wallX - ax), (int) Math.round(wallX + ax), (int) Math.round(innerX + ax), (int) Math.round(innerX - ax)},
+					new int[] {(int) Math.round(wallY - ay), (int) Math.round(wallY + ay), (int) Math.round(innerY + ay), (int) Math.round(innerY - ay)}, 4));
+		}
+
+		// Aim points along the centre. The last one is the first point of the curve, on the start line.
+		int step = Math.max(1, (int) Math.round(aimSpacing / segmentLength));
+		int nAimPoints = Math.max(2, n / step);
+		Vector2d[] points = new Vector2d[nAimPoints];
+		for (int k = 0; k < nAimPoints; k++) {
+			int i = (int) ((long) (k + 1) * n / nAimPoints) % n;
+			points[k] = new Vector2d(Math.round(x[i]), Math.round(y[i]));
+		}
+		track.setAimchain(new AimChain(points));
+
+		// Start line across the track at the first point.
+		double nx = -ty[0], ny = tx[0];
+		track.startLine[0] = new Vector2d(Math.round(x[0] - nx * trackWidth / 2), Math.round(y[0] - ny * trackWidth / 2));
+		track.startLine[1] = new Vector2d(Math.round(x[0] + nx * trackWidth / 2), Math.round(y[0] + ny * trackWidth / 2));
+
+		// The car starts before the start line, heading along the track.
+		int before = (n - Math.max(1, (int) Math.round(aimSpacing / 2 / segmentLength))) % n;
+		double heading = Math.atan2(ty[before], tx[before]);
+		track.setFixedOrigins((int) Math.round(x[before]), (int) Math.round(y[before]), heading);
+		int spread = (int) (trackWidth / 4);
+		track.setRandomOriginParameters((int) Math.round(x[before]) - spread, (int) Math.round(x[before]) + spread,
+				(int) Math.round(y[before]) - spread, (int) Math.round(y[before]) + spread, heading - 0.3, heading + 0.3);
+		return track;
+	}
+
+	/**
+	 * Returns the points of the centre of the track, at equal distances
+	 * ([0] are the x coordinates and [1] the y coordinates).
+	 */
+	private double[][] centreLine() {
+		// Random harmonics of the radius.
+		int nHarmonics = 5;
+		double[] amplitudes = new double[nHarmonics], phases = new double[nHarmonics];
+		for (int h = 0; h < nHarmonics; h++) {
+			amplitudes[h] = curvature * random.nextDouble() / (h + 1);
+			phases[h] = random.nextDouble() * 2 * Math.PI;
+		}
+
+		// Samples the curve densely, reducing the harmonics until the walls do not overlap.
+		int nSamples = 4096;
+		double[] sx = new double[nSamples + 1], sy = new double[nSamples + 1], distance = new double[nSamples + 1];
+		for (int attempt = 0; ; attempt++) {
+			sample(amplitudes, phases, sx, sy, distance);
+			if (fits(sx, sy, distance))
+				break;
+			if (attempt == 50)
+				throw new IllegalArgumentException("The area is too small for a track of this width.");
+			for (int h = 0; h < nHarmonics; h++)
+				amplitudes[h] *= 0.8;
+		}
+
+		// Points at equal distances along the curve.
+		int n = Math.max(8, (int) Math.round(distance[nSamples] / segmentLength));
+		double[][] points = new double[2][n];
+		int s = 0;
+		for (int i = 0; i < n; i++) {
+			double d = distance[nSamples] * i / n;
+			while (distance[s + 1] < d)
+				s++;
+			double f = (d - distance[s]) / (distance[s + 1] - distance[s]);
+			points[0][i] = sx[s] + (sx[s + 1] - sx[s]) * f;
+			points[1][i] = sy[s] + (sy[s + 1] - sy[s]) * f;
+		}
+		return points;
+	}
+
+	/**
+	 * Samples the curve given by some harmonics of the radius, normalizing
+	 * it so that the track fits in the area. The last sample is the first
+	 * one again, and distance holds the length of the curve up to each one.
+	 */
+	private void sample(double[] amplitudes, double[] phases, double[] sx, double[] sy, double[] distance) {
+		int nSamples = sx.length - 1;
+		double[] radius = new double[nSamples];
+		double maxRadius = 0;
+		for (int s = 0; s < nSamples; s++) {
+			double angle = 2 * Math.PI * s / nSamples;
+			radius[s] = 1;
+			for (int h = 0; h < amplitudes.length; h++)
+				radius[s] += amplitudes[h] * Math.cos((h + 2) * angle + phases[h]);
+			maxRadius = Math.max(maxRadius, radius[s]);
+		}
+		double border = trackWidth / 2 + wallThickness + 1;
+		double cx = width / 2.0, cy = height / 2.0;
+		double rx = (width / 2.0 - border) / maxRadius, ry = (height / 2.0 - border) / maxRadius;
+		for (int s = 0; s <= nSamples; s++) {
+			double angle = 2 * Math.PI * s / nSamples;
+			sx[s] = cx + rx * radius[s % nSamples] * Math.cos(angle);
+			sy[s] = cy + ry * radius[s % nSamples] * Math.sin(angle);
+			if (s > 0)
+				distance[s] = distance[s - 1] + Math.hypot(sx[s] - sx[s - 1], sy[s] - sy[s - 1]);
+		}
+	}
+
+	/**
+	 * Checks that the walls built around a curve do not overlap: the curve
+	 * can not turn more sharply than the distance from its centre to the
+	 * outside of the walls, and distant parts of it can not come closer than
+	 * twice that distance.
+	 */
+	private boolean fits(double[] sx, double[] sy, double[] distance) {
+		int nSamples = sx.length - 1;
+		double clearance = trackWidth / 2 + wallThickness;
+		double length = distance[nSamples];
+		for (int s = 0; s < nSamples; s++) {
+			int p = (s + nSamples - 1) % nSamples, q = s + 1;
+			double ax = sx[s] - sx[p], ay = sy[s] - sy[p], bx = sx[q] - sx[s], by = sy[q] - sy[s];
+			double turn = Math.abs(Math.atan2(ax * by - ay * bx, ax * bx + ay * by));
+			double step = (Math.hypot(ax, ay) + Math.hypot(bx, by)) / 2;
+			if (turn * clearance > step)
+				return false;
+		}
+		// Distant parts, using every 8th sample.
+		for (int s = 0; s < nSamples; s += 8)
+			for (int t = s + 8; t < nSamples; t += 8) {
+				double along = distance[t] - distance[s];
+				if (Math.min(along, length - along) > Math.PI * clearance
+						&& Math.hypot(sx[t] - sx[s], sy[t] - sy[s]) < 2 * clearance)
+					return false;
+			}
+		return true;
+	}
+
+	/**
+	 * Generates a track and writes it, either as text (.track) or compiled
+	 * (.ctrack). Takes the seed, the size of the area, the width of the
+	 * track, the curvature, the number of obstacles, the length of the
+	 * segments of the walls and the name of the file.
+	 *
+	 * Example:
+	 * 				java carracing.tracks.TrackGenerator 1 40000 30000 150 0.5 2000 8 big.ctrack
+	 */
+	public static void main(String[] args) throws Exception {
+		TrackGenerator generator = new TrackGenerator(Long.parseLong(args[0]));
+		generator.setSize(Integer.parseInt(args[1]), Integer.parseInt(args[2]));
+		generator.setTrackWidth(Double.parseDouble(args[3]));
+		generator.setCurvature(Double.parseDouble(args[4]));
+		generator.setObstacles(Integer.parseInt(args[5]));
+		generator.setSegmentLength(Double.parseDouble(args[6]));
+		ShapeTrack track = generator.generate();
+		File file = new File(args[7]);
+		if (args[7].endsWith(".ctrack"))
+			TrackCompiler.compile(track, file, TrackCompiler.DEFAULT_CELL_SIZE);
+		else
+			TrackFormat.write(track, file);
+		System.out.println("Track with " + track.getShapeCollection().size() + " figures and "
+				+ track.getAimchain().nPoints() + " aim points written into " + args[7] + ".");
+	}
+}
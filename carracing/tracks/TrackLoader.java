@@ -1,22 +1,37 @@
 package carracing.tracks;
 
+import java.io.File;
+
 /**
  * Builds a ShapeTrack given its name.
  */
 
 public class TrackLoader {
+
+	/** Prefix added by most callers to the name of the track. */
+	private static final String PACKAGE = "carracing.tracks.";
+
 	/**
 	 * Takes the name of a class extending the class ShapeTrack and
-	 * returns an instance of the object.
+	 * returns an instance of the object. Also takes names of files: text
+	 * tracks (.track, see TrackFormat) and compiled tracks (.ctrack, see
+	 * TrackCompiler), with or without the name of this package before them.
 	 */
 	public static ShapeTrack getTrack(String trackName){
 		try{
+			String fileName = trackName.startsWith(PACKAGE) ? trackName.substring(PACKAGE.length()) : trackName;
+			if (fileName.endsWith(".ctrack"))
+				return new MappedTrack(new File(fileName));
+			if (fileName.endsWith(".track"))
+				return TrackFormat.read(new File(fileName));
 			Class trackType = Class.forName(trackName);
 			ShapeTrack track = (ShapeTrack) trackType.newInstance();
 			return track;
 		}
 		catch (Exception E){
 			System.out.println("The track "+trackName+" can't be built.");
+			if (E.getMessage() != null)
+				System.out.println(E.getMessage());
 			System.exit(-1);
 		}
 		return null;
@@ -0,0 +1,113 @@
+package carracing.utils;
+
+/**
+ * Approximations of the trigonometric functions used by the simulation,
+ * faster than those of java.lang.Math:
+ *
+ * 		sin, cos: table of 4096 values per turn, linearly interpolated.
+ * 		          Absolute error below 3e-7.
+ * 		atan:     reduced to |x| <= tan(pi/12) and evaluated with five terms
+ * 		          of its series. Absolute error below 1e-7 radians.
+ * 		atan2:    built on atan, with the same bound, and the same values as
+ * 		          Math.atan2 on the axes.
+ *
+ * The bounds are checked by main(), which samples the functions densely.
+ */
+public final class FastMath {
+
+	/** Number of values of the table per turn (a power of two). */
+	private static final int SIZE = 4096;
+
+	/** Values of the sine, with an extra one at the end for the interpolation. */
+	private static final double[] SIN = new double[SIZE + 1];
+
+	/** Converts radians into positions of the table. */
+	private static final double SCALE = SIZE / (2 * Math.PI);
+
+	/** Constants of the reduction of atan. */
+	private static final double TAN_PI_12 = 2 - Math.sqrt(3);
+	private static final double SQRT_3 = Math.sqrt(3);
+
+	static {
+		for (int i = 0; i <= SIZE; i++)
+			SIN[i] = Math.sin(i / SCALE);
+	}
+
+	private FastMath() {
+	}
+
+	/** Sine. */
+	public static double sin(double a) {
+		return lookup(a * SCALE);
+	}
+
+	/** Cosine. */
+	public static double cos(double a) {
+		return lookup(a * SCALE + SIZE / 4);
+	}
+
+	/** Interpolates the table at a position (in units of the table, any sign). */
+	private static double lookup(double position) {
+		double floor = Math.floor(position);
+		int i = (int) (long) floor & (SIZE - 1);
+		double f = position - floor;
+		return SIN[i] + (SIN[i + 1] - SIN[i]) * f;
+	}
+
+	/** Arc tangent. */
+	public static double atan(double x) {
+		if (x != x)
+			return x;
+		boolean negative = x < 0;
+		if (negative)
+			x = -x;
+		// atan(x) = pi/2 - atan(1/x)
+		boolean inverted = x > 1;
+		if (inverted)
+			x = 1 / x;
+		// atan(x) = pi/6 + atan((x*sqrt(3) - 1) / (x + sqrt(3)))
+		boolean shifted = x > TAN_PI_12;
+		if (shifted)
+			x = (x * SQRT_3 - 1) / (x + SQRT_3);
+		double x2 = x * x;
+		double result = x * (1 + x2 * (-1.0 / 3 + x2 * (1.0 / 5 + x2 * (-1.0 / 7 + x2 * (1.0 / 9)))));
+		if (shifted)
+			result += Math.PI / 6;
+		if (inverted)
+			result = Math.PI / 2 - result;
+		return negative ? -result : result;
+	}
+
+	/** Arc tangent of y/x, in the quadrant of the point (x, y). */
+	public static double atan2(double y, double x) {
+		if (x == 0 || y == 0 || x != x || y != y)
+			return Math.atan2(y, x);
+		double a = atan(y / x);
+		if (x > 0)
+			return a;
+		return a + Math.copySign(Math.PI, y);
+	}
+
+	/**
+	 * Prints the largest error of each function, sampling them densely.
+	 *
+	 * Example:
+	 * 				java carracing.utils.FastMath
+	 */
+	public static void main(String[] args) {
+		double sinError = 0, cosError = 0, atanError = 0, atan2Error = 0;
+		for (int i = -4000000; i <= 4000000; i++) {
+			double a = i * (4 * Math.PI / 4000000) + 1e-7;
+			sinError = Math.max(sinError, Math.abs(sin(a) - Math.sin(a)));
+			cosError = Math.max(cosError, Math.abs(cos(a) - Math.cos(a)));
+			double x = Math.tan(a / 4.0001);
+			atanError = Math.max(atanError, Math.abs(atan(x) - Math.atan(x)));
+			double px = Math.cos(a) * (1 + i % 7), py = Math.sin(a) * (1 + i % 7);
+			atan2Error = Math.max(atan2Error, Math.abs(atan2(py, px) - Math.atan2(py, px)));
+		}
+		System.out.println("Maximum absolute error of sin:   " + sinError);
+		System.out.println("Maximum absolute error of cos:   " + cosError);
+		System.out.println("Maximum absolute error of atan:  " + atanError);
+		System.out.println("Maximum absolute error of atan2: " + atan2Error);
+	}
+}
@@ -0,0 +1,122 @@
+package carracing.utils;
+
+import java.util.Arrays;
+
+/**
+ * Uniform spatial hash of moving points (such as cars), rebuilt from their
+ * coordinates whenever they move. The plane is divided in square cells, and
+ * the cells are hashed into a table of buckets, so that the memory does not
+ * depend on how far the points are from each other. Building takes linear
+ * time (a counting sort), and the points closer to a given one than the size
+ * of the cells are in the buckets of the 3x3 cells around it.
+ *
+ * Different cells can share a bucket, so the points of a bucket must still
+ * be tested. Buckets are kept as in AimChainIndex: the points of bucket b
+ * are getPoint(k) for k from bucketStart(b) to bucketEnd(b) (excluded).
+ */
+public final class SpatialHash {
+
+	/** Size of the cells. */
+	private final double cellSize;
+
+	/** Number of buckets (a power of two) minus one. */
+	private final int mask;
+
+	/** First position of each bucket in points (and, at the end, the total). */
+	private final int[] bucketStart;
+
+	/** Points sorted by bucket, and the bucket of each point. */
+	private final int[] points;
+	private final int[] bucketOf;
+
+	/** Creates a hash for up to capacity points, with a certain size of the cells. */
+	public SpatialHash(double cellSize, int capacity) {
+		this.cellSize = cellSize;
+		int buckets = Integer.highestOneBit(Math.max(2 * capacity - 1, 1)) * 2;
+		mask = buckets - 1;
+		bucketStart = new int[buckets + 1];
+		points = new int[capacity];
+		bucketOf = new int[capacity];
+	}
+
+	/** Returns the size of the cells. */
+	public double getCellSize() {
+		return cellSize;
+	}
+
+	/**
+	 * Puts the points 0 to n-1 in the buckets, leaving out those which are not
+	 * active (if active is not null).
+	 */
+	public void build(double[] x, double[] y, boolean[] active, int n) {
+		int buckets = mask + 1;
+		Arrays.fill(bucketStart, 0);
+		int count = 0;
+		for (int i = 0; i < n; i++) {
+			if (active != null && !active[i]) {
+				bucketOf[i] = -1;
+				continue;
+			}
+			int b = bucket(cell(x[i]), cell(y[i]));
+			bucketOf[i] = b;
+			bucketStart[b + 1]++;
+			count++;
+		}
+		for (int b = 0; b < buckets; b++)
+			bucketStart[b + 1] += bucketStart[b];
+		// Fills each bucket backwards from its end, so that points keep their order,
+		// and then the ends (moved to the starts) are shifted back.
+		for (int i = n - 1; i >= 0; i--) {
+			int b = bucketOf[i];
+			if (b >= 0)
+				points[--bucketStart[b + 1]] = i;
+		}
+		for (int b = 0; b < buckets; b++)
+			bucketStart[b] = bucketStart[b + 1];
+		bucketStart[buckets] = count;
+	}
+
+	/** Returns the cell of a coordinate. */
+	public int cell(double v) {
+		return (int) Math.floor(v / cellSize);
+	}
+
+	/** Returns the bucket of a cell. */
+	public int bucket(int cx, int cy) {
+		return (cx * 73856093 ^ cy * 19349663) & mask;
+	}
+
+	/**
+	 * Stores in buckets the distinct buckets of the 3x3 cells around a point,
+	 * and returns how many there are (at most 9).
+	 */
+	public int neighbourBuckets(double x, double y, int[] buckets) {
+		int cx = cell(x), cy = cell(y);
+		int n = 0;
+		for (int dx = -1; dx <= 1; dx++)
+			for (int dy = -1; dy <= 1; dy++) {
+				int b = bucket(cx + dx, cy + dy);
+				boolean repeated = false;
+				for (int k = 0; k < n && !repeated; k++)
+					repeated = buckets[k] == b;
+				if (!repeated)
+					buckets[n++] = b;
+			}
+		return n;
+	}
+
+	/** Returns the first position of a bucket. */
+	public int bucketStart(int b) {
+		return bucketStart[b];
+	}
+
+	/** Returns the position after the last one of a bucket. */
+	public int bucketEnd(int b) {
+		return bucketStart[b + 1];
+	}
+
+	/** Returns the point at a position of the buckets. */
+	public int getPoint(int k) {
+		return points[k];
+	}
+}
@@ -0,0 +1,29 @@
+package metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counter which can be incremented by many threads at the same time. It is
+ * striped (each thread tends to update its own cell), so threads do not
+ * compete for the same memory position.
+ */
+public class Counter {
+	
+	/** Cells of the counter. */
+	private final LongAdder adder = new LongAdder();
+	
+	/** Adds one. */
+	public void increment(){
+		adder.increment();
+	}
+	
+	/** Adds a certain amount. */
+	public void add(long amount){
+		adder.add(amount);
+	}
+	
+	/** Returns the current value. */
+	public long get(){
+		return adder.sum();
+	}
+}
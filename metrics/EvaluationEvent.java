@@ -0,0 +1,44 @@
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event covering the simulation of a controller in a track
+ * (ControllerEvaluation.evaluate()). Disabled by default (see search.jfc).
+ */
+@Name("metrics.Evaluation")
+@Label("Controller Evaluation")
+@Category({"Car Racing"})
+@Description("The simulation of a controller in a track")
+@Enabled(false)
+public class EvaluationEvent extends jdk.jfr.Event {
+
+	@Label("Track")
+	public String track;
+
+	@Label("Controller")
+	public String controller;
+
+	@Label("Steps")
+	@Description("Physics steps simulated")
+	public int steps;
+
+	@Label("Lap Finished")
+	public boolean lapFinished;
+
+	@Label("Termination")
+	@Description("Why the simulation ended: LAP_FINISHED, STOPPED or TIME_LIMIT")
+	public String termination;
+
+	@Label("Lap Time")
+	@Description("Simulated lap time, in milliseconds")
+	public double lapTime;
+
+	@Label("Distance")
+	@Description("Distance covered, in centimeters")
+	public double distance;
+}
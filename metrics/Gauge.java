@@ -0,0 +1,8 @@
+package metrics;
+
+/** A value which is calculated when it is read (for example, a rate). */
+public interface Gauge {
+	
+	/** Returns the current value. */
+	public double value();
+}
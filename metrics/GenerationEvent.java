@@ -0,0 +1,34 @@
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event covering one generation of a genetic algorithm.
+ * Disabled by default (see search.jfc).
+ */
+@Name("metrics.Generation")
+@Label("Generation")
+@Category({"Optimization"})
+@Description("A generation of a genetic algorithm")
+@Enabled(false)
+public class GenerationEvent extends jdk.jfr.Event {
+
+	@Label("Generation")
+	public int generation;
+
+	@Label("Evaluations")
+	public long evaluations;
+
+	@Label("Best Score")
+	public double bestScore;
+
+	@Label("Mean Score")
+	public double meanScore;
+
+	@Label("Worst Score")
+	public double worstScore;
+}
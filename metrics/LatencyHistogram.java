@@ -0,0 +1,84 @@
+package metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of durations, in nanoseconds, with logarithmic buckets: bucket i
+ * counts the durations in [2^i, 2^(i+1)). Recording a duration only updates
+ * two striped counters, so it can be called from many threads in hot paths.
+ * Percentiles are estimated with the upper limit of the bucket (that is, 
+ * within a factor of two).
+ */
+public class LatencyHistogram {
+	
+	/** One bucket per power of two. */
+	private static final int nBuckets = 64;
+	
+	/** Buckets. */
+	private final LongAdder[] buckets = new LongAdder[nBuckets];
+	
+	/** Sum of all the durations. */
+	private final LongAdder total = new LongAdder();
+	
+	/** Creates an empty histogram. */
+	public LatencyHistogram(){
+		for (int i=0;i<nBuckets;i++)
+			buckets[i] = new LongAdder();
+	}
+	
+	/** Records a duration, in nanoseconds. */
+	public void record(long nanos){
+		if (nanos < 1)
+			nanos = 1;
+		buckets[63 - Long.numberOfLeadingZeros(nanos)].increment();
+		total.add(nanos);
+	}
+	
+	/** Records the time elapsed since a certain System.nanoTime(). */
+	public void recordSince(long startNanos){
+		record(System.nanoTime() - startNanos);
+	}
+	
+	/** Returns the number of durations recorded. */
+	public long count(){
+		long count = 0;
+		for (LongAdder bucket : buckets)
+			count += bucket.sum();
+		return count;
+	}
+	
+	/** Returns the sum of the durations, in nanoseconds. */
+	public long totalNanos(){
+		return total.sum();
+	}
+	
+	/** Returns the mean duration, in nanoseconds. */
+	public double mean(){
+		long count = count();
+		return count == 0 ? 0 : (double) totalNanos() / count;
+	}
+	
+	/** Returns an estimation (upper limit of the bucket) of a percentile between 0 and 1, in nanoseconds. */
+	public long percentile(double p){
+		long[] counts = new long[nBuckets];
+		long count = 0;
+		for (int i=0;i<nBuckets;i++){
+			counts[i] = buckets[i].sum();
+			count += counts[i];
+		}
+		long target = (long) Math.ceil(p * count);
+		long accumulated = 0;
+		for (int i=0;i<nBuckets;i++){
+			accumulated += counts[i];
+			if (accumulated >= target && counts[i] > 0)
+				return (1L << (i + 1)) - 1;
+		}
+		return 0;
+	}
+	
+	/** Returns a summary: count, mean, and percentiles 50, 90 and 99, in microseconds. */
+	public String toString(){
+		return String.format("count=%d mean=%.1fus p50<%.1fus p90<%.1fus p99<%.1fus total=%.3fs",
+				count(), mean()/1000, percentile(0.5)/1000.0, percentile(0.9)/1000.0, percentile(0.99)/1000.0, totalNanos()/1e9);
+	}
+}
@@ -0,0 +1,19 @@
+package metrics;
+
+import java.util.Map;
+
+/** Management interface of a registry of metrics, as seen through JMX. */
+public interface MetricsMXBean {
+	
+	/** Returns the value of each counter. */
+	public Map<String, Long> getCounters();
+	
+	/** Returns the value of each gauge. */
+	public Map<String, Double> getGauges();
+	
+	/** Returns a summary of each histogram. */
+	public Map<String, String> getHistograms();
+	
+	/** Returns all the metrics as text. */
+	public String dump();
+}
@@ -0,0 +1,166 @@
+package metrics;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import javax.management.ObjectName;
+
+/**
+ * Registry of the metrics (counters, histograms of durations and gauges)
+ * of the application, identified by name. Classes get their metrics once,
+ * usually in static fields, and update them in their hot paths.
+ *
+ * The default registry is published through JMX (as metrics:type=Metrics).
+ * If the system property metrics.dump is set to a number of seconds, it is
+ * also written to the standard output with that period.
+ */
+public class MetricsRegistry implements MetricsMXBean {
+
+	/** Default registry. */
+	private static final MetricsRegistry defaultRegistry = new MetricsRegistry();
+
+	static {
+		defaultRegistry.registerMBean("metrics:type=Metrics");
+		String period = System.getProperty("metrics.dump");
+		if (period != null)
+			defaultRegistry.startPeriodicDump(Long.parseLong(period), System.out);
+	}
+
+	/** Thread which samples the gauges and writes the periodic dumps (see schedule). */
+	private static ScheduledExecutorService scheduler;
+
+	/** Metrics, by name. */
+	private final ConcurrentMap<String, Counter> counters = new ConcurrentHashMap<String, Counter>();
+	private final ConcurrentMap<String, LatencyHistogram> histograms = new ConcurrentHashMap<String, LatencyHistogram>();
+	private final ConcurrentMap<String, Gauge> gauges = new ConcurrentHashMap<String, Gauge>();
+
+	/** Returns the default registry. */
+	public static MetricsRegistry getDefault(){
+		return defaultRegistry;
+	}
+
+	/** Returns the counter with a certain name, creating it if it does not exist. */
+	public Counter counter(String name){
+		return counters.computeIfAbsent(name, new Function<String, Counter>(){
+			public Counter apply(String key){
+				return new Counter();
+			}
+		});
+	}
+
+	/** Returns the histogram with a certain name, creating it if it does not exist. */
+	public LatencyHistogram histogram(String name){
+		return histograms.computeIfAbsent(name, new Function<String, LatencyHistogram>(){
+			public LatencyHistogram apply(String key){
+				return new LatencyHistogram();
+			}
+		});
+	}
+
+	/**
+	 * Registers a gauge with a certain name, replacing the previous one (if
+	 * any). A RateGauge starts sampling its counter, and the one it replaces
+	 * stops.
+	 */
+	public void gauge(String name, Gauge gauge){
+		if (gauge instanceof RateGauge)
+			((RateGauge) gauge).start();
+		close(gauges.put(name, gauge), gauge);
+	}
+
+	/** Removes the gauge with a certain name (a RateGauge stops sampling its counter). */
+	public void removeGauge(String name){
+		close(gauges.remove(name), null);
+	}
+
+	/** Stops a gauge which is no longer registered (unless it is the one which replaces it). */
+	private static void close(Gauge previous, Gauge replacement){
+		if (previous instanceof RateGauge && previous != replacement)
+			((RateGauge) previous).close();
+	}
+
+	/** Returns the value of each counter. */
+	@Override
+	public Map<String, Long> getCounters(){
+		Map<String, Long> values = new TreeMap<String, Long>();
+		for (Map.Entry<String, Counter> entry : counters.entrySet())
+			values.put(entry.getKey(), entry.getValue().get());
+		return values;
+	}
+
+	/** Returns the value of each gauge. */
+	@Override
+	public Map<String, Double> getGauges(){
+		Map<String, Double> values = new TreeMap<String, Double>();
+		for (Map.Entry<String, Gauge> entry : gauges.entrySet())
+			values.put(entry.getKey(), entry.getValue().value());
+		return values;
+	}
+
+	/** Returns a summary of each histogram. */
+	@Override
+	public Map<String, String> getHistograms(){
+		Map<String, String> values = new TreeMap<String, String>();
+		for (Map.Entry<String, LatencyHistogram> entry : histograms.entrySet())
+			values.put(entry.getKey(), entry.getValue().toString());
+		return values;
+	}
+
+	/** Returns all the metrics as text, one per line. */
+	@Override
+	public String dump(){
+		StringBuilder text = new StringBuilder();
+		for (Map.Entry<String, Long> entry : getCounters().entrySet())
+			text.append(entry.getKey()).append(": ").append(entry.getValue()).append('\n');
+		for (Map.Entry<String, Double> entry : getGauges().entrySet())
+			text.append(entry.getKey()).append(": ").append(String.format("%.1f", entry.getValue())).append('\n');
+		for (Map.Entry<String, String> entry : getHistograms().entrySet())
+			text.append(entry.getKey()).append(": ").append(entry.getValue()).append('\n');
+		return text.toString();
+	}
+
+	/** Publishes the registry through JMX with a certain name. */
+	public void registerMBean(String name){
+		try{
+			ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(name));
+		}
+		catch (Exception e){
+			System.out.println("The metrics can not be published through JMX: "+e);
+		}
+	}
+
+	/** Writes the metrics periodically (every certain number of seconds) from a daemon thread. */
+	public void startPeriodicDump(long seconds, final PrintStream out){
+		schedule(new Runnable(){
+			public void run(){
+				out.print("\nMETRICS:\n"+dump());
+			}
+		}, seconds, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Runs a task periodically in the daemon thread of the metrics (which is
+	 * started when first needed). The task stops when it is cancelled.
+	 */
+	static synchronized ScheduledFuture<?> schedule(Runnable task, long period, TimeUnit unit){
+		if (scheduler == null)
+			scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory(){
+				public Thread newThread(Runnable runnable){
+					Thread thread = new Thread(runnable, "metrics");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		return scheduler.scheduleAtFixedRate(task, period, period, unit);
+	}
+}
@@ -0,0 +1,85 @@
+package metrics;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gauge which returns how fast a counter grows, in units per second. The
+ * counter is sampled on a fixed schedule, and the gauge returns the rate
+ * between the last two samples, so any number of readers (JMX, the periodic
+ * dump) see the same value without disturbing each other.
+ *
+ * The samples start when the gauge is registered (see MetricsRegistry.gauge)
+ * and stop when it is replaced or closed.
+ */
+public class RateGauge implements Gauge, AutoCloseable {
+	
+	/** Default period of the samples, in seconds. */
+	public static final long DEFAULT_PERIOD = 1;
+	
+	/** Counter being measured. */
+	private final Counter counter;
+	
+	/** Period of the samples, in seconds. */
+	private final long period;
+	
+	/** Task which takes the samples (null while the gauge is not started). */
+	private ScheduledFuture<?> sampling;
+	
+	/** Value of the counter and time in the last sample. */
+	private long lastCount;
+	private long lastTime;
+	
+	/** Rate between the last two samples. */
+	private volatile double rate;
+	
+	/** Creates a gauge of the rate of a counter, sampled every second. */
+	public RateGauge(Counter counter){
+		this(counter, DEFAULT_PERIOD);
+	}
+	
+	/** Creates a gauge of the rate of a counter, sampled every certain number of seconds. */
+	public RateGauge(Counter counter, long seconds){
+		this.counter = counter;
+		this.period = seconds;
+	}
+	
+	/** Starts sampling the counter, if it is not being sampled yet. */
+	public synchronized void start(){
+		if (sampling != null)
+			return;
+		lastCount = counter.get();
+		lastTime = System.nanoTime();
+		sampling = MetricsRegistry.schedule(new Runnable(){
+			public void run(){
+				sample();
+			}
+		}, period, TimeUnit.SECONDS);
+	}
+	
+	/** Stops sampling the counter (the gauge keeps its last rate). */
+	@Override
+	public synchronized void close(){
+		if (sampling == null)
+			return;
+		sampling.cancel(false);
+		sampling = null;
+	}
+	
+	/** Measures the rate since the previous sample (called by the schedule). */
+	synchronized void sample(){
+		long count = counter.get();
+		long time = System.nanoTime();
+		if (time == lastTime)
+			return;
+		rate = (count - lastCount) * 1e9 / (time - lastTime);
+		lastCount = count;
+		lastTime = time;
+	}
+	
+	/** Returns the rate between the last two samples (0 before the first one). */
+	@Override
+	public double value(){
+		return rate;
+	}
+}
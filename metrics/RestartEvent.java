@@ -0,0 +1,31 @@
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event covering one restart of a local search, until it
+ * reaches a local optimum. Disabled by default (see search.jfc).
+ */
+@Name("metrics.Restart")
+@Label("Local Search Restart")
+@Category({"Optimization"})
+@Description("A restart of a local search")
+@Enabled(false)
+public class RestartEvent extends jdk.jfr.Event {
+
+	@Label("Restart")
+	public int restart;
+
+	@Label("Evaluations")
+	public long evaluations;
+
+	@Label("Local Optimum Score")
+	public double score;
+
+	@Label("Best Score")
+	public double bestScore;
+}
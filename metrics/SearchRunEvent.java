@@ -0,0 +1,32 @@
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event covering a whole search, from initSearch() to
+ * stopSearch(). Disabled by default (see search.jfc).
+ */
+@Name("metrics.SearchRun")
+@Label("Search Run")
+@Category({"Optimization"})
+@Description("A complete run of a search algorithm")
+@Enabled(false)
+public class SearchRunEvent extends jdk.jfr.Event {
+
+	@Label("Algorithm")
+	public String algorithm;
+
+	@Label("Evaluations")
+	public long evaluations;
+
+	@Label("Best Score")
+	public double bestScore;
+
+	@Label("Stopped Early")
+	@Description("The search was asked to stop before its end")
+	public boolean stoppedEarly;
+}
@@ -1,7 +1,13 @@
 package optimization;
 
+import java.util.Arrays;
 import java.util.Random;
 
+import metrics.Counter;
+import metrics.LatencyHistogram;
+import metrics.MetricsRegistry;
+import metrics.SearchRunEvent;
+
 /** All classes implementing a search algorithm must extend this one. */
 public abstract class SearchAlgorithm {
 	
@@ -20,9 +26,25 @@ public abstract class SearchAlgorithm {
 	/** Number of evaluations carried out during the search. */
 	protected long evaluatedConfigurations;
 	
-	/** Search time. */
+	/** Search time, in seconds. */
 	protected double searchTime;
 	
+	/** Time when the search started (System.nanoTime()). */
+	private long searchStartTime;
+	
+	/** Flight Recorder event of the current search. */
+	private SearchRunEvent runEvent;
+	
+	/** Metrics of the evaluations, shared by all the searches. */
+	private static final Counter scoreCount = MetricsRegistry.getDefault().counter("problem.score.count");
+	private static final LatencyHistogram scoreTime = MetricsRegistry.getDefault().histogram("problem.score.time");
+	
+	/** Listeners receiving the events of the search. */
+	private SearchListener[] listeners = new SearchListener[0];
+	
+	/** Set when the search has been asked to stop before its end. */
+	private volatile boolean stopRequested;
+	
 	
 	// Abstract methods (must be implemented by descendant classes).
 	
@@ -44,14 +66,21 @@ public abstract class SearchAlgorithm {
 	 * its score, and increments the number of evaluated configurations.
 	 */
 	protected double evaluate(Configuration configuration){
+		long start = System.nanoTime();
 		double score = problem.score(configuration);
+		scoreTime.recordSince(start);
+		scoreCount.increment();
 		configuration.setScore(score);
 		evaluatedConfigurations++;
 		// Checks if it is the best configuration.
 		if (score<bestScore){
 			bestSolution = configuration.clone();
 			bestScore = score;
+			if (hasListeners())
+				publish(SearchEvent.Type.NEW_BEST, -1);
 		}
+		if (evaluatedConfigurations%100==0 && hasListeners())
+			publish(SearchEvent.Type.EVALUATIONS, -1);
 		
 		// Prints progress
 		if ((evaluatedConfigurations<1000) && (evaluatedConfigurations%100==0))
@@ -66,12 +95,86 @@ public abstract class SearchAlgorithm {
 		bestSolution = null;
 		bestScore = Double.POSITIVE_INFINITY;
 		evaluatedConfigurations = 0;
-		searchTime = (System.nanoTime() - searchTime)/1000000;
+		searchTime = 0;
+		searchStartTime = System.nanoTime();
+		stopRequested = false;
+		runEvent = new SearchRunEvent();
+		runEvent.begin();
+		if (hasListeners())
+			publish(SearchEvent.Type.STARTED, -1);
 	}
 	
 	/** Finishes the search. */
 	protected void stopSearch(){
-		searchTime = ((System.nanoTime() - searchTime)/1000000-searchTime)/1000;
+		searchTime = (System.nanoTime() - searchStartTime)/1e9;
+		runEvent.end();
+		if (runEvent.shouldCommit()){
+			runEvent.algorithm = getClass().getSimpleName();
+			runEvent.evaluations = evaluatedConfigurations;
+			runEvent.bestScore = bestScore;
+			runEvent.stoppedEarly = stopRequested;
+			runEvent.commit();
+		}
+		runEvent = null;
+		if (hasListeners())
+			publish(SearchEvent.Type.FINISHED, -1);
+	}
+	
+	/** 
+	 * Asks the search to stop as soon as possible. It can be called from any 
+	 * thread (for example, by a listener which has seen a good enough solution).
+	 * The search finishes normally, keeping the best solution found so far.
+	 */
+	public void requestStop(){
+		stopRequested = true;
+	}
+	
+	/** Returns true if the search has been asked to stop. Algorithms check it in their loops. */
+	protected boolean isStopRequested(){
+		return stopRequested;
+	}
+	
+	/** Adds a listener which will receive the events of the search. */
+	public synchronized void addListener(SearchListener listener){
+		SearchListener[] newListeners = Arrays.copyOf(listeners, listeners.length+1);
+		newListeners[listeners.length] = listener;
+		listeners = newListeners;
+	}
+	
+	/** Removes a listener. */
+	public synchronized void removeListener(SearchListener listener){
+		for (int i=0;i<listeners.length;i++){
+			if (listeners[i]==listener){
+				SearchListener[] newListeners = new SearchListener[listeners.length-1];
+				System.arraycopy(listeners, 0, newListeners, 0, i);
+				System.arraycopy(listeners, i+1, newListeners, i, listeners.length-i-1);
+				listeners = newListeners;
+				return;
+			}
+		}
+	}
+	
+	/** Returns true if there is any listener (so that events are only built when needed). */
+	protected boolean hasListeners(){
+		return listeners.length>0;
+	}
+	
+	/** 
+	 * Publishes an event with the current state of the search. The best
+	 * configuration is only included in NEW_BEST events.
+	 */
+	protected void publish(SearchEvent.Type type, int generation){
+		publish(type, generation, Double.NaN, Double.NaN);
+	}
+	
+	/** Publishes an event with the statistics of a generation (mean and worst score). */
+	protected void publish(SearchEvent.Type type, int generation, double meanScore, double worstScore){
+		double[] values = null;
+		if (type==SearchEvent.Type.NEW_BEST && bestSolution!=null)
+			values = bestSolution.getValues().clone();
+		SearchEvent event = new SearchEvent(type, evaluatedConfigurations, bestScore, values, generation, meanScore, worstScore);
+		for (SearchListener listener : listeners)
+			listener.onEvent(event);
 	}
 	
 	/** Sets the problem. */
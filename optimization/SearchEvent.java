@@ -0,0 +1,87 @@
+package optimization;
+
+/** 
+ * Describes something that happened during a search: the search has started
+ * or finished, a new best configuration has been found, some evaluations
+ * have been carried out, a generation has been completed, or a local search
+ * has been restarted.
+ * 
+ * Events are immutable, so they can be passed safely to other threads.
+ */
+public class SearchEvent {
+	
+	/** Types of events. */
+	public enum Type {
+		STARTED,
+		NEW_BEST,
+		EVALUATIONS,
+		GENERATION,
+		RESTART,
+		FINISHED;
+	}
+	
+	/** Type of the event. */
+	private final Type type;
+	
+	/** Number of evaluations carried out when the event was published. */
+	private final long evaluations;
+	
+	/** Score of the best configuration found so far. */
+	private final double bestScore;
+	
+	/** Best configuration (only in NEW_BEST events, null otherwise). */
+	private final double[] bestValues;
+	
+	/** 
+	 * Number of the generation (in GENERATION events) or of the restart 
+	 * (in RESTART events), -1 otherwise. 
+	 */
+	private final int generation;
+	
+	/** Mean and worst score of the population (only in GENERATION events, NaN otherwise). */
+	private final double meanScore;
+	private final double worstScore;
+	
+	/** Creates an event. */
+	public SearchEvent(Type type, long evaluations, double bestScore, double[] bestValues, int generation){
+		this(type, evaluations, bestScore, bestValues, generation, Double.NaN, Double.NaN);
+	}
+	
+	/** Creates an event with the statistics of a generation. */
+	public SearchEvent(Type type, long evaluations, double bestScore, double[] bestValues, int generation, double meanScore, double worstScore){
+		this.type = type;
+		this.evaluations = evaluations;
+		this.bestScore = bestScore;
+		this.bestValues = bestValues;
+		this.generation = generation;
+		this.meanScore = meanScore;
+		this.worstScore = worstScore;
+	}
+	
+	/** Returns the type of the event. */
+	public Type getType(){ return type; }
+	
+	/** Returns the number of evaluations carried out. */
+	public long getEvaluations(){ return evaluations; }
+	
+	/** Returns the score of the best configuration found so far. */
+	public double getBestScore(){ return bestScore; }
+	
+	/** Returns the best configuration (only in NEW_BEST events). */
+	public double[] getBestValues(){ return bestValues; }
+	
+	/** Returns the number of the generation or restart (only in GENERATION and RESTART events). */
+	public int getGeneration(){ return generation; }
+	
+	/** Returns the mean score of the population (only in GENERATION events). */
+	public double getMeanScore(){ return meanScore; }
+	
+	/** Returns the worst score of the population (only in GENERATION events). */
+	public double getWorstScore(){ return worstScore; }
+	
+	/** Returns a string describing the event. */
+	public String toString(){
+		return type+" (evaluations: "+evaluations+", best score: "+bestScore+(generation>=0 ? ", number: "+generation : "")
+				+(Double.isNaN(meanScore) ? "" : ", mean score: "+meanScore+", worst score: "+worstScore)+")";
+	}
+}
@@ -0,0 +1,75 @@
+package optimization;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded queue of events with a single producer (the thread running the
+ * search) and a single consumer (for example, the thread of a user interface).
+ *
+ * Neither side ever blocks or takes a lock: when the queue is full the new
+ * event is discarded (and counted), so a slow consumer never slows the search
+ * down, and poll() returns null when there are no events.
+ */
+public class SearchEventQueue implements SearchListener {
+
+	/** Events. The capacity is a power of two. */
+	private final AtomicReferenceArray<SearchEvent> events;
+	private final int mask;
+
+	/** Position of the next event to write (only written by the producer). */
+	private final AtomicLong tail = new AtomicLong();
+
+	/** Position of the next event to read (only written by the consumer). */
+	private final AtomicLong head = new AtomicLong();
+
+	/** Number of events discarded because the queue was full. */
+	private volatile long dropped;
+
+	/** Creates a queue for a certain number of events (rounded up to a power of two). */
+	public SearchEventQueue(int capacity){
+		int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+		events = new AtomicReferenceArray<SearchEvent>(size);
+		mask = size - 1;
+	}
+
+	/** Adds an event. Returns false (discarding it) if the queue is full. */
+	public boolean offer(SearchEvent event){
+		long t = tail.get();
+		if (t - head.get() > mask){
+			dropped++;
+			return false;
+		}
+		events.lazySet((int) t & mask, event);
+		tail.lazySet(t + 1);
+		return true;
+	}
+
+	/** Returns the oldest event, or null if there are no events. */
+	public SearchEvent poll(){
+		long h = head.get();
+		if (h == tail.get())
+			return null;
+		int index = (int) h & mask;
+		SearchEvent event = events.get(index);
+		events.lazySet(index, null);
+		head.lazySet(h + 1);
+		return event;
+	}
+
+	/** Returns the number of events waiting to be read. */
+	public int size(){
+		return (int) (tail.get() - head.get());
+	}
+
+	/** Returns the number of events discarded because the queue was full. */
+	public long getDropped(){
+		return dropped;
+	}
+
+	/** Receives the events of the search. */
+	@Override
+	public void onEvent(SearchEvent event){
+		offer(event);
+	}
+}
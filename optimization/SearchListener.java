@@ -0,0 +1,11 @@
+package optimization;
+
+/** 
+ * Receives the events published by a search algorithm. Listeners are called 
+ * from the thread running the search, so they must return quickly.
+ */
+public interface SearchListener {
+	
+	/** Receives an event. */
+	public void onEvent(SearchEvent event);
+}
@@ -0,0 +1,209 @@
+package optimization;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.SubmissionPublisher;
+
+/**
+ * Publishes the events of a search as a java.util.concurrent.Flow.Publisher,
+ * so that other components can follow a search as it progresses: new best
+ * solutions, the statistics of each generation, restarts of local searches,
+ * and the end of the search.
+ *
+ * Each subscriber has its own buffer and requests events at its own pace.
+ * Events are offered without waiting, so slow subscribers never slow the
+ * search down: if the buffer of a subscriber is full, that subscriber loses
+ * the intermediate events (EVALUATIONS, GENERATION, RESTART). The STARTED,
+ * NEW_BEST and FINISHED events are kept instead, consecutive NEW_BEST events
+ * replacing each other, and delivered in order as soon as the subscriber
+ * takes an event from its buffer. Those still kept when the publisher is
+ * closed are delivered before closing, so every subscriber gets the last
+ * best and the FINISHED event. The number of lost events can be consulted
+ * with getDropped().
+ *
+ * Subscribers can stop the search early with SearchAlgorithm.requestStop(),
+ * or start another search when they receive the FINISHED event.
+ *
+ * Example:
+ * 				SearchProgressPublisher publisher = new SearchProgressPublisher(algorithm);
+ * 				publisher.subscribe(subscriber);
+ * 				algorithm.search();
+ * 				publisher.close();
+ */
+public class SearchProgressPublisher implements SearchListener, Flow.Publisher<SearchEvent>, AutoCloseable {
+
+	/** Executor which delivers the events, and number of events buffered per subscriber. */
+	private final Executor executor;
+	private final int bufferSize;
+
+	/** Channel of each subscriber. */
+	private final List<Channel> channels = new CopyOnWriteArrayList<Channel>();
+
+	/** Whether the publisher has been closed. */
+	private boolean closed;
+
+	/** Number of events lost by subscribers with full buffers. */
+	private volatile long dropped;
+
+	/** Creates a publisher for the events of a search. */
+	public SearchProgressPublisher(SearchAlgorithm algorithm){
+		this(algorithm, ForkJoinPool.commonPool(), Flow.defaultBufferSize());
+	}
+
+	/**
+	 * Creates a publisher which delivers the events with an executor, and
+	 * buffers up to a certain number of events per subscriber.
+	 */
+	public SearchProgressPublisher(SearchAlgorithm algorithm, Executor executor, int bufferSize){
+		this.executor = executor;
+		this.bufferSize = bufferSize;
+		algorithm.addListener(this);
+	}
+
+	/** Adds a subscriber (which completes at once if the publisher is closed). */
+	@Override
+	public synchronized void subscribe(Flow.Subscriber<? super SearchEvent> subscriber){
+		Channel channel = new Channel(subscriber);
+		channel.publisher.subscribe(channel);
+		if (closed)
+			channel.publisher.close();
+		else
+			channels.add(channel);
+	}
+
+	/** Receives an event of the search and offers it to the subscribers, without waiting. */
+	@Override
+	public void onEvent(SearchEvent event){
+		for (Channel channel : channels){
+			if (channel.publisher.hasSubscribers())
+				channel.offer(event);
+			else
+				channels.remove(channel);
+		}
+	}
+
+	/** Returns the number of events lost by subscribers with full buffers. */
+	public long getDropped(){
+		return dropped;
+	}
+
+	/** Returns the number of subscribers. */
+	public int getNumberOfSubscribers(){
+		int subscribers = 0;
+		for (Channel channel : channels)
+			if (channel.publisher.hasSubscribers())
+				subscribers++;
+		return subscribers;
+	}
+
+	/**
+	 * Signals the end of the events to the subscribers, after delivering the
+	 * events kept for them (waiting, if needed, until they have room).
+	 */
+	@Override
+	public synchronized void close(){
+		closed = true;
+		for (Channel channel : channels)
+			channel.close();
+		channels.clear();
+	}
+
+	/**
+	 * Buffer of a subscriber (a publisher of its own) and the events kept
+	 * because it was full. It receives the events from the buffer and passes
+	 * them on to the subscriber, and then offers the kept ones again.
+	 */
+	private class Channel implements Flow.Subscriber<SearchEvent> {
+
+		/** Subscriber, and publisher which buffers its events. */
+		private final Flow.Subscriber<? super SearchEvent> subscriber;
+		private final SubmissionPublisher<SearchEvent> publisher;
+
+		/** Events kept, in order, and whether there is any (read without the lock). */
+		private final ArrayDeque<SearchEvent> kept = new ArrayDeque<SearchEvent>();
+		private volatile boolean waiting;
+
+		Channel(Flow.Subscriber<? super SearchEvent> subscriber){
+			this.subscriber = subscriber;
+			publisher = new SubmissionPublisher<SearchEvent>(executor, bufferSize);
+		}
+
+		/** Offers an event after the kept ones, keeping or losing it if the buffer is full. */
+		synchronized void offer(SearchEvent event){
+			if (!flush() || publisher.offer(event, null) < 0)
+				keep(event);
+		}
+
+		/** Keeps an event which did not fit, unless it is an intermediate one. */
+		private void keep(SearchEvent event){
+			SearchEvent.Type type = event.getType();
+			if (type != SearchEvent.Type.STARTED && type != SearchEvent.Type.NEW_BEST && type != SearchEvent.Type.FINISHED){
+				dropped++;
+				return;
+			}
+			if (type == SearchEvent.Type.NEW_BEST && !kept.isEmpty() && kept.peekLast().getType() == SearchEvent.Type.NEW_BEST){
+				kept.pollLast();
+				dropped++;
+			}
+			kept.add(event);
+			waiting = true;
+		}
+
+		/** Offers the kept events, in order, while the buffer has room. Returns true if none is left. */
+		private boolean flush(){
+			while (!kept.isEmpty()){
+				if (publisher.offer(kept.peek(), null) < 0)
+					return false;
+				kept.poll();
+			}
+			waiting = false;
+			return true;
+		}
+
+		/**
+		 * Delivers the kept events, waiting for room in the buffer, and closes
+		 * it. It waits without the lock, which onNext may need to make room.
+		 */
+		void close(){
+			SearchEvent[] events;
+			synchronized (this){
+				events = kept.toArray(new SearchEvent[kept.size()]);
+				kept.clear();
+				waiting = false;
+			}
+			for (SearchEvent event : events)
+				publisher.submit(event);
+			publisher.close();
+		}
+
+		@Override
+		public void onSubscribe(Flow.Subscription subscription){
+			subscriber.onSubscribe(subscription);
+		}
+
+		/** Passes an event on, and then there is room for the kept ones. */
+		@Override
+		public void onNext(SearchEvent event){
+			subscriber.onNext(event);
+			if (waiting){
+				synchronized (this){
+					flush();
+				}
+			}
+		}
+
+		@Override
+		public void onError(Throwable throwable){
+			subscriber.onError(throwable);
+		}
+
+		@Override
+		public void onComplete(){
+			subscriber.onComplete();
+		}
+	}
+}
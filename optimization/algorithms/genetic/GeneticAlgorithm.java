@@ -9,7 +9,11 @@ import java.util.Collections;
 
 /* Imported packages within the project */
 import optimization.SearchAlgorithm;
+import optimization.SearchEvent;
 import optimization.Configuration;
+import metrics.GenerationEvent;
+import metrics.LatencyHistogram;
+import metrics.MetricsRegistry;
 
 public class GeneticAlgorithm extends SearchAlgorithm {
 	
@@ -28,12 +32,19 @@ public class GeneticAlgorithm extends SearchAlgorithm {
 	private int currentDelta;						// Number of generations in which the solution has not been improved
 	private double previousScore;					// Score of the best solution obtained in the last iteration
 	
+	private Configuration[] lastPopulation;			// Population of the last generation
+	
+	/* Time spent in each operator */
+	private static final LatencyHistogram selectionTime = MetricsRegistry.getDefault().histogram("ga.selection.time");
+	private static final LatencyHistogram crossoverTime = MetricsRegistry.getDefault().histogram("ga.crossover.time");
+	private static final LatencyHistogram mutationTime = MetricsRegistry.getDefault().histogram("ga.mutation.time");
+	private static final LatencyHistogram replacementTime = MetricsRegistry.getDefault().histogram("ga.replacement.time");
+	
 	@Override
 	public void search() {
 		
 		// Local variables
 		Configuration[] population;	// Population		
-		Configuration[] populationPrime; // Prime population to be used as auxiliary one
 		boolean stopCondition;
 		
 		// Initialization
@@ -48,22 +59,66 @@ public class GeneticAlgorithm extends SearchAlgorithm {
 		// Obtains their score
 		evaluatePopulation(population);
 		
-		while(!stopCondition) {
+		while(!stopCondition && !isStopRequested()) {
 		
-			populationPrime = selectPopulation(population).clone(); 	// Selects some individuals by score
-			crossover(populationPrime);									// Crosses two pairs of selected individuals
-			mutation(populationPrime);									// Mutates the crossed individuals
-			evaluatePopulation(populationPrime);						// Obtains the score of the new population
-			population = combine(population, populationPrime).clone();	// Forms the new generation
+			GenerationEvent event = new GenerationEvent();
+			event.begin();
+			
+			population = nextGeneration(population);					// Forms the new generation
 			
 			// Checks stop condition
 			stopCondition = stopCriterion(++generation);
+			
+			// Notifies the end of the generation (the statistics are computed once, if needed)
+			event.end();
+			boolean commit = event.shouldCommit();
+			if(commit || hasListeners()) {
+				
+				double[] statistics = generationStatistics(population);
+				if(commit)
+					commitGeneration(event, statistics[0], statistics[1]);
+				if(hasListeners())
+					publish(SearchEvent.Type.GENERATION, generation, statistics[0], statistics[1]);
+			}
 		}
 		
+		// Keeps the last generation
+		lastPopulation = population;
+		
 		// Finish the search
 		stopSearch();
 	}
 
+	/* Forms the next generation from a population: selection, crossover, mutation, evaluation and replacement */
+	public Configuration[] nextGeneration(Configuration[] population) {
+		
+		// Local variables
+		Configuration[] populationPrime; // Prime population to be used as auxiliary one
+		long start;
+		
+		start = System.nanoTime();
+		populationPrime = selectPopulation(population).clone(); 	// Selects some individuals by score
+		selectionTime.recordSince(start);
+		start = System.nanoTime();
+		crossover(populationPrime);									// Crosses two pairs of selected individuals
+		crossoverTime.recordSince(start);
+		start = System.nanoTime();
+		mutation(populationPrime);									// Mutates the crossed individuals
+		mutationTime.recordSince(start);
+		evaluatePopulation(populationPrime);						// Obtains the score of the new population
+		start = System.nanoTime();
+		population = combine(population, populationPrime).clone();	// Forms the new generation
+		replacementTime.recordSince(start);
+		
+		return population;
+	}
+	
+	/* Returns the population of the last generation */
+	public Configuration[] getPopulation() {
+		
+		return lastPopulation;
+	}
+
 	@Override
 	public void showSearchStats() {
 		
@@ -118,6 +173,33 @@ public class GeneticAlgorithm extends SearchAlgorithm {
 	
 	/* Methods needed for the genetic algorithm */
 	
+	/* Returns the mean and the worst score of a population */
+	private double[] generationStatistics(Configuration[] population) {
+		
+		// Local variables
+		double sum = 0;
+		double worst = Double.NEGATIVE_INFINITY;
+		
+		for(Configuration individual : population) {
+			
+			sum += individual.score();
+			worst = Math.max(worst, individual.score());
+		}
+		
+		return new double[] {sum / population.length, worst};
+	}
+	
+	/* Fills the Flight Recorder event of a generation with its statistics and commits it */
+	private void commitGeneration(GenerationEvent event, double meanScore, double worstScore) {
+		
+		event.generation = generation;
+		event.evaluations = evaluatedConfigurations;
+		event.bestScore = bestScore;
+		event.meanScore = meanScore;
+		event.worstScore = worstScore;
+		event.commit();
+	}
+	
 	/* Generates the initial population */
 	private Configuration[] generatePopulation() {
 		
@@ -173,7 +255,7 @@ public class GeneticAlgorithm extends SearchAlgorithm {
 		double totalProbability;
 		
 		// Initialization
-		random = new Random();
+		random = generator;
 		
 		selectedPopulation = new Configuration[populationSize];
 		accumulatedProbabilities = new TreeMap<Double, Configuration>();
@@ -218,7 +300,7 @@ public class GeneticAlgorithm extends SearchAlgorithm {
 		double summation;											// Series sum
 		
 		// Initialization
-		random = new Random();
+		random = generator;
 		
 		selectedPopulation = new Configuration[populationSize];
 		accumulatedProbabilities = new TreeMap<Double, Configuration>();	
@@ -261,7 +343,7 @@ public class GeneticAlgorithm extends SearchAlgorithm {
 		Configuration[] tournament;			// Individuals to be selected
 		
 		// Initialization
-		random = new Random();
+		random = generator;
 		S = 2; 
 		
 		selectedPopulation = new Configuration[populationSize];
@@ -310,7 +392,7 @@ public class GeneticAlgorithm extends SearchAlgorithm {
 		double alpha;
 		
 		// Initialization
-		random = new Random();
+		random = generator;
 
 		// Random value from 0(inclusive) to problem size(exclusive) for k
 		k = random.nextInt(problem.size());		
@@ -350,7 +432,7 @@ public class GeneticAlgorithm extends SearchAlgorithm {
 		double l;		// Difference between maximum and minimum
 		
 		// Initialization
-		random = new Random();
+		random = generator;
 		alpha = random.nextDouble();		
 		
 		// We apply crossover in consecutive pairs
@@ -385,7 +467,7 @@ public class GeneticAlgorithm extends SearchAlgorithm {
 		for(Configuration individual : population) {
 			
 			// Get a random double to show if mutation is going to be applied
-			Random random = new Random();
+			Random random = generator;
 			double randomProbability = random.nextDouble();
 			
 			// Mutation must be applied
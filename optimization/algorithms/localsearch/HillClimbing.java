@@ -3,6 +3,8 @@ package optimization.algorithms.localsearch;
 /* Imported packages within the project */
 import optimization.SearchAlgorithm;
 import optimization.Configuration;
+import metrics.LatencyHistogram;
+import metrics.MetricsRegistry;
 
 /* Imported packages from Java */
 import java.util.ArrayList;
@@ -13,6 +15,9 @@ public class HillClimbing extends SearchAlgorithm {
 	/* Attributes */
 	protected double k;			// Increasing factor
 	
+	/* Time spent generating neighborhoods */
+	private static final LatencyHistogram neighborhoodTime = MetricsRegistry.getDefault().histogram("hillclimbing.neighborhood.time");
+	
 	/* Carries out the search */
 	@Override
 	public void search() {
@@ -38,7 +43,7 @@ public class HillClimbing extends SearchAlgorithm {
 		evaluate(currentSolution);
 		improves = true;
 		
-		while(improves) {
+		while(improves && !isStopRequested()) {
 			
 			improves = false;
 			
@@ -70,6 +75,7 @@ public class HillClimbing extends SearchAlgorithm {
 		ArrayList<Configuration> neighbors;
 		
 		// Initialization
+		long start = System.nanoTime();
 		neighbors = new ArrayList<Configuration>(); 
 		
 		for(int i = 0; i < problem.size(); i++) {
@@ -91,6 +97,7 @@ public class HillClimbing extends SearchAlgorithm {
 			neighbors.add(new Configuration(params));			
 		}
 		
+		neighborhoodTime.recordSince(start);
 		return neighbors;
 	}
 
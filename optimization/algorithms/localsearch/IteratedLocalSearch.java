@@ -5,6 +5,8 @@ import java.util.Arrays;
 
 /* Imported packages within the project */
 import optimization.Configuration;
+import optimization.SearchEvent;
+import metrics.RestartEvent;
 
 public class IteratedLocalSearch extends HillClimbing {
 
@@ -26,10 +28,26 @@ public class IteratedLocalSearch extends HillClimbing {
 		// Starts the search
 		initSearch();
 		
-		for(int i = 0; i < maxIters; i++) {
+		for(int i = 0; i < maxIters && !isStopRequested(); i++) {
+			
+			// Notifies the restart
+			if(hasListeners())
+				publish(SearchEvent.Type.RESTART, i);
+			
+			RestartEvent event = new RestartEvent();
+			event.begin();
 			
 			xp = perturbate(x).clone();
 			x = applyHillClimbling(xp).clone();
+			
+			event.end();
+			if(event.shouldCommit()) {
+				event.restart = i;
+				event.evaluations = evaluatedConfigurations;
+				event.score = x.score();
+				event.bestScore = bestScore;
+				event.commit();
+			}
 		}
 		
 		// Stops the search
@@ -1,7 +1,9 @@
 package optimization.algorithms.localsearch;
 
-/* Imported packages from Java */
+/* Imported packages within the project */
 import optimization.Configuration;
+import optimization.SearchEvent;
+import metrics.RestartEvent;
 
 public class RandomizedLocalSearch extends HillClimbing {
 
@@ -17,10 +19,26 @@ public class RandomizedLocalSearch extends HillClimbing {
 		// Starts the search
 		initSearch();
 		
-		for(int i = 0; i < maxIters; i++) {
+		for(int i = 0; i < maxIters && !isStopRequested(); i++) {
+			
+			// Notifies the restart
+			if(hasListeners())
+				publish(SearchEvent.Type.RESTART, i);
+			
+			RestartEvent event = new RestartEvent();
+			event.begin();
 			
 			x = genRandomConfiguration();
-			applyHillClimbling(x);	
+			x = applyHillClimbling(x);	
+			
+			event.end();
+			if(event.shouldCommit()) {
+				event.restart = i;
+				event.evaluations = evaluatedConfigurations;
+				event.score = x.score();
+				event.bestScore = bestScore;
+				event.commit();
+			}
 		}
 		
 		// Stops the search
@@ -21,7 +21,7 @@ public class RandomSearch extends SearchAlgorithm {
 		// Generates all the configurations.
 		Configuration randomConfiguration = null;
 		
-		for (int nSolution=0;nSolution<numSolutions;nSolution++){
+		for (int nSolution=0;nSolution<numSolutions && !isStopRequested();nSolution++){
 			// Generates a configuration.
 			randomConfiguration = genRandomConfiguration();
 			// Evaluates it.
@@ -1,29 +1,42 @@
 package optimization.problems;
 
 import carracing.ControllerEvaluation;
+import carracing.controllers.ControllerCompiler;
 import carracing.controllers.LinearController;
+import carracing.controllers.TrainableController;
 import carracing.tracks.ShapeTrack;
 import carracing.tracks.Track2;
 import carracing.tracks.TrackLoader;
 import optimization.Configuration;
 import optimization.OptProblem;
 
-/** Wraps the evaluation of a linear controller into an OptProblem */
+/** 
+ * Wraps the evaluation of a trainable controller (a linear one, by default)
+ * into an OptProblem: configurations are the parameters of the controller.
+ */
 public class CarRacingProblem extends OptProblem {
 	
 	/** Track */
 	ShapeTrack track;
 	/** Controller */
-	LinearController controller = new  LinearController();
+	TrainableController controller;
 	/** Simulation of controllers. Will be used to calculate the score. */
 	ControllerEvaluation controllerEvaluation;	
+	/** Compiler of linear controllers, or null to evaluate the controller itself. */
+	ControllerCompiler compiler;
 	
 	/** Constructor */
 	public CarRacingProblem(){
-		// Gets the size of the problem (8 parameters). 
-		size = controller.NUM_COEFFICIENTS;
+		this(new LinearController());
+	}
+
+	/** Creates the problem of optimizing the parameters of a controller. */
+	public CarRacingProblem(TrainableController controller){
+		this.controller = controller;
+		// Gets the size of the problem. 
+		size = controller.nParameters();
 		// Gets the ranges of the variables.
-	    representation = controller.RANGES;	    
+	    representation = controller.getRanges();	    
 	    // Default track is 2.
 	    track = new Track2(); 
 	    controllerEvaluation = new ControllerEvaluation(track,controller);
@@ -32,15 +45,35 @@ public class CarRacingProblem extends OptProblem {
 	/** Sets the track */
 	public void setTrack(ShapeTrack track){
 		this.track = track;
-		// Creates the evaluator with the controller. Will be used to get the score.
-		controllerEvaluation = new ControllerEvaluation(track,controller);
+		// Reuses the evaluator, which only has to change its track.
+		controllerEvaluation.setTrack(track);
 	}
 	
+	/** Returns the controller whose parameters are optimized. */
+	public TrainableController getController(){
+		return controller;
+	}
+
+	/** 
+	 * Evaluates linear controllers compiled by a compiler (which may be
+	 * shared by several problems, since it gives each evaluation a controller
+	 * of its own), or by the controller itself with null (the default). The
+	 * results are the same; compiling only pays off when configurations are
+	 * evaluated again.
+	 */
+	public void setCompiler(ControllerCompiler compiler){
+		this.compiler = compiler;
+		if (compiler == null)
+			controllerEvaluation.setController(controller);
+	}
+
 	/** Evaluates a configuration. */
 	@Override
 	public double score(Configuration configuration) {
 		// Adjusts the coefficients in the controller.
 		controller.setParameters(configuration.getValues());
+		if (compiler != null && controller instanceof LinearController)
+			controllerEvaluation.setController(compiler.get(configuration.getValues()));
 		
 		// Evaluates it and gets [laptime, distance]
 		double[] result = controllerEvaluation.evaluate();
@@ -0,0 +1,18 @@
+package optimization.problems;
+
+import carracing.controllers.MLPController;
+
+/**
+ * The car racing problem with a multilayer perceptron controller (with the
+ * default architecture of MLPController), so that it can be built by name.
+ *
+ * Example:
+ * 				java GenericSolver MLPCarRacingProblem genetic.GeneticAlgorithm 500 100 0.9 0.1 0.8
+ */
+public class MLPCarRacingProblem extends CarRacingProblem {
+
+	/** Constructor */
+	public MLPCarRacingProblem(){
+		super(new MLPController());
+	}
+}